@@ -3,14 +3,18 @@ package com.adavec.transporte.controller;
 import com.adavec.transporte.dto.ReporteFinancieroDTO;
 import com.adavec.transporte.model.ConceptoCobro;
 import com.adavec.transporte.repository.ConceptoCobroRepository;
+import com.adavec.transporte.service.CacheReporteFinanciero;
+import com.adavec.transporte.service.CatalogoConceptosService;
 import com.adavec.transporte.service.ReporteFinancieroService;
+import com.adavec.transporte.service.ResumenMensualService;
 import com.adavec.transporte.dto.ReporteFinancieroDTO;
 import com.adavec.transporte.service.ReporteFinancieroService;
 import com.adavec.transporte.repository.ConceptoCobroRepository;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,14 +31,26 @@ import java.time.format.DateTimeFormatter;
 @RequestMapping("/api/reportes")
 public class ReporteFinancieroController {
 
+    // Filas que el libro en streaming conserva en memoria antes de vaciarlas a disco
+    private static final int FILAS_EN_MEMORIA = 100;
+
     private final ReporteFinancieroService reporteFinancieroService;
     // ← AGREGAR ESTA LÍNEA - INYECTAR EL REPOSITORY
     private final ConceptoCobroRepository conceptoCobroRepository;
+    private final CatalogoConceptosService catalogoConceptos;
+    private final ResumenMensualService resumenMensualService;
+    private final CacheReporteFinanciero cacheReporteFinanciero;
 
     public ReporteFinancieroController(ReporteFinancieroService reporteFinancieroService,
-                                       ConceptoCobroRepository conceptoCobroRepository) {
+                                       ConceptoCobroRepository conceptoCobroRepository,
+                                       CatalogoConceptosService catalogoConceptos,
+                                       ResumenMensualService resumenMensualService,
+                                       CacheReporteFinanciero cacheReporteFinanciero) {
         this.reporteFinancieroService = reporteFinancieroService;
         this.conceptoCobroRepository = conceptoCobroRepository;  // ← AGREGAR ESTA LÍNEA
+        this.catalogoConceptos = catalogoConceptos;
+        this.resumenMensualService = resumenMensualService;
+        this.cacheReporteFinanciero = cacheReporteFinanciero;
     }
 
     // Enum para los tipos de reporte
@@ -67,40 +83,22 @@ public class ReporteFinancieroController {
         // Validación del mes
         validarMes(mes);
 
-        // Obtener datos
-        List<ReporteFinancieroDTO> todasLasFilas = reporteFinancieroService.obtenerDatosFinancierosPorMes(mes);
-
-        // LOG: Debug información
-        System.out.println("DEBUG: Total de filas encontradas: " + todasLasFilas.size());
-
-        // Verificar si hay datos base
-        if (todasLasFilas.isEmpty()) {
-            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
-            response.setContentType("application/json");
-            response.getWriter().write("{\"message\": \"No se encontraron registros para el mes " +
-                    mes.format(DateTimeFormatter.ofPattern("MMMM yyyy")) + "\"}");
-            return;
-        }
-
-        // Filtrar solo aquellos registros que tienen información en días y cuota asociación
-        List<ReporteFinancieroDTO> filas = todasLasFilas.stream()
-                .filter(dto -> {
-                    boolean tieneInformacion = dto.getDias() > 0 && dto.getCuotaAsociacion() != null && dto.getCuotaAsociacion() > 0;
-                    System.out.println("DEBUG: Registro - Dias: " + dto.getDias() +
-                            ", CuotaAsociacion: " + dto.getCuotaAsociacion() +
-                            ", Válido: " + tieneInformacion);
-                    return tieneInformacion;
-                })
-                .collect(Collectors.toList());
-
-        System.out.println("DEBUG: Filas válidas después del filtro: " + filas.size());
+        // Obtener solo las filas con días y cuota asociación; el filtro se aplica en la consulta
+        List<ReporteFinancieroDTO> filas = reporteFinancieroService.obtenerFilasReportablesPorMes(mes);
 
-        // VALIDACIÓN CORREGIDA: Verificar si hay datos válidos después del filtro
         if (filas.isEmpty()) {
-            System.out.println("DEBUG: Entrando en caso 2 - Sin datos válidos");
+            // Verificar si hay datos base
+            if (!reporteFinancieroService.existenUnidadesEnMes(mes)) {
+                response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+                response.setContentType("application/json");
+                response.getWriter().write("{\"message\": \"No se encontraron registros para el mes " +
+                        mes.format(DateTimeFormatter.ofPattern("MMMM yyyy")) + "\"}");
+                return;
+            }
+
+            // Hay unidades en el mes, pero ninguna con información en días y cuota asociación
             response.setStatus(HttpServletResponse.SC_NO_CONTENT); // 204 No Content
-            System.out.println("DEBUG: Respuesta 204 enviada, finalizando método");
-            return; // CRÍTICO: Parar la ejecución aquí
+            return;
         }
 
         // Configurar respuesta
@@ -134,6 +132,32 @@ public class ReporteFinancieroController {
         }
     }
 
+    /**
+     * Regenera el resumen mensual del mes, por ejemplo después de corregir datos directo en BD
+     */
+    @PostMapping("/financiero/resumen-mensual")
+    public ResponseEntity<Map<String, Object>> regenerarResumenMensual(
+            @RequestParam("mes") @DateTimeFormat(pattern = "yyyy-MM") YearMonth mes) {
+        validarMes(mes);
+        long inicio = System.nanoTime();
+        int unidades = resumenMensualService.recalcularMes(mes);
+
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("mensaje", "Resumen mensual de " + mes + " regenerado");
+        respuesta.put("mes", mes.toString());
+        respuesta.put("unidades", unidades);
+        respuesta.put("milisegundos", (System.nanoTime() - inicio) / 1_000_000);
+        return ResponseEntity.ok(respuesta);
+    }
+
+    /**
+     * Aciertos, fallos e invalidaciones de la caché del reporte financiero
+     */
+    @GetMapping("/financiero/cache")
+    public ResponseEntity<Map<String, Object>> estadisticasCache() {
+        return ResponseEntity.ok(cacheReporteFinanciero.estadisticas());
+    }
+
     private void validarMes(YearMonth mes) {
         if (mes.isAfter(YearMonth.now().plusMonths(0))) {
             throw new IllegalArgumentException("El mes no puede ser mayor a 12 meses en el futuro");
@@ -145,8 +169,9 @@ public class ReporteFinancieroController {
 
     private void generarReporteEspecifico(List<ReporteFinancieroDTO> filas, YearMonth mes,
                                           HttpServletResponse response, TipoReporte tipoReporte) throws IOException {
-        XSSFWorkbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet(tipoReporte.getDescripcion());
+        SXSSFWorkbook workbook = nuevoLibroEnStreaming();
+        SXSSFSheet sheet = workbook.createSheet(tipoReporte.getDescripcion());
+        sheet.trackAllColumnsForAutoSizing();
 
         // Crear estilos
         CellStyle headerStyle = crearEstiloEncabezado(workbook);
@@ -229,11 +254,7 @@ public class ReporteFinancieroController {
         sheet.createFreezePane(0, 3);
 
         // Escribir y cerrar
-        try {
-            workbook.write(response.getOutputStream());
-        } finally {
-            workbook.close();
-        }
+        escribirLibro(workbook, response);
     }
 
     private String getColumnaTitulo(TipoReporte tipo) {
@@ -289,8 +310,9 @@ public class ReporteFinancieroController {
 
     private void generarReporteCompleto(List<ReporteFinancieroDTO> filas, YearMonth mes,
                                         HttpServletResponse response) throws IOException {
-        XSSFWorkbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("Reporte Financiero");
+        SXSSFWorkbook workbook = nuevoLibroEnStreaming();
+        SXSSFSheet sheet = workbook.createSheet("Reporte Financiero");
+        sheet.trackAllColumnsForAutoSizing();
         // Tasa de IVA (ej. 16%)
         final double tasaIVA = 0.16;
 
@@ -377,6 +399,7 @@ public class ReporteFinancieroController {
         double totalCapacitacion = 0;
 
         // Crear todas las filas de datos
+        Map<Integer, Boolean> aplicaIvaMap = catalogoConceptos.aplicaIvaPorId();
         for (int i = 0; i < filas.size(); i++) {
             ReporteFinancieroDTO dto = filas.get(i);
             rowIdx++;
@@ -411,12 +434,6 @@ public class ReporteFinancieroController {
 
             row.createCell(8).setCellValue(dto.getValorUnidad() != null ? dto.getValorUnidad() : 0);
             row.getCell(8).setCellStyle(currencyStyle);
-            List<Object[]> data = conceptoCobroRepository.findAplicaIvaData();
-            Map<Integer, Boolean> aplicaIvaMap = data.stream()
-                    .collect(Collectors.toMap(
-                            result -> (Integer) result[0],  // c.id
-                            result -> (Boolean) result[1]   // c.aplicaIva
-                    ));
             // ═══════════════════════════════════════
             // TOTALES PRINCIPALES (Columnas 9-13)
             // ═══════════════════════════════════════
@@ -578,9 +595,27 @@ public class ReporteFinancieroController {
         // Agregar filtros en las columnas principales
         sheet.setAutoFilter(new CellRangeAddress(2, 2, 0, 19));
 
+        escribirLibro(workbook, response);
+    }
+
+    /**
+     * Libro que mantiene en memoria solo las últimas filas; las anteriores se vacían a un archivo
+     * temporal comprimido, así la memoria no depende del número de unidades del mes.
+     * Las hojas deben llamar trackAllColumnsForAutoSizing() antes de escribir filas para que
+     * autoSizeColumn mida también las filas ya vaciadas.
+     */
+    private SXSSFWorkbook nuevoLibroEnStreaming() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(FILAS_EN_MEMORIA);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+
+    private void escribirLibro(SXSSFWorkbook workbook, HttpServletResponse response) throws IOException {
         try {
             workbook.write(response.getOutputStream());
         } finally {
+            // Borra los archivos temporales de las filas vaciadas
+            workbook.dispose();
             workbook.close();
         }
     }
@@ -593,173 +628,6 @@ public class ReporteFinancieroController {
         style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
         return style;
     }
-    private void agregarDesgloseLateral(Sheet sheet, Workbook workbook) {
-        CellStyle textStyle = crearEstiloTexto(workbook);
-        CellStyle currencyStyle = crearEstiloMoneda(workbook);
-        CellStyle numberStyle = crearEstiloNumero(workbook);
-
-        // AMDA - Primera fila de desglose (fila 3)
-        Row amdaRow = getOrCreateRow(sheet, 3);
-        Cell amdaName = amdaRow.createCell(14);
-        amdaName.setCellValue("AMDA");
-        amdaName.setCellStyle(textStyle);
-
-        Cell amdaValue = amdaRow.createCell(15);
-        amdaValue.setCellValue(103.00);
-        amdaValue.setCellStyle(currencyStyle);
-
-        Cell amdaIVA = amdaRow.createCell(16);
-        amdaIVA.setCellValue("SIN I.V.A.");
-        amdaIVA.setCellStyle(textStyle);
-
-        Cell amdaPercent = amdaRow.createCell(17);
-        amdaPercent.setCellValue("%");
-        amdaPercent.setCellStyle(textStyle);
-
-        Cell amdaPercentValue = amdaRow.createCell(18);
-        amdaPercentValue.setCellValue(03.24);
-        amdaPercentValue.setCellStyle(numberStyle);
-
-        // ASOCIACION - Segunda fila de desglose (fila 4)
-        Row asociacionRow = getOrCreateRow(sheet, 4);
-        Cell asociacionName = asociacionRow.createCell(14);
-        asociacionName.setCellValue("ASOCIACION");
-        asociacionName.setCellStyle(textStyle);
-
-        Cell asociacionValue = asociacionRow.createCell(15);
-        asociacionValue.setCellValue(1200.00);
-        asociacionValue.setCellStyle(currencyStyle);
-
-        Cell asociacionIVA = asociacionRow.createCell(16);
-        asociacionIVA.setCellValue("SIN I.V.A.");
-        asociacionIVA.setCellStyle(textStyle);
-
-        Cell asociacionPercentValue = asociacionRow.createCell(18);
-        asociacionPercentValue.setCellValue(1000);
-        asociacionPercentValue.setCellStyle(numberStyle);
-
-        // CONVENCION - Tercera fila de desglose (fila 5)
-        Row convencionRow = getOrCreateRow(sheet, 5);
-        Cell convencionName = convencionRow.createCell(14);
-        convencionName.setCellValue("CONVENCION");
-        convencionName.setCellStyle(textStyle);
-
-        Cell convencionValue = convencionRow.createCell(15);
-        convencionValue.setCellValue(1500.00);
-        convencionValue.setCellStyle(currencyStyle);
-
-        Cell convencionIVA = convencionRow.createCell(16);
-        convencionIVA.setCellValue("SIN I.V.A.");
-        convencionIVA.setCellStyle(textStyle);
-
-        Cell financieraName = convencionRow.createCell(17);
-        financieraName.setCellValue("FINANCIERA");
-        financieraName.setCellStyle(textStyle);
-
-        Cell financieraValue = convencionRow.createCell(18);
-        financieraValue.setCellValue(3855.50);
-        financieraValue.setCellStyle(currencyStyle);
-
-        // Valor adicional - Cuarta fila (fila 6)
-        Row additionalRow = getOrCreateRow(sheet, 6);
-        Cell additionalValue = additionalRow.createCell(15);
-        additionalValue.setCellValue(2803.00);
-        additionalValue.setCellStyle(currencyStyle);
-
-        // CAPACITACION - Quinta fila (fila 8)
-        Row capacitacionRow = getOrCreateRow(sheet, 8);
-        Cell capacitacionName = capacitacionRow.createCell(14);
-        capacitacionName.setCellValue("CAPACITACION");
-        capacitacionName.setCellStyle(textStyle);
-
-        Cell capacitacionValue = capacitacionRow.createCell(15);
-        capacitacionValue.setCellValue(9280.00);
-        capacitacionValue.setCellStyle(currencyStyle);
-
-        Cell capacitacionIVA = capacitacionRow.createCell(16);
-        capacitacionIVA.setCellValue("CON I.V.A.");
-        capacitacionIVA.setCellStyle(textStyle);
-
-        Cell capacitacionPercent = capacitacionRow.createCell(17);
-        capacitacionPercent.setCellValue("%");
-        capacitacionPercent.setCellStyle(textStyle);
-
-        Cell capacitacionPercentValue = capacitacionRow.createCell(18);
-        capacitacionPercentValue.setCellValue(1.34);
-        capacitacionPercentValue.setCellStyle(numberStyle);
-
-        Cell capacitacionTraslado = capacitacionRow.createCell(19);
-        capacitacionTraslado.setCellValue(22900.00);
-        capacitacionTraslado.setCellStyle(currencyStyle);
-
-        // PUBLICIDAD - Sexta fila (fila 9)
-        Row publicidadRow = getOrCreateRow(sheet, 9);
-        Cell publicidadName = publicidadRow.createCell(14);
-        publicidadName.setCellValue("PUBLICIDAD");
-        publicidadName.setCellStyle(textStyle);
-
-        Cell publicidadValue = publicidadRow.createCell(15);
-        publicidadValue.setCellValue(5800.00);
-        publicidadValue.setCellStyle(currencyStyle);
-
-        Cell publicidadIVA = publicidadRow.createCell(16);
-        publicidadIVA.setCellValue("CON I.V.A.");
-        publicidadIVA.setCellStyle(textStyle);
-
-        Cell publicidadPercentValue = publicidadRow.createCell(18);
-        publicidadPercentValue.setCellValue(1000);
-        publicidadPercentValue.setCellStyle(numberStyle);
-
-        Cell publicidadTraslado = publicidadRow.createCell(19);
-        publicidadTraslado.setCellValue(1.16);
-        publicidadTraslado.setCellStyle(numberStyle);
-
-        // Total parcial - Séptima fila (fila 10)
-        Row subTotalRow = getOrCreateRow(sheet, 10);
-        Cell subTotalValue = subTotalRow.createCell(15);
-        subTotalValue.setCellValue(15080.00);
-        subTotalValue.setCellStyle(currencyStyle);
-
-        // Total final con todos los valores - Octava fila (fila 11)
-        Row totalRow = getOrCreateRow(sheet, 11);
-
-        // Estilos para valores coloreados
-        CellStyle yellowTotalStyle = crearEstiloMoneda(workbook);
-        yellowTotalStyle.setFillForegroundColor(IndexedColors.YELLOW.getIndex());
-        yellowTotalStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-        Cell totalValue = totalRow.createCell(15);
-        totalValue.setCellValue(17883.00);
-        totalValue.setCellStyle(yellowTotalStyle);
-
-        Cell aseguradoraName = totalRow.createCell(17);
-        aseguradoraName.setCellValue("ASEGURADORA");
-        aseguradoraName.setCellStyle(textStyle);
-
-        CellStyle blueTotalStyle = crearEstiloMoneda(workbook);
-        blueTotalStyle.setFillForegroundColor(IndexedColors.LIGHT_BLUE.getIndex());
-        blueTotalStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-        Cell aseguradoraValue = totalRow.createCell(18);
-        aseguradoraValue.setCellValue(1594.56);
-        aseguradoraValue.setCellStyle(blueTotalStyle);
-
-        CellStyle greenTotalStyle = crearEstiloMoneda(workbook);
-        greenTotalStyle.setFillForegroundColor(IndexedColors.BRIGHT_GREEN.getIndex());
-        greenTotalStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-        Cell trasladoTotal = totalRow.createCell(19);
-        trasladoTotal.setCellValue(26564.00);
-        trasladoTotal.setCellStyle(greenTotalStyle);
-
-        CellStyle goldTotalStyle = crearEstiloMoneda(workbook);
-        goldTotalStyle.setFillForegroundColor(IndexedColors.GOLD.getIndex());
-        goldTotalStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-        Cell estrellaTotal = totalRow.createCell(20);
-        estrellaTotal.setCellValue(46162.58);
-        estrellaTotal.setCellStyle(goldTotalStyle);
-    }
 
     /**
      * Manejador de excepciones para errores de conversión de parámetros
@@ -832,15 +700,6 @@ public class ReporteFinancieroController {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
 
-    // Método auxiliar para obtener una fila existente o crear una nueva si no existe
-    private Row getOrCreateRow(Sheet sheet, int rowNum) {
-        Row row = sheet.getRow(rowNum);
-        if (row == null) {
-            row = sheet.createRow(rowNum);
-        }
-        return row;
-    }
-
     private CellStyle crearEstiloTitulo(Workbook workbook) {
         CellStyle style = workbook.createCellStyle();
         Font font = workbook.createFont();
@@ -983,7 +842,7 @@ public class ReporteFinancieroController {
                 Integer id = entry.getKey();
                 String descripcion = entry.getValue();
 
-                boolean existe = conceptoCobroRepository.findById(id).isPresent();
+                boolean existe = catalogoConceptos.porId(id).isPresent();
                 estadoConceptos.put("ID_" + id + "_" + descripcion, existe ? "✅ EXISTE" : "❌ FALTA");
 
                 if (!existe) {
@@ -1215,7 +1074,7 @@ public class ReporteFinancieroController {
             List<Integer> idsFaltantes = new ArrayList<>();
 
             for (Integer id : idsEsperados) {
-                if (!conceptoCobroRepository.findById(id).isPresent()) {
+                if (!catalogoConceptos.porId(id).isPresent()) {
                     idsFaltantes.add(id);
                 }
             }
@@ -6,7 +6,7 @@ import lombok.Data;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "cobro_detalle")
+@Table(name = "cobro_detalle", indexes = @Index(name = "idx_cobro_detalle_archivo_origen", columnList = "archivo_origen"))
 @Data
 public class CobroDetalle {
     @Id
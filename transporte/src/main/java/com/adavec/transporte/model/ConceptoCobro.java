@@ -9,6 +9,7 @@ import java.util.Date;
 
 @Entity
 @Table(name = "concepto_cobro")
+@EntityListeners(ConceptoCobroListener.class)
 @Data
 public class ConceptoCobro {
     @Id
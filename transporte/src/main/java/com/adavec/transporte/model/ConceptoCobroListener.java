@@ -0,0 +1,28 @@
+package com.adavec.transporte.model;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Avisa de los cambios en conceptos de cobro para que se refresquen los catálogos en memoria.
+ * Hibernate obtiene esta clase del contexto de Spring, por eso puede recibir dependencias.
+ */
+@Component
+public class ConceptoCobroListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    public ConceptoCobroListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void alCambiar(ConceptoCobro concepto) {
+        publisher.publishEvent(new ConceptoCobroModificadoEvent(concepto.getId()));
+    }
+}
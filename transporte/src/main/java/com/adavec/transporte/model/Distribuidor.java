@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "distribuidor")
+@Table(name = "distribuidor", uniqueConstraints = @UniqueConstraint(name = "uk_distribuidor_clave", columnNames = "ClaveDistribuidora"))
 @Data
 @ToString(exclude = {"unidades"}) // ✅ Excluir la colección
 @EqualsAndHashCode(exclude = {"unidades"})
@@ -6,7 +6,7 @@ import lombok.Data;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "fechas_cobros")
+@Table(name = "fechas_cobros", indexes = @Index(name = "idx_fechas_cobros_fecha_traslado", columnList = "fecha_traslado"))
 @Data
 public class FechasCobros {
 
@@ -0,0 +1,103 @@
+package com.adavec.transporte.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Archivo TXT importado, identificado por el SHA-256 de su contenido.
+ * Guarda el resumen de la importación terminada para devolverlo si se vuelve a subir
+ * el mismo archivo, y los contadores acumulados de los lotes ya confirmados para
+ * reanudar un intento que quedó a medias. Si la importación era asíncrona también guarda
+ * la ruta de la copia del archivo, para reanudarla sola después de un reinicio.
+ */
+@Entity
+@Table(name = "importacion_archivo",
+        uniqueConstraints = @UniqueConstraint(name = "uk_importacion_archivo_hash", columnNames = "hash"))
+@Data
+public class ImportacionArchivo {
+
+    public enum Estado { EN_PROCESO, COMPLETADA, FALLIDA, REVERTIDA }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "hash", nullable = false, length = 64)
+    private String hash;
+
+    @Column(name = "nombre_archivo")
+    private String nombreArchivo;
+
+    @Column(name = "tamano_bytes")
+    private Long tamanoBytes;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado", nullable = false, length = 20)
+    private Estado estado;
+
+    // Particiones con las que se registraron los puntos de control (1 = secuencial)
+    @Column(name = "particiones", nullable = false)
+    private Integer particiones;
+
+    // Todas las líneas hasta esta ya están confirmadas, sin importar la partición
+    @Column(name = "linea_base", nullable = false)
+    private Integer lineaBase;
+
+    // Byte donde termina la línea base
+    @Column(name = "desplazamiento_base", nullable = false)
+    private Long desplazamientoBase;
+
+    // Copia del archivo mientras la importación asíncrona no termina
+    @Column(name = "ruta_archivo", length = 500)
+    private String rutaArchivo;
+
+    @Column(name = "intentos", nullable = false)
+    private Integer intentos;
+
+    // Modo actualización: los VIN existentes se actualizan en lugar de rechazarse
+    @Column(name = "actualizar_existentes", nullable = false)
+    private Boolean actualizarExistentes;
+
+    // Contadores de los lotes confirmados; se actualizan en la transacción de cada lote
+    @Column(name = "lineas_procesadas", nullable = false)
+    private Integer lineasProcesadas;
+
+    @Column(name = "unidades_importadas", nullable = false)
+    private Integer unidadesImportadas;
+
+    @Column(name = "unidades_actualizadas", nullable = false)
+    private Integer unidadesActualizadas;
+
+    @Column(name = "unidades_sin_cambios", nullable = false)
+    private Integer unidadesSinCambios;
+
+    @Column(name = "conceptos_aplicados", nullable = false)
+    private Integer conceptosAplicados;
+
+    @Column(name = "desglose_completo", nullable = false)
+    private Integer desgloseCompleto;
+
+    @Column(name = "tarifa_unica_detectada", nullable = false)
+    private Integer tarifaUnicaDetectada;
+
+    @Column(name = "unidades_exentas", nullable = false)
+    private Integer unidadesExentas;
+
+    @Column(name = "codigo_respuesta")
+    private Integer codigoRespuesta;
+
+    // Cuerpo JSON de la respuesta de la importación terminada
+    @Column(name = "resumen", columnDefinition = "LONGTEXT")
+    private String resumen;
+
+    @Column(name = "mensaje_error", length = 1000)
+    private String mensajeError;
+
+    @Column(name = "fecha_inicio")
+    private LocalDateTime fechaInicio;
+
+    @Column(name = "fecha_fin")
+    private LocalDateTime fechaFin;
+}
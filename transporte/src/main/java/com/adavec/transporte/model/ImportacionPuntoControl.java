@@ -0,0 +1,34 @@
+package com.adavec.transporte.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Última línea confirmada de una partición de la importación de un archivo.
+ * Las líneas de cada partición se confirman en orden, así que todas las de esa
+ * partición hasta este número ya están guardadas.
+ */
+@Entity
+@Table(name = "importacion_punto_control",
+        uniqueConstraints = @UniqueConstraint(name = "uk_punto_control_archivo_particion",
+                columnNames = {"archivo_id", "particion"}))
+@Data
+public class ImportacionPuntoControl {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "archivo_id", nullable = false)
+    private Integer archivoId;
+
+    @Column(name = "particion", nullable = false)
+    private Integer particion;
+
+    @Column(name = "ultima_linea", nullable = false)
+    private Integer ultimaLinea;
+
+    // Byte donde termina la última línea, en el contenido ya descomprimido
+    @Column(name = "desplazamiento", nullable = false)
+    private Long desplazamiento;
+}
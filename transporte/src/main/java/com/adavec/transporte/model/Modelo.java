@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
-@Table(name = "modelo")
+@Table(name = "modelo", uniqueConstraints = @UniqueConstraint(name = "uk_modelo_nombre", columnNames = "Nombre"))
 @Data
 public class Modelo {
 
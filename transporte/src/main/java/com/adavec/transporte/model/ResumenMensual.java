@@ -0,0 +1,31 @@
+package com.adavec.transporte.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mes con resumen generado y la huella de sus fechas_cobros al generarlo.
+ * fechas_cobros se carga fuera de la aplicación: si la huella actual ya no coincide,
+ * el resumen del mes se regenera antes de leerlo.
+ */
+@Entity
+@Table(name = "resumen_mensual")
+@Data
+public class ResumenMensual {
+
+    // "yyyy-MM"
+    @Id
+    @Column(name = "mes", length = 7)
+    private String mes;
+
+    @Column(name = "registros_fechas", nullable = false)
+    private Long registrosFechas;
+
+    @Column(name = "huella_fechas", nullable = false)
+    private Long huellaFechas;
+
+    @Column(name = "fecha_generacion", nullable = false)
+    private LocalDateTime fechaGeneracion;
+}
@@ -0,0 +1,100 @@
+package com.adavec.transporte.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Fila ya calculada del reporte financiero: una por unidad y mes de traslado.
+ * Guarda los datos de la unidad, el registro de fechas_cobros del mes con la fecha de proceso
+ * más reciente y el desglose de cobro_detalle sumado por concepto con el IVA aplicado, así el
+ * reporte de un mes se lee del índice (mes, orden) sin joins ni agregaciones.
+ * <p>
+ * Se mantiene en la misma transacción que escribe la unidad, sus cobros o sus seguros; no
+ * tiene llaves foráneas para que borrar una unidad no dependa de esta tabla.
+ */
+@Entity
+@Table(name = "resumen_mensual_unidad",
+        uniqueConstraints = @UniqueConstraint(name = "uk_resumen_mensual_unidad_mes", columnNames = {"unidad_id", "mes"}),
+        indexes = @Index(name = "idx_resumen_mensual_mes_orden", columnList = "mes, orden"))
+@Data
+public class ResumenMensualUnidad {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "unidad_id", nullable = false)
+    private Integer unidadId;
+
+    // Mes de fecha_traslado, "yyyy-MM"
+    @Column(name = "mes", nullable = false, length = 7)
+    private String mes;
+
+    // Primer registro de fechas_cobros de la unidad en el mes; da el orden del reporte
+    @Column(name = "orden", nullable = false)
+    private Integer orden;
+
+    @Column(name = "no_serie")
+    private String noSerie;
+
+    @Column(name = "modelo")
+    private String modelo;
+
+    @Column(name = "clave_distribuidor")
+    private String claveDistribuidor;
+
+    @Column(name = "distribuidora")
+    private String distribuidora;
+
+    @Column(name = "numero_factura")
+    private String numeroFactura;
+
+    @Column(name = "valor_unidad", nullable = false)
+    private Double valorUnidad;
+
+    @Column(name = "fecha_traslado")
+    private LocalDate fechaTraslado;
+
+    @Column(name = "fecha_interes")
+    private LocalDate fechaInteres;
+
+    @Column(name = "dias", nullable = false)
+    private Integer dias;
+
+    @Column(name = "fecha_proceso")
+    private LocalDate fechaProceso;
+
+    // Montos por ID de concepto, con IVA si el concepto lo aplica
+    @Column(name = "concepto_1", nullable = false)
+    private Double concepto1;
+
+    @Column(name = "concepto_2", nullable = false)
+    private Double concepto2;
+
+    @Column(name = "concepto_3", nullable = false)
+    private Double concepto3;
+
+    @Column(name = "concepto_4", nullable = false)
+    private Double concepto4;
+
+    @Column(name = "concepto_5", nullable = false)
+    private Double concepto5;
+
+    @Column(name = "concepto_6", nullable = false)
+    private Double concepto6;
+
+    @Column(name = "concepto_7", nullable = false)
+    private Double concepto7;
+
+    @Column(name = "concepto_8", nullable = false)
+    private Double concepto8;
+
+    @Column(name = "concepto_9", nullable = false)
+    private Double concepto9;
+
+    @Column(name = "fecha_actualizacion", nullable = false)
+    private LocalDateTime fechaActualizacion;
+}
@@ -7,6 +7,7 @@ import java.time.LocalDate;
 
 @Entity
 @Table(name = "tarifa_concepto")
+@EntityListeners(TarifaConceptoListener.class)
 @Data
 public class TarifaConcepto {
     @Id
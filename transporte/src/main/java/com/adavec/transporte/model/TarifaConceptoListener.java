@@ -0,0 +1,27 @@
+package com.adavec.transporte.model;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Avisa de los cambios en tarifas para que se reconstruya el índice de tarifas vigentes
+ */
+@Component
+public class TarifaConceptoListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    public TarifaConceptoListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void alCambiar(TarifaConcepto tarifa) {
+        publisher.publishEvent(new TarifaConceptoModificadaEvent(tarifa.getId()));
+    }
+}
@@ -0,0 +1,7 @@
+package com.adavec.transporte.model;
+
+/**
+ * Se publica cuando se crea, modifica o elimina un periodo de tarifa
+ */
+public record TarifaConceptoModificadaEvent(Integer tarifaId) {
+}
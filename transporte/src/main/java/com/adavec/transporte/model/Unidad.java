@@ -10,7 +10,7 @@ import java.time.LocalDate;
 import java.util.List;
 
 @Entity
-@Table(name = "unidad")
+@Table(name = "unidad", indexes = @Index(name = "idx_unidad_archivo_origen", columnList = "archivo_origen"))
 @Data
 @ToString(exclude = {"distribuidor", "seguros", "cobros"}) // ✅ Excluir relaciones
 @EqualsAndHashCode(exclude = {"distribuidor", "seguros", "cobros"})
@@ -49,6 +49,10 @@ public class Unidad {
     @Column(name = "Valor_unidad")
     private Double valorUnidad;
 
+    // Archivo TXT que creó la unidad; permite revertir la importación completa
+    @Column(name = "archivo_origen")
+    private String archivoOrigen;
+
     @OneToMany(mappedBy = "unidad", cascade = CascadeType.ALL, orphanRemoval = true)
 
     private List<Seguro> seguros;
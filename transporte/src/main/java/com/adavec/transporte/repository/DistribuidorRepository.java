@@ -3,6 +3,7 @@ package com.adavec.transporte.repository;
 import com.adavec.transporte.model.Distribuidor;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,6 +11,6 @@ public interface DistribuidorRepository extends JpaRepository<Distribuidor, Inte
     List<Distribuidor> findByClaveDistribuidoraContainingIgnoreCase(String clave);
     Optional<Distribuidor> findFirstByClaveDistribuidora(String clave);
     Optional<Distribuidor> findByClaveDistribuidora(String claveDistribuidora);
-
+    List<Distribuidor> findByClaveDistribuidoraInOrderByIdAsc(Collection<String> claves);
 
 }
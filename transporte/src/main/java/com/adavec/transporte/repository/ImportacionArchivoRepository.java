@@ -0,0 +1,15 @@
+package com.adavec.transporte.repository;
+
+import com.adavec.transporte.model.ImportacionArchivo;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ImportacionArchivoRepository extends JpaRepository<ImportacionArchivo, Integer> {
+    Optional<ImportacionArchivo> findByHash(String hash);
+
+    List<ImportacionArchivo> findByEstadoAndRutaArchivoIsNotNull(ImportacionArchivo.Estado estado);
+
+    List<ImportacionArchivo> findByNombreArchivo(String nombreArchivo);
+}
@@ -0,0 +1,19 @@
+package com.adavec.transporte.repository;
+
+import com.adavec.transporte.model.ImportacionPuntoControl;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface ImportacionPuntoControlRepository extends JpaRepository<ImportacionPuntoControl, Integer> {
+    List<ImportacionPuntoControl> findByArchivoId(Integer archivoId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ImportacionPuntoControl p WHERE p.archivoId = :archivoId")
+    void eliminarPorArchivo(@Param("archivoId") Integer archivoId);
+}
@@ -8,6 +8,7 @@ import java.util.List;
 public interface SeguroRepository extends JpaRepository<Seguro, Integer> {
     Seguro findByUnidadId(Integer unidadId);
     List<Seguro> findByFacturaContainingIgnoreCase(String factura);
+    List<Seguro> findByFactura(String factura);
     void deleteByFactura(String factura);
     boolean existsByFactura(String factura);
 
@@ -28,6 +28,12 @@ public interface TarifaConceptoRepository extends JpaRepository<TarifaConcepto,
 
     List<TarifaConcepto> findByConceptoIdOrderByFechaInicioDesc(Integer conceptoId);
 
+    /**
+     * Tarifas activas con su concepto, para construir el índice de tarifas vigentes
+     */
+    @Query("SELECT t FROM TarifaConcepto t JOIN FETCH t.concepto WHERE t.activo = true")
+    List<TarifaConcepto> findActivasConConcepto();
+
     @Query("SELECT t FROM TarifaConcepto t WHERE t.concepto.id = :conceptoId AND t.fechaFin IS NULL")
     Optional<TarifaConcepto> findTarifaActualByConceptoId(@Param("conceptoId") Integer conceptoId);
 
@@ -3,8 +3,11 @@ package com.adavec.transporte.repository;
 import com.adavec.transporte.model.Seguro;
 import com.adavec.transporte.model.Unidad;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,4 +19,10 @@ public interface UnidadRepository extends JpaRepository<Unidad, Integer> {
 
 
     boolean existsByNoSerie(String noSerie);
+
+    /**
+     * Devuelve cuáles de los VIN dados ya existen; una sola consulta por lote de importación
+     */
+    @Query("SELECT u.noSerie FROM Unidad u WHERE u.noSerie IN :noSeries")
+    List<String> findNoSeriesExistentes(@Param("noSeries") Collection<String> noSeries);
 }
@@ -75,6 +75,8 @@ public class SecurityConfig {
 
                         // Importación/Reportes
                         .requestMatchers(HttpMethod.POST, "/api/importar/**").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/api/importar/**").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.DELETE, "/api/importar/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.GET, "/api/reportes/**").hasRole("ADMIN")
 
                         // Cualquier otra ruta
@@ -0,0 +1,58 @@
+package com.adavec.transporte.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Un valor calculado completo que se reemplaza de una vez: se carga en la primera consulta,
+ * se descarta al invalidarlo y, como respaldo, se vuelve a cargar cuando pasa su vigencia.
+ * El valor debe ser inmutable, porque se comparte entre todos los hilos.
+ */
+final class CacheInstantanea<T> {
+
+    private record Instantanea<T>(T valor, long cargadoNanos) {
+    }
+
+    private final Supplier<T> cargar;
+    private final long vigenciaNanos;
+
+    private volatile Instantanea<T> instantanea;
+    // Cambia en cada invalidación; una carga que se cruzó con un cambio no se guarda
+    private final AtomicLong version = new AtomicLong();
+
+    CacheInstantanea(Duration vigencia, Supplier<T> cargar) {
+        this.cargar = cargar;
+        this.vigenciaNanos = vigencia.toNanos();
+    }
+
+    T obtener() {
+        Instantanea<T> actual = instantanea;
+        if (vigente(actual)) {
+            return actual.valor();
+        }
+        synchronized (this) {
+            actual = instantanea;
+            if (!vigente(actual)) {
+                long versionCarga = version.get();
+                actual = new Instantanea<>(cargar.get(), System.nanoTime());
+                if (version.get() == versionCarga) {
+                    instantanea = actual;
+                }
+            }
+            return actual.valor();
+        }
+    }
+
+    /**
+     * Descarta el valor; la siguiente consulta lo vuelve a cargar
+     */
+    void invalidar() {
+        version.incrementAndGet();
+        instantanea = null;
+    }
+
+    private boolean vigente(Instantanea<T> actual) {
+        return actual != null && System.nanoTime() - actual.cargadoNanos() < vigenciaNanos;
+    }
+}
@@ -0,0 +1,152 @@
+package com.adavec.transporte.service;
+
+import com.adavec.transporte.dto.ReporteFinancieroDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Filas del reporte financiero en memoria por mes, para no recalcularlas en cada descarga.
+ * Guarda por separado las filas reportables y el conjunto completo del mes, hasta el número de
+ * entradas configurado; al llenarse descarta la menos usada.
+ * <p>
+ * Cada escritura que toca unidades invalida los meses de esas unidades al confirmarse su
+ * transacción. Los cambios hechos fuera de la aplicación solo se detectan al verificar el mes,
+ * lo que ocurre al cargarlo y, para una entrada ya guardada, cuando pasa su vigencia.
+ * Las listas devueltas son compartidas: no se deben modificar.
+ */
+@Component
+public class CacheReporteFinanciero {
+
+    private record Clave(YearMonth mes, boolean soloReportables) {
+    }
+
+    private record Entrada(List<ReporteFinancieroDTO> filas, long cargadaNanos) {
+    }
+
+    private final int entradasMaximas;
+    private final long vigenciaNanos;
+    private final Map<Clave, Entrada> entradas;
+    // Cambia en cada invalidación; una carga que se cruzó con un cambio no se guarda
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+
+    public CacheReporteFinanciero(@Value("${app.reportes.cache.entradas-maximas:24}") int entradasMaximas,
+                                  @Value("${app.reportes.cache.verificar-fechas-minutos:5}") long verificarMinutos) {
+        this.entradasMaximas = Math.max(1, entradasMaximas);
+        this.vigenciaNanos = Duration.ofMinutes(verificarMinutos).toNanos();
+        // En orden de acceso: la primera entrada es la menos usada
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Clave, Entrada> mayor) {
+                boolean descartar = size() > CacheReporteFinanciero.this.entradasMaximas;
+                if (descartar) {
+                    descartadas.incrementAndGet();
+                }
+                return descartar;
+            }
+        };
+    }
+
+    /**
+     * Filas del mes desde la caché o, si no están o pasó su vigencia, las que devuelve la carga.
+     * La verificación corre solo en ese caso, antes de la carga; si invalida el mes no descarta la carga.
+     */
+    public List<ReporteFinancieroDTO> obtener(YearMonth mes, boolean soloReportables, Runnable verificar,
+                                              Supplier<List<ReporteFinancieroDTO>> cargar) {
+        Clave clave = new Clave(mes, soloReportables);
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(clave);
+            if (entrada != null && System.nanoTime() - entrada.cargadaNanos() < vigenciaNanos) {
+                aciertos.incrementAndGet();
+                return entrada.filas();
+            }
+        }
+        fallos.incrementAndGet();
+        verificar.run();
+
+        // La consulta corre fuera del candado; dos descargas simultáneas del mismo mes pueden calcularlo dos veces
+        long versionCarga = version.get();
+        long cargadaNanos = System.nanoTime();
+        List<ReporteFinancieroDTO> filas = Collections.unmodifiableList(new ArrayList<>(cargar.get()));
+        synchronized (entradas) {
+            if (version.get() == versionCarga) {
+                entradas.put(clave, new Entrada(filas, cargadaNanos));
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Invalida los meses al confirmarse la transacción en curso, o de inmediato si no hay una.
+     * Antes de confirmar otra lectura todavía vería los datos anteriores y los volvería a guardar.
+     */
+    public void invalidarAlConfirmar(Collection<YearMonth> meses) {
+        if (meses.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidar(meses);
+            return;
+        }
+        Set<YearMonth> pendientes = new HashSet<>(meses);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidar(pendientes);
+            }
+        });
+    }
+
+    public void invalidar(Collection<YearMonth> meses) {
+        version.incrementAndGet();
+        synchronized (entradas) {
+            for (YearMonth mes : meses) {
+                int antes = entradas.size();
+                entradas.remove(new Clave(mes, true));
+                entradas.remove(new Clave(mes, false));
+                invalidaciones.addAndGet(antes - entradas.size());
+            }
+        }
+    }
+
+    public void invalidarTodo() {
+        version.incrementAndGet();
+        synchronized (entradas) {
+            invalidaciones.addAndGet(entradas.size());
+            entradas.clear();
+        }
+    }
+
+    public Map<String, Object> estadisticas() {
+        long totalAciertos = aciertos.get();
+        long totalFallos = fallos.get();
+        long consultas = totalAciertos + totalFallos;
+
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        synchronized (entradas) {
+            estadisticas.put("entradas", entradas.size());
+            estadisticas.put("meses", entradas.keySet().stream()
+                    .map(clave -> clave.mes().toString() + (clave.soloReportables() ? "" : " (completo)"))
+                    .toList());
+        }
+        estadisticas.put("entradasMaximas", entradasMaximas);
+        estadisticas.put("verificarFechasMinutos", Duration.ofNanos(vigenciaNanos).toMinutes());
+        estadisticas.put("aciertos", totalAciertos);
+        estadisticas.put("fallos", totalFallos);
+        estadisticas.put("porcentajeAciertos", consultas > 0 ? Math.round(totalAciertos * 1000.0 / consultas) / 10.0 : 0.0);
+        estadisticas.put("invalidaciones", invalidaciones.get());
+        estadisticas.put("descartadasPorEspacio", descartadas.get());
+        return estadisticas;
+    }
+}
@@ -0,0 +1,145 @@
+package com.adavec.transporte.service;
+
+import com.adavec.transporte.model.ConceptoCobro;
+import com.adavec.transporte.model.ConceptoCobroModificadoEvent;
+import com.adavec.transporte.repository.ConceptoCobroRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Catálogo en memoria de los conceptos de cobro, con búsqueda por nombre y por id.
+ * Se carga completo con una consulta y se descarta al confirmarse cualquier alta,
+ * cambio o baja de un concepto; como respaldo ante cambios hechos directamente en
+ * la BD se vuelve a cargar cuando pasa el tiempo configurado.
+ * Guarda valores inmutables y cada consulta devuelve una copia del concepto, que el
+ * llamador puede modificar sin afectar al catálogo.
+ */
+@Service
+public class CatalogoConceptosService {
+
+    private final ConceptoCobroRepository conceptoRepository;
+    private final CacheInstantanea<Catalogo> catalogo;
+
+    /**
+     * Valores de un concepto tal como se cargaron
+     */
+    record Concepto(Integer id, String nombre, String descripcion, boolean aplicaIva, boolean activo,
+                    LocalDateTime fechaCreacion, ConceptoCobro.TipoCalculo tipoCalculo) {
+
+        static Concepto de(ConceptoCobro concepto) {
+            return new Concepto(concepto.getId(), concepto.getNombre(), concepto.getDescripcion(),
+                    concepto.isAplicaIva(), concepto.isActivo(), concepto.getFechaCreacion(), concepto.getTipoCalculo());
+        }
+
+        ConceptoCobro aEntidad() {
+            ConceptoCobro concepto = new ConceptoCobro();
+            concepto.setId(id);
+            concepto.setNombre(nombre);
+            concepto.setDescripcion(descripcion);
+            concepto.setAplicaIva(aplicaIva);
+            concepto.setActivo(activo);
+            concepto.setFechaCreacion(fechaCreacion);
+            concepto.setTipoCalculo(tipoCalculo);
+            return concepto;
+        }
+    }
+
+    private record Catalogo(Map<String, Concepto> porNombre,
+                            Map<Integer, Concepto> porId,
+                            List<Concepto> activos,
+                            Map<Integer, Boolean> aplicaIva) {
+    }
+
+    public CatalogoConceptosService(ConceptoCobroRepository conceptoRepository,
+                                    @Value("${app.conceptos.cache-minutos:10}") long cacheMinutos) {
+        this.conceptoRepository = conceptoRepository;
+        this.catalogo = new CacheInstantanea<>(Duration.ofMinutes(cacheMinutos), this::cargar);
+    }
+
+    /**
+     * Concepto por nombre, sin distinguir mayúsculas ni espacios finales (igual que MySQL)
+     */
+    public Optional<ConceptoCobro> porNombre(String nombre) {
+        if (nombre == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(catalogo.obtener().porNombre().get(normalizar(nombre))).map(Concepto::aEntidad);
+    }
+
+    public Optional<ConceptoCobro> porId(Integer id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(catalogo.obtener().porId().get(id)).map(Concepto::aEntidad);
+    }
+
+    /**
+     * Conceptos activos ordenados por id
+     */
+    public List<ConceptoCobro> activos() {
+        return catalogo.obtener().activos().stream().map(Concepto::aEntidad).toList();
+    }
+
+    /**
+     * Todos los conceptos ordenados por id
+     */
+    public Collection<ConceptoCobro> todos() {
+        return catalogo.obtener().porId().values().stream().map(Concepto::aEntidad).toList();
+    }
+
+    /**
+     * Indica por id de concepto si se le aplica IVA
+     */
+    public Map<Integer, Boolean> aplicaIvaPorId() {
+        return catalogo.obtener().aplicaIva();
+    }
+
+    /**
+     * Descarta el catálogo; la siguiente consulta lo vuelve a cargar
+     */
+    public void invalidar() {
+        catalogo.invalidar();
+    }
+
+    /**
+     * Se ejecuta al confirmarse la transacción que modificó un concepto
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarConcepto(ConceptoCobroModificadoEvent evento) {
+        invalidar();
+        System.out.println("🔄 Catálogo de conceptos invalidado por cambio en concepto " + evento.conceptoId());
+    }
+
+    private Catalogo cargar() {
+        List<ConceptoCobro> conceptos = new ArrayList<>(conceptoRepository.findAll());
+        conceptos.sort(Comparator.comparing(ConceptoCobro::getId));
+
+        Map<String, Concepto> porNombre = new HashMap<>();
+        Map<Integer, Concepto> porId = new LinkedHashMap<>();
+        List<Concepto> activos = new ArrayList<>();
+        Map<Integer, Boolean> aplicaIva = new HashMap<>();
+        for (ConceptoCobro entidad : conceptos) {
+            Concepto concepto = Concepto.de(entidad);
+            porId.put(concepto.id(), concepto);
+            aplicaIva.put(concepto.id(), concepto.aplicaIva());
+            if (concepto.nombre() != null) {
+                porNombre.putIfAbsent(normalizar(concepto.nombre()), concepto);
+            }
+            if (concepto.activo()) {
+                activos.add(concepto);
+            }
+        }
+        System.out.println("📚 Catálogo de conceptos cargado: " + conceptos.size() + " conceptos");
+        return new Catalogo(Collections.unmodifiableMap(porNombre), Collections.unmodifiableMap(porId),
+                Collections.unmodifiableList(activos), Collections.unmodifiableMap(aplicaIva));
+    }
+
+    static String normalizar(String nombre) {
+        return nombre.stripTrailing().toUpperCase(Locale.ROOT);
+    }
+}
@@ -21,7 +21,7 @@ public class CobroDetalleService {
     private CobroDetalleRepository cobroDetalleRepository;
 
     @Autowired
-    private ConceptoCobroRepository conceptoRepository;
+    private CatalogoConceptosService catalogoConceptos;
 
     @Autowired
     private UnidadRepository unidadRepository;
@@ -34,6 +34,9 @@ public class CobroDetalleService {
     @Autowired
     private TarifaConceptoRepository tarifaConceptoRepository;
 
+    @Autowired
+    private ResumenMensualService resumenMensualService;
+
     // ==================================================
     // CREAR COBROS
     // ==================================================
@@ -49,7 +52,7 @@ public class CobroDetalleService {
         Unidad unidad = unidadRepository.findById(unidadId.intValue())
                 .orElseThrow(() -> new BusinessValidationException("Unidad no encontrada: " + unidadId));
 
-        ConceptoCobro concepto = conceptoRepository.findById(conceptoId)
+        ConceptoCobro concepto = catalogoConceptos.porId(conceptoId)
                 .orElseThrow(() -> new BusinessValidationException("Concepto no encontrado: " + conceptoId));
 
 
@@ -96,12 +99,16 @@ public class CobroDetalleService {
 
         System.out.println("💾 Guardando detalle..."); // ← Debug
 
-        return cobroDetalleRepository.save(detalle);
+        CobroDetalle guardado = cobroDetalleRepository.save(detalle);
+        resumenMensualService.recalcularUnidades(List.of(unidad.getId()));
+        return guardado;
     }
 
     // Método auxiliar para obtener conceptos que permiten cobro manual
     public List<ConceptoCobro> obtenerConceptosPermitidosParaCobroManual() {
-        return conceptoRepository.findByTipoCalculoAndActivoTrue(ConceptoCobro.TipoCalculo.MANUAL);
+        return catalogoConceptos.activos().stream()
+                .filter(concepto -> concepto.getTipoCalculo() == ConceptoCobro.TipoCalculo.MANUAL)
+                .toList();
     }
     // Método auxiliar para manejar las fechas
     private void crearOActualizarFechaCobro(Integer unidadId, LocalDate fechaTraslado, String archivoOrigen, Unidad unidad) {
@@ -243,7 +250,9 @@ public class CobroDetalleService {
         }
 
         cobro.setMontoAplicado(nuevoMonto);
-        return cobroDetalleRepository.save(cobro);
+        CobroDetalle guardado = cobroDetalleRepository.save(cobro);
+        resumenMensualService.recalcularUnidades(List.of(cobro.getUnidad().getId()));
+        return guardado;
     }
 
     // ==================================================
@@ -254,10 +263,10 @@ public class CobroDetalleService {
      * Eliminar un cobro específico
      */
     public void eliminarCobro(Integer cobroId) {
-        if (!cobroDetalleRepository.existsById(cobroId)) {
-            throw new BusinessValidationException("Cobro no encontrado: " + cobroId);
-        }
+        CobroDetalle cobro = cobroDetalleRepository.findById(cobroId)
+                .orElseThrow(() -> new BusinessValidationException("Cobro no encontrado: " + cobroId));
         cobroDetalleRepository.deleteById(cobroId);
+        resumenMensualService.recalcularUnidades(List.of(cobro.getUnidad().getId()));
     }
 
     /**
@@ -269,6 +278,7 @@ public class CobroDetalleService {
 
         if (cantidad > 0) {
             cobroDetalleRepository.deleteByUnidadId(unidadId);
+            resumenMensualService.recalcularUnidades(List.of(unidadId));
         }
 
         return cantidad;
@@ -378,7 +388,7 @@ public class CobroDetalleService {
         }
 
         // Validar concepto
-        Optional<ConceptoCobro> concepto = conceptoRepository.findById(conceptoId);
+        Optional<ConceptoCobro> concepto = catalogoConceptos.porId(conceptoId);
         if (!concepto.isPresent()) {
             errores.add("Concepto no encontrado");
         } else if (!concepto.get().isActivo()) {
@@ -500,6 +510,8 @@ public class CobroDetalleService {
             fechasCobrosRepository.save(fechaCobro);
         }
 
+        // Si cambió la fecha, la unidad puede pasar a otro mes del resumen
+        resumenMensualService.recalcularUnidades(List.of(cobro.getUnidad().getId()));
         return cobro;
     }
 }
\ No newline at end of file
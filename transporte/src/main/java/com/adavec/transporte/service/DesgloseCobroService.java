@@ -8,7 +8,6 @@ import com.adavec.transporte.model.ConceptoCobro;
 import com.adavec.transporte.model.TarifaConcepto;
 import com.adavec.transporte.model.Unidad;
 import com.adavec.transporte.repository.CobroDetalleRepository;
-import com.adavec.transporte.repository.ConceptoCobroRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -25,16 +24,42 @@ public class DesgloseCobroService {
     private TarifaConceptoService tarifaService;
 
     @Autowired
-    private ConceptoCobroRepository conceptoRepository;
+    private CatalogoConceptosService catalogoConceptos;
 
     @Autowired
     private CobroDetalleRepository cobroDetalleRepository;
 
+    @Autowired
+    private ResumenMensualService resumenMensualService;
+
     /**
      * Desglosar montos del archivo según tarifas vigentes
      * VERSIÓN MEJORADA: No falla si faltan campos, aplica lo que puede
      */
     public ResultadoDesglose desglosarCobros(DatosImportacion datos) {
+        ResultadoDesglose resultado = calcularDesglose(datos);
+
+        // Guardar todos los detalles
+        if (resultado.isExitoso() && !resultado.getDetalles().isEmpty()) {
+            try {
+                cobroDetalleRepository.saveAll(resultado.getDetalles());
+            } catch (Exception e) {
+                resultado.setExitoso(false);
+                resultado.setError("Error al desglosar: " + e.getMessage());
+                System.err.println("❌ Error en desglose: " + e.getMessage());
+            }
+            if (resultado.isExitoso() && datos.getUnidad() != null) {
+                resumenMensualService.recalcularUnidades(List.of(datos.getUnidad().getId()));
+            }
+        }
+
+        return resultado;
+    }
+
+    /**
+     * Calcula el desglose sin guardarlo; la importación masiva escribe los detalles en batch
+     */
+    public ResultadoDesglose calcularDesglose(DatosImportacion datos) {
         ResultadoDesglose resultado = new ResultadoDesglose();
         LocalDate fechaCobro = datos.getFechaTraslado();
 
@@ -69,10 +94,8 @@ public class DesgloseCobroService {
                 }
             }
 
-            // 5. Guardar todos los detalles
+            // 5. Calcular total de los detalles
             if (!detalles.isEmpty()) {
-                cobroDetalleRepository.saveAll(detalles);
-
                 // Calcular total
                 Double totalCalculado = detalles.stream()
                         .mapToDouble(CobroDetalle::getMontoAplicado)
@@ -229,7 +252,7 @@ public class DesgloseCobroService {
     private CobroDetalle crearDetalle(Unidad unidad, String nombreConcepto,
                                       Double monto, LocalDate fecha, String archivo) {
         try {
-            ConceptoCobro concepto = conceptoRepository.findByNombre(nombreConcepto)
+            ConceptoCobro concepto = catalogoConceptos.porNombre(nombreConcepto)
                     .orElseThrow(() -> new RuntimeException("Concepto no encontrado: " + nombreConcepto));
 
             CobroDetalle detalle = new CobroDetalle();
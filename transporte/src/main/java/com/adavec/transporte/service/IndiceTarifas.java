@@ -0,0 +1,142 @@
+package com.adavec.transporte.service;
+
+import com.adavec.transporte.model.TarifaConcepto;
+import com.adavec.transporte.model.TarifaConceptoModificadaEvent;
+import com.adavec.transporte.repository.TarifaConceptoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Índice en memoria de las tarifas activas por concepto, ordenadas por fecha de inicio.
+ * Resolver la tarifa vigente en una fecha es una búsqueda binaria en lugar de una consulta.
+ * El índice se reemplaza completo al confirmarse cualquier cambio en tarifa_concepto
+ * y, como respaldo, cuando pasa el tiempo configurado.
+ * Guarda valores inmutables y cada consulta devuelve una copia de la tarifa.
+ */
+@Component
+public class IndiceTarifas {
+
+    private final TarifaConceptoRepository tarifaRepository;
+    private final CacheInstantanea<Map<String, Periodos>> indice;
+
+    /**
+     * Valores de una tarifa y de su concepto tal como se cargaron
+     */
+    private record Tarifa(Integer id, CatalogoConceptosService.Concepto concepto, Double valor,
+                          LocalDate fechaInicio, LocalDate fechaFin, Boolean activo) {
+
+        static Tarifa de(TarifaConcepto tarifa) {
+            return new Tarifa(tarifa.getId(), CatalogoConceptosService.Concepto.de(tarifa.getConcepto()),
+                    tarifa.getValor(), tarifa.getFechaInicio(), tarifa.getFechaFin(), tarifa.getActivo());
+        }
+
+        TarifaConcepto aEntidad() {
+            TarifaConcepto tarifa = new TarifaConcepto();
+            tarifa.setId(id);
+            tarifa.setConcepto(concepto.aEntidad());
+            tarifa.setValor(valor);
+            tarifa.setFechaInicio(fechaInicio);
+            tarifa.setFechaFin(fechaFin);
+            tarifa.setActivo(activo);
+            return tarifa;
+        }
+    }
+
+    /**
+     * Tarifas de un concepto ordenadas por fecha de inicio (y por id ante empates)
+     */
+    private record Periodos(LocalDate[] inicios, Tarifa[] tarifas) {
+
+        /**
+         * Misma regla que la consulta findTarifaVigente: la de inicio más reciente
+         * que cubra la fecha
+         */
+        Optional<Tarifa> vigente(LocalDate fecha) {
+            // Última posición con inicio <= fecha
+            int bajo = 0;
+            int alto = inicios.length - 1;
+            int ultima = -1;
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (inicios[medio].isAfter(fecha)) {
+                    alto = medio - 1;
+                } else {
+                    ultima = medio;
+                    bajo = medio + 1;
+                }
+            }
+            // Los periodos pueden solaparse: se descartan los que ya terminaron
+            for (int i = ultima; i >= 0; i--) {
+                LocalDate fin = tarifas[i].fechaFin();
+                if (fin == null || !fin.isBefore(fecha)) {
+                    return Optional.of(tarifas[i]);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    public IndiceTarifas(TarifaConceptoRepository tarifaRepository,
+                         @Value("${app.tarifas.cache-minutos:10}") long cacheMinutos) {
+        this.tarifaRepository = tarifaRepository;
+        this.indice = new CacheInstantanea<>(Duration.ofMinutes(cacheMinutos), this::cargar);
+    }
+
+    /**
+     * Tarifa activa vigente del concepto en la fecha dada
+     */
+    public Optional<TarifaConcepto> vigente(String nombreConcepto, LocalDate fecha) {
+        if (nombreConcepto == null || fecha == null) {
+            return Optional.empty();
+        }
+        Periodos periodos = indice.obtener().get(CatalogoConceptosService.normalizar(nombreConcepto));
+        return periodos != null ? periodos.vigente(fecha).map(Tarifa::aEntidad) : Optional.empty();
+    }
+
+    /**
+     * Descarta el índice; la siguiente consulta lo vuelve a cargar
+     */
+    public void invalidar() {
+        indice.invalidar();
+    }
+
+    /**
+     * Se ejecuta al confirmarse la transacción que creó o cerró un periodo de tarifa
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarTarifa(TarifaConceptoModificadaEvent evento) {
+        invalidar();
+    }
+
+    private Map<String, Periodos> cargar() {
+        Map<String, List<Tarifa>> agrupadas = new HashMap<>();
+        for (TarifaConcepto tarifa : tarifaRepository.findActivasConConcepto()) {
+            if (tarifa.getFechaInicio() == null || tarifa.getConcepto().getNombre() == null) {
+                continue;
+            }
+            agrupadas.computeIfAbsent(CatalogoConceptosService.normalizar(tarifa.getConcepto().getNombre()),
+                    nombre -> new ArrayList<>()).add(Tarifa.de(tarifa));
+        }
+
+        Map<String, Periodos> porConcepto = new HashMap<>();
+        int total = 0;
+        for (Map.Entry<String, List<Tarifa>> entrada : agrupadas.entrySet()) {
+            List<Tarifa> tarifas = entrada.getValue();
+            tarifas.sort(Comparator.comparing(Tarifa::fechaInicio).thenComparing(Tarifa::id));
+            LocalDate[] inicios = new LocalDate[tarifas.size()];
+            for (int i = 0; i < inicios.length; i++) {
+                inicios[i] = tarifas.get(i).fechaInicio();
+            }
+            porConcepto.put(entrada.getKey(), new Periodos(inicios, tarifas.toArray(new Tarifa[0])));
+            total += tarifas.size();
+        }
+        System.out.println("📚 Índice de tarifas cargado: " + total + " tarifas activas de " +
+                porConcepto.size() + " conceptos");
+        return Collections.unmodifiableMap(porConcepto);
+    }
+}
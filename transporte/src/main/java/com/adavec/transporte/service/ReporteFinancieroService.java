@@ -5,6 +5,19 @@ import com.adavec.transporte.dto.ReporteFinancieroDTO;
 import java.time.YearMonth;
 import java.util.List;
 
+/**
+ * Las listas devueltas se guardan en caché por mes y son compartidas: no se deben modificar.
+ */
 public interface ReporteFinancieroService {
     List<ReporteFinancieroDTO> obtenerDatosFinancierosPorMes(YearMonth mes);
+
+    /**
+     * Filas del mes que entran al reporte: con días y con cuota de asociación mayor a cero
+     */
+    List<ReporteFinancieroDTO> obtenerFilasReportablesPorMes(YearMonth mes);
+
+    /**
+     * Indica si el mes tiene unidades, aunque ninguna entre al reporte
+     */
+    boolean existenUnidadesEnMes(YearMonth mes);
 }
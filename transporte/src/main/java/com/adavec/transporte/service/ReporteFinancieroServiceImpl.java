@@ -1,32 +1,89 @@
 package com.adavec.transporte.service;
 
 import com.adavec.transporte.dto.ReporteFinancieroDTO;
-import com.adavec.transporte.model.Unidad;
-import com.adavec.transporte.model.Seguro;
-import com.adavec.transporte.model.CobroDetalle;
-import com.adavec.transporte.model.FechasCobros;
-import com.adavec.transporte.repository.FechasCobrosRepository;
-import com.adavec.transporte.repository.UnidadRepository;
-import com.adavec.transporte.repository.SeguroRepository;
-import com.adavec.transporte.repository.CobroDetalleRepository;
-import com.adavec.transporte.repository.ConceptoCobroRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class ReporteFinancieroServiceImpl implements ReporteFinancieroService {
 
-    private final UnidadRepository unidadRepository;
-    private final SeguroRepository seguroRepository;
-    private final CobroDetalleRepository cobroDetalleRepository;
-    private final FechasCobrosRepository fechasCobrosRepository;
-    private final ConceptoCobroRepository conceptoCobroRepository;
+    // Desglose de cobro_detalle pivotado por unidad: una columna concepto_N por cada ID de concepto del reporte
+    static final String PIVOTE_CONCEPTOS = IntStream.rangeClosed(1, 9)
+            .mapToObj(id -> "SUM(CASE WHEN cd.concepto_id = " + id + " THEN cd.monto_aplicado ELSE 0 END) AS concepto_" + id)
+            .collect(Collectors.joining(", "));
+
+    /**
+     * Unidades con fechas_cobros en el mes, en orden de su primer registro. De cada una se toma el
+     * registro del mes con la fecha de proceso más reciente, su seguro y su desglose pivotado.
+     * Parámetros: inicio y fin del mes, tres veces. Se completa con el ORDER BY.
+     */
+    private static final String DATOS_POR_FECHA_TRASLADO = """
+            SELECT u.NoSerie, u.Valor_unidad, u.DebisFecha,
+                   m.id AS modelo_id, m.Nombre AS modelo,
+                   d.id AS distribuidora_id, d.NombreDistribuidora, d.ClaveDistribuidora,
+                   f.id AS fechas_id, f.fecha_traslado, f.fecha_interes, f.dias, f.fecha_proceso,
+                   s.id AS seguro_id, s.Factura,
+                   c.*
+            FROM (SELECT unidad_id, MIN(id) AS orden
+                  FROM fechas_cobros
+                  WHERE fecha_traslado BETWEEN ? AND ?
+                  GROUP BY unidad_id) mes
+            JOIN unidad u ON u.id = mes.unidad_id
+            JOIN fechas_cobros f ON f.id = (SELECT f2.id FROM fechas_cobros f2
+                                            WHERE f2.unidad_id = mes.unidad_id AND f2.fecha_traslado BETWEEN ? AND ?
+                                            ORDER BY f2.fecha_proceso DESC, f2.id DESC
+                                            LIMIT 1)
+            LEFT JOIN modelo m ON m.id = u.ModeloID
+            LEFT JOIN distribuidor d ON d.id = u.DistribuidoraID
+            LEFT JOIN seguros s ON s.id = (SELECT MIN(s2.id) FROM seguros s2 WHERE s2.UnidadID = u.id)
+            LEFT JOIN (SELECT cd.unidad_id, %s
+                       FROM cobro_detalle cd
+                       WHERE cd.unidad_id IN (SELECT unidad_id FROM fechas_cobros WHERE fecha_traslado BETWEEN ? AND ?)
+                       GROUP BY cd.unidad_id) c ON c.unidad_id = u.id
+            """.formatted(PIVOTE_CONCEPTOS);
+
+    private static final String ORDEN_FECHA_TRASLADO = "ORDER BY mes.orden";
+
+    private static final String EXISTEN_UNIDADES_DEL_MES = """
+            SELECT EXISTS (SELECT 1 FROM fechas_cobros WHERE fecha_traslado BETWEEN ? AND ?)
+                OR EXISTS (SELECT 1 FROM unidad WHERE DebisFecha BETWEEN ? AND ?)""";
+
+    /**
+     * Respaldo cuando el mes no tiene fechas_cobros: unidades por fecha DEBIS, sin fechas.
+     * Parámetros: inicio y fin del mes, dos veces.
+     */
+    private static final String DATOS_POR_FECHA_DEBIS = """
+            SELECT u.NoSerie, u.Valor_unidad, u.DebisFecha,
+                   m.id AS modelo_id, m.Nombre AS modelo,
+                   d.id AS distribuidora_id, d.NombreDistribuidora, d.ClaveDistribuidora,
+                   NULL AS fechas_id, NULL AS fecha_traslado, NULL AS fecha_interes, NULL AS dias, NULL AS fecha_proceso,
+                   s.id AS seguro_id, s.Factura,
+                   c.*
+            FROM unidad u
+            LEFT JOIN modelo m ON m.id = u.ModeloID
+            LEFT JOIN distribuidor d ON d.id = u.DistribuidoraID
+            LEFT JOIN seguros s ON s.id = (SELECT MIN(s2.id) FROM seguros s2 WHERE s2.UnidadID = u.id)
+            LEFT JOIN (SELECT cd.unidad_id, %s
+                       FROM cobro_detalle cd
+                       WHERE cd.unidad_id IN (SELECT id FROM unidad WHERE DebisFecha BETWEEN ? AND ?)
+                       GROUP BY cd.unidad_id) c ON c.unidad_id = u.id
+            WHERE u.DebisFecha BETWEEN ? AND ?
+            ORDER BY u.id""".formatted(PIVOTE_CONCEPTOS);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogoConceptosService catalogoConceptos;
+    private final ResumenMensualService resumenMensualService;
+    private final CacheReporteFinanciero cacheReporteFinanciero;
 
     // ═══════════════════════════════════════
     // MAPEO DE IDs DE CONCEPTOS (SEGÚN TU BD)
@@ -41,179 +98,150 @@ public class ReporteFinancieroServiceImpl implements ReporteFinancieroService {
     // ID 8: ASOBENS_CAPACITACION - Capacitación ASOBENS
     // ID 9: FONDO_ESTRELLA - Fondo estrella
 
-    public ReporteFinancieroServiceImpl(UnidadRepository unidadRepository,
-                                        SeguroRepository seguroRepository,
-                                        CobroDetalleRepository cobroDetalleRepository,
-                                        FechasCobrosRepository fechasCobrosRepository,
-                                        ConceptoCobroRepository conceptoCobroRepository) {
-        this.unidadRepository = unidadRepository;
-        this.seguroRepository = seguroRepository;
-        this.cobroDetalleRepository = cobroDetalleRepository;
-        this.fechasCobrosRepository = fechasCobrosRepository;
-        this.conceptoCobroRepository = conceptoCobroRepository;
+    public ReporteFinancieroServiceImpl(JdbcTemplate jdbcTemplate,
+                                        CatalogoConceptosService catalogoConceptos,
+                                        ResumenMensualService resumenMensualService,
+                                        CacheReporteFinanciero cacheReporteFinanciero) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogoConceptos = catalogoConceptos;
+        this.resumenMensualService = resumenMensualService;
+        this.cacheReporteFinanciero = cacheReporteFinanciero;
     }
     public Map<Integer, Boolean> getAplicaIvaMap() {
-        List<Object[]> data = conceptoCobroRepository.findAplicaIvaData();
-
-        return data.stream()
-                .collect(Collectors.toMap(
-                        row -> (Integer) row[0],  // c.id
-                        row -> (Boolean) row[1]   // c.aplicaIva
-                ));
+        return catalogoConceptos.aplicaIvaPorId();
     }
+    /**
+     * Todas las unidades del mes, desde la caché si ya se calcularon
+     */
     @Override
     public List<ReporteFinancieroDTO> obtenerDatosFinancierosPorMes(YearMonth mes) {
+        // Fechas cargadas fuera de la aplicación: se comparan solo cuando el mes no está en caché
+        return cacheReporteFinanciero.obtener(mes, false, () -> resumenMensualService.asegurarMes(mes),
+                () -> calcularDatosFinancierosPorMes(mes));
+    }
+
+    private List<ReporteFinancieroDTO> calcularDatosFinancierosPorMes(YearMonth mes) {
         LocalDate inicio = mes.atDay(1);
         LocalDate fin = mes.atEndOfMonth();
+        long inicioConsulta = System.nanoTime();
 
-        // Filtrar por fecha_traslado (no fecha_interes) de fechas_cobros
-        List<FechasCobros> fechasDelMes = fechasCobrosRepository.findByFechaTrasladoBetween(inicio, fin);
         Map<Integer, Boolean> aplicaIvaMap = getAplicaIvaMap();
         final double tasaIVA = 0.16;
-        // Extraer las unidades únicas
-        List<Unidad> unidadesDelMes = fechasDelMes.stream()
-                .map(FechasCobros::getUnidad)
-                .distinct()
-                .collect(Collectors.toList());
+        RowMapper<ReporteFinancieroDTO> mapeo = (rs, fila) -> mapearFila(rs, aplicaIvaMap, tasaIVA);
+
+        // Filtrar por fecha_traslado (no fecha_interes) de fechas_cobros
+        List<ReporteFinancieroDTO> filas = jdbcTemplate.query(DATOS_POR_FECHA_TRASLADO + ORDEN_FECHA_TRASLADO, mapeo,
+                inicio, fin, inicio, fin, inicio, fin);
 
         // Si no hay fechas_cobros para el mes, intentar con el método anterior
-        if (unidadesDelMes.isEmpty()) {
+        if (filas.isEmpty()) {
             System.out.println("⚠️ No se encontraron registros en fechas_cobros para " + mes +
                     ". Usando fecha de unidad como fallback.");
-            unidadesDelMes = unidadRepository.findByDebisFechaBetween(inicio, fin);
+            filas = jdbcTemplate.query(DATOS_POR_FECHA_DEBIS, mapeo, inicio, fin, inicio, fin);
+        }
+
+        informarResumen(mes, filas, inicioConsulta);
+        return filas;
+    }
+
+    /**
+     * Solo las filas con días y cuota de asociación, leídas del resumen mensual ya calculado o de la caché.
+     * Las unidades del respaldo por fecha DEBIS no tienen días, así que nunca entran.
+     */
+    @Override
+    public List<ReporteFinancieroDTO> obtenerFilasReportablesPorMes(YearMonth mes) {
+        return cacheReporteFinanciero.obtener(mes, true, () -> resumenMensualService.asegurarMes(mes), () -> {
+            long inicioConsulta = System.nanoTime();
+            List<ReporteFinancieroDTO> filas = resumenMensualService.filasReportables(mes);
+            informarResumen(mes, filas, inicioConsulta);
+            return filas;
+        });
+    }
+
+    @Override
+    public boolean existenUnidadesEnMes(YearMonth mes) {
+        LocalDate inicio = mes.atDay(1);
+        LocalDate fin = mes.atEndOfMonth();
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTEN_UNIDADES_DEL_MES, Boolean.class,
+                inicio, fin, inicio, fin));
+    }
+
+    private ReporteFinancieroDTO mapearFila(ResultSet rs, Map<Integer, Boolean> aplicaIvaMap, double tasaIVA) throws SQLException {
+        ReporteFinancieroDTO dto = new ReporteFinancieroDTO();
+
+        // INFORMACIÓN BÁSICA DE LA UNIDAD
+        dto.setNoSerie(rs.getString("NoSerie"));
+        String modelo = rs.getString("modelo");
+        dto.setModelo(rs.getObject("modelo_id") != null ? modelo : "SIN MODELO");
+        boolean tieneDistribuidora = rs.getObject("distribuidora_id") != null;
+        dto.setDistribuidora(tieneDistribuidora ? rs.getString("NombreDistribuidora") : "SIN DISTRIBUIDORA");
+        dto.setClaveDistribuidor(tieneDistribuidora ? rs.getString("ClaveDistribuidora") : "");
+
+        // Valor unidad
+        Double valorUnidad = rs.getObject("Valor_unidad", Double.class);
+        dto.setValorUnidad(valorUnidad != null ? valorUnidad : 0.0);
+
+        // FECHAS DESDE FECHAS_COBROS: el registro del mes con la fecha de proceso más reciente
+        if (rs.getObject("fechas_id") != null) {
+            // fecha_traslado para fecha factura, fecha_interes para fecha interés
+            dto.setFechaTraslado(rs.getObject("fecha_traslado", LocalDate.class));
+            dto.setFechaInteres(rs.getObject("fecha_interes", LocalDate.class));
+            LocalDate fechaProceso = rs.getObject("fecha_proceso", LocalDate.class);
+            dto.setFechaProceso(fechaProceso != null ? fechaProceso : LocalDate.now());
+            Integer dias = rs.getObject("dias", Integer.class);
+            dto.setDias(dias != null ? dias : 0);
+        } else {
+            // Fallback si no hay fechas_cobros
+            LocalDate fechaDebis = rs.getObject("DebisFecha", LocalDate.class);
+            dto.setFechaTraslado(fechaDebis);
+            dto.setFechaInteres(fechaDebis);
+            dto.setFechaProceso(LocalDate.now());
+            dto.setDias(0);
         }
 
-        // Crear un mapa de unidad -> fechas para acceso rápido
-        Map<Integer, FechasCobros> fechasPorUnidad = fechasDelMes.stream()
-                .collect(Collectors.toMap(
-                        fc -> fc.getUnidad().getId(),
-                        fc -> fc,
-                        (fc1, fc2) -> fc1.getFechaProceso().isAfter(fc2.getFechaProceso()) ? fc1 : fc2
-                ));
-
-        return unidadesDelMes.stream().map(unidad -> {
-            ReporteFinancieroDTO dto = new ReporteFinancieroDTO();
-
-            // INFORMACIÓN BÁSICA DE LA UNIDAD
-            dto.setNoSerie(unidad.getNoSerie());
-            dto.setModelo(unidad.getModelo() != null ? unidad.getModelo().getNombre() : "SIN MODELO");
-            dto.setDistribuidora(unidad.getDistribuidor() != null ? unidad.getDistribuidor().getNombreDistribuidora() : "SIN DISTRIBUIDORA");
-            dto.setClaveDistribuidor(unidad.getDistribuidor() != null ? unidad.getDistribuidor().getClaveDistribuidora() : "");
-
-            // Valor unidad
-            Double valorUnidad = unidad.getValorUnidad() != null ? unidad.getValorUnidad() : 0.0;
-            dto.setValorUnidad(valorUnidad);
-
-            // FECHAS DESDE FECHAS_COBROS - CORREGIDO
-            FechasCobros fechasCobros = fechasPorUnidad.get(unidad.getId());
-
-            if (fechasCobros != null) {
-                // CORRECCIÓN: fecha_traslado para fecha factura
-                dto.setFechaTraslado(fechasCobros.getFechaTraslado());
-
-                // CORRECCIÓN: fecha_interes para fecha interés
-                dto.setFechaInteres(fechasCobros.getFechaInteres());
-
-                dto.setFechaProceso(
-                        fechasCobros.getFechaProceso() != null
-                                ? fechasCobros.getFechaProceso()
-                                : LocalDate.now()
-                );
-
-                dto.setDias(fechasCobros.getDias() != null ? fechasCobros.getDias() : 0);
-
-                // Log para debugging
-                System.out.println(String.format(
-                        "📅 Fechas para VIN %s: Traslado(Factura)=%s, Interés=%s, Días=%d",
-                        unidad.getNoSerie(),
-                        fechasCobros.getFechaTraslado(),
-                        fechasCobros.getFechaInteres(),
-                        fechasCobros.getDias()
-                ));
-            } else {
-                // Fallback si no hay fechas_cobros
-                System.out.println("⚠️ Sin fechas_cobros para VIN: " + unidad.getNoSerie());
-                LocalDate fechaDebis = unidad.getDebisFecha();
-
-                dto.setFechaTraslado(fechaDebis);
-                dto.setFechaInteres(fechaDebis);
-                dto.setFechaProceso(LocalDate.now());
-                dto.setDias(0);
-            }
-
-            // INFORMACIÓN DE SEGURO
-            Seguro seguro = seguroRepository.findByUnidadId(unidad.getId());
-            dto.setNumeroFactura(seguro != null ? seguro.getFactura() : "");
-
-            // COBROS DESDE COBRO_DETALLE POR ID
-            List<CobroDetalle> cobrosDetalle = cobroDetalleRepository.findByUnidadId(unidad.getId());
-
-            // Convertir lista a mapa por ID de concepto para máxima eficiencia
-            Map<Integer, Double> conceptosPorId = cobrosDetalle.stream()
-                    .collect(Collectors.toMap(
-                            cobro -> cobro.getConcepto().getId(),
-                            CobroDetalle::getMontoAplicado,
-                            Double::sum // En caso de conceptos duplicados, sumar
-                    ));
-            // 1. CUOTA SEGURO (3.24%) - ID 3
-            Double cuotaSeguro = aplicarIva(conceptosPorId.getOrDefault(3, 0.0), aplicaIvaMap.get(3), tasaIVA);
-            dto.setCuotaSeguro(cuotaSeguro);
-
-            // 2. SEGURO (1.34%) - ID 2
-            Double seguroEspecifico = aplicarIva(conceptosPorId.getOrDefault(2, 0.0), aplicaIvaMap.get(2), tasaIVA);
-            dto.setSeguro(seguroEspecifico);
-
-            // 3. IMPORTE TRASLADO - ID 1
-            Double importeTraslado = aplicarIva(conceptosPorId.getOrDefault(1, 0.0), aplicaIvaMap.get(1), tasaIVA);
-            dto.setImporteTraslado(importeTraslado);
-
-            // 4. FONDO ESTRELLA - ID 9
-            Double fondoEstrella = aplicarIva(conceptosPorId.getOrDefault(9, 0.0), aplicaIvaMap.get(9), tasaIVA);
-            dto.setFondoEstrella(fondoEstrella);
-
-            // DESGLOSE DE CUOTA ASOCIACIÓN POR IDs
-
-            // ID 4: Cuota asociación ADAVEC
-            Double asociacion = aplicarIva(conceptosPorId.getOrDefault(4, 0.0), aplicaIvaMap.get(4), tasaIVA);
-            dto.setAsociacion(asociacion);
-
-            // ID 5: Cuota convención ADAVEC
-            Double convencion = aplicarIva(conceptosPorId.getOrDefault(5, 0.0), aplicaIvaMap.get(5), tasaIVA);
-            dto.setConvencion(convencion);
-
-            // ID 6: Cuota AMDA
-            Double amda = aplicarIva(conceptosPorId.getOrDefault(6, 0.0), aplicaIvaMap.get(6), tasaIVA);
-            dto.setAmda(amda);
-
-            // ID 7: Publicidad ASOBENS
-            Double publicidad = aplicarIva(conceptosPorId.getOrDefault(7, 0.0), aplicaIvaMap.get(7), tasaIVA);
-            dto.setPublicidad(publicidad);
-
-            // ID 8: Capacitación ASOBENS
-            Double capacitacion = aplicarIva(conceptosPorId.getOrDefault(8, 0.0), aplicaIvaMap.get(8), tasaIVA);
-            dto.setCapacitacion(capacitacion);
-
-            // Calcular total de cuota asociación (suma del desglose)
-            Double totalCuotaAsociacion = asociacion + convencion + amda + publicidad + capacitacion;
-            dto.setCuotaAsociacion(totalCuotaAsociacion);
-
-            // LOG PARA DEBUGGING - VERIFICAR TOTAL 17,883
-            if (totalCuotaAsociacion > 0) {
-                System.out.println(String.format(
-                        "🔍 DEBUG - VIN: %s | Desglose: ASOC=%.2f + CONV=%.2f + AMDA=%.2f + PUB=%.2f + CAP=%.2f = TOTAL: %.2f | DÍAS: %d",
-                        unidad.getNoSerie(), asociacion, convencion, amda, publicidad, capacitacion, totalCuotaAsociacion, dto.getDias()
-                ));
-
-                // Verificar si llegamos al target de 17,883
-                if (Math.abs(totalCuotaAsociacion - 17883.0) < 0.01) {
-                    System.out.println("✅ PERFECTO! Total = 17,883 para VIN: " + unidad.getNoSerie());
-                } else if (totalCuotaAsociacion > 0) {
-                    System.out.println("⚠️ Total diferente de 17,883: " + totalCuotaAsociacion + " para VIN: " + unidad.getNoSerie());
-                }
-            }
-
-            return dto;
-        }).collect(Collectors.toList());
+        // INFORMACIÓN DE SEGURO
+        dto.setNumeroFactura(rs.getObject("seguro_id") != null ? rs.getString("Factura") : "");
+
+        // COBROS DESDE COBRO_DETALLE: montos ya sumados por concepto; el IVA se aplica sobre la suma
+        dto.setImporteTraslado(montoConIva(rs, 1, aplicaIvaMap, tasaIVA));
+        dto.setSeguro(montoConIva(rs, 2, aplicaIvaMap, tasaIVA));
+        dto.setCuotaSeguro(montoConIva(rs, 3, aplicaIvaMap, tasaIVA));
+        dto.setFondoEstrella(montoConIva(rs, 9, aplicaIvaMap, tasaIVA));
+
+        // DESGLOSE DE CUOTA ASOCIACIÓN POR IDs
+        Double asociacion = montoConIva(rs, 4, aplicaIvaMap, tasaIVA);
+        Double convencion = montoConIva(rs, 5, aplicaIvaMap, tasaIVA);
+        Double amda = montoConIva(rs, 6, aplicaIvaMap, tasaIVA);
+        Double publicidad = montoConIva(rs, 7, aplicaIvaMap, tasaIVA);
+        Double capacitacion = montoConIva(rs, 8, aplicaIvaMap, tasaIVA);
+        dto.setAsociacion(asociacion);
+        dto.setConvencion(convencion);
+        dto.setAmda(amda);
+        dto.setPublicidad(publicidad);
+        dto.setCapacitacion(capacitacion);
+
+        // Calcular total de cuota asociación (suma del desglose)
+        dto.setCuotaAsociacion(asociacion + convencion + amda + publicidad + capacitacion);
+        return dto;
+    }
+
+    private Double montoConIva(ResultSet rs, int conceptoId, Map<Integer, Boolean> aplicaIvaMap, double tasaIVA) throws SQLException {
+        // Sin desglose la columna llega nula y getDouble devuelve 0
+        return aplicarIva(rs.getDouble("concepto_" + conceptoId), aplicaIvaMap.get(conceptoId), tasaIVA);
+    }
+
+    /**
+     * Una línea de resumen en lugar de una por unidad; verifica el total de 17,883 del desglose
+     */
+    private void informarResumen(YearMonth mes, List<ReporteFinancieroDTO> filas, long inicioConsulta) {
+        long conCuota = filas.stream().filter(dto -> dto.getCuotaAsociacion() > 0).count();
+        long distintasDe17883 = filas.stream()
+                .filter(dto -> dto.getCuotaAsociacion() > 0 && Math.abs(dto.getCuotaAsociacion() - 17883.0) >= 0.01)
+                .count();
+        long sinFechas = filas.stream().filter(dto -> dto.getDias() == 0).count();
+        System.out.println(String.format(
+                "📊 Datos financieros de %s: %d unidades en %d ms | con cuota asociación: %d (%d distintas de 17,883) | con 0 días: %d",
+                mes, filas.size(), (System.nanoTime() - inicioConsulta) / 1_000_000, conCuota, distintasDe17883, sinFechas));
     }
 
     private double aplicarIva(double valorBase, Boolean aplicaIva, double tasa) {
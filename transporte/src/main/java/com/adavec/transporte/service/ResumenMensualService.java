@@ -0,0 +1,334 @@
+package com.adavec.transporte.service;
+
+import com.adavec.transporte.dto.ReporteFinancieroDTO;
+import com.adavec.transporte.model.ConceptoCobroModificadoEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Mantiene resumen_mensual_unidad, las filas del reporte financiero ya calculadas por unidad y mes.
+ * <p>
+ * Cada escritura de una unidad, sus cobros o sus seguros recalcula las filas de esas unidades en
+ * la misma transacción, con un DELETE y un INSERT ... SELECT por conjunto. fechas_cobros se carga
+ * fuera de la aplicación, así que antes de leer un mes se compara la huella de sus fechas con la
+ * del último cálculo y, si cambió, el mes se regenera completo.
+ * <p>
+ * Los meses que toca cada recálculo se invalidan en {@link CacheReporteFinanciero} al confirmarse
+ * la transacción.
+ */
+@Service
+public class ResumenMensualService {
+
+    private static final double TASA_IVA = 0.16;
+    private static final int MAX_PARAMETROS_IN = 1000;
+
+    private static final String COLUMNAS_CONCEPTOS = IntStream.rangeClosed(1, 9)
+            .mapToObj(id -> "concepto_" + id)
+            .collect(Collectors.joining(", "));
+
+    // Cada concepto sumado se multiplica por su factor de IVA (1 o 1 + tasa), que llega como parámetro
+    private static final String CONCEPTOS_CON_IVA = IntStream.rangeClosed(1, 9)
+            .mapToObj(id -> "COALESCE(c.concepto_" + id + ", 0) * ?")
+            .collect(Collectors.joining(", "));
+
+    /**
+     * Filas de las unidades que cumplen el filtro, una por mes de fecha_traslado, con las mismas
+     * reglas que la consulta en vivo del reporte. Cada mes se busca como rango [inicio, inicio + 1 mes)
+     * sobre fecha_traslado, para que use su índice. El filtro ({@code %1$s}) se completa como
+     * {@code IN (...)} sobre el id de la unidad y aparece dos veces.
+     * Parámetros: los 9 factores de IVA y los del filtro, dos veces.
+     */
+    private static final String INSERTAR_FILAS = """
+            INSERT INTO resumen_mensual_unidad (unidad_id, mes, orden, no_serie, modelo, clave_distribuidor,
+                   distribuidora, numero_factura, valor_unidad, fecha_traslado, fecha_interes, dias, fecha_proceso,
+                   %2$s, fecha_actualizacion)
+            SELECT fm.unidad_id, DATE_FORMAT(fm.inicio, '%%Y-%%m'), fm.orden, u.NoSerie,
+                   CASE WHEN m.id IS NULL THEN 'SIN MODELO' ELSE m.Nombre END,
+                   CASE WHEN d.id IS NULL THEN '' ELSE d.ClaveDistribuidora END,
+                   CASE WHEN d.id IS NULL THEN 'SIN DISTRIBUIDORA' ELSE d.NombreDistribuidora END,
+                   CASE WHEN s.id IS NULL THEN '' ELSE s.Factura END,
+                   COALESCE(u.Valor_unidad, 0), f.fecha_traslado, f.fecha_interes, COALESCE(f.dias, 0), f.fecha_proceso,
+                   %3$s, NOW()
+            FROM (SELECT unidad_id, CAST(DATE_FORMAT(fecha_traslado, '%%Y-%%m-01') AS DATE) AS inicio, MIN(id) AS orden
+                  FROM fechas_cobros
+                  WHERE unidad_id %1$s
+                  GROUP BY unidad_id, inicio) fm
+            JOIN unidad u ON u.id = fm.unidad_id
+            JOIN fechas_cobros f ON f.id = (SELECT f2.id FROM fechas_cobros f2
+                                            WHERE f2.unidad_id = fm.unidad_id
+                                              AND f2.fecha_traslado >= fm.inicio
+                                              AND f2.fecha_traslado < fm.inicio + INTERVAL 1 MONTH
+                                            ORDER BY f2.fecha_proceso DESC, f2.id DESC
+                                            LIMIT 1)
+            LEFT JOIN modelo m ON m.id = u.ModeloID
+            LEFT JOIN distribuidor d ON d.id = u.DistribuidoraID
+            LEFT JOIN seguros s ON s.id = (SELECT MIN(s2.id) FROM seguros s2 WHERE s2.UnidadID = u.id)
+            LEFT JOIN (SELECT cd.unidad_id, %4$s
+                       FROM cobro_detalle cd
+                       WHERE cd.unidad_id %1$s
+                       GROUP BY cd.unidad_id) c ON c.unidad_id = u.id""";
+
+    /**
+     * Meses en los que aparecen las unidades del filtro: los de su resumen actual (de donde pueden
+     * salir), los de sus fechas_cobros y el de su fecha DEBIS, que usa el reporte sin fechas.
+     * Parámetros: los del filtro, tres veces.
+     */
+    private static final String MESES_DE_UNIDADES = """
+            SELECT mes FROM resumen_mensual_unidad WHERE unidad_id %1$s
+            UNION
+            SELECT DATE_FORMAT(fecha_traslado, '%%Y-%%m') FROM fechas_cobros WHERE unidad_id %1$s
+            UNION
+            SELECT DATE_FORMAT(DebisFecha, '%%Y-%%m') FROM unidad WHERE id %1$s AND DebisFecha IS NOT NULL""";
+
+    private static final String UNIDADES_CON_FECHAS_EN_MES =
+            "IN (SELECT unidad_id FROM fechas_cobros WHERE fecha_traslado BETWEEN ? AND ?)";
+
+    private static final String HUELLA_FECHAS = """
+            SELECT COUNT(*) AS registros,
+                   COALESCE(BIT_XOR(CRC32(CONCAT_WS('|', id, unidad_id, fecha_traslado, fecha_interes, dias, fecha_proceso))), 0) AS huella
+            FROM fechas_cobros
+            WHERE fecha_traslado BETWEEN ? AND ?""";
+
+    private static final String HUELLA_REGISTRADA = """
+            SELECT registros_fechas, huella_fechas FROM resumen_mensual WHERE mes = ?""";
+
+    private static final String REGISTRAR_MES = """
+            INSERT INTO resumen_mensual (mes, registros_fechas, huella_fechas, fecha_generacion)
+            VALUES (?, ?, ?, NOW())
+            ON DUPLICATE KEY UPDATE registros_fechas = VALUES(registros_fechas),
+                                    huella_fechas = VALUES(huella_fechas),
+                                    fecha_generacion = VALUES(fecha_generacion)""";
+
+    private static final String FILAS_REPORTABLES = """
+            SELECT * FROM resumen_mensual_unidad
+            WHERE mes = ?
+              AND dias > 0
+              AND concepto_4 + concepto_5 + concepto_6 + concepto_7 + concepto_8 > 0
+            ORDER BY orden""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccion;
+    private final CatalogoConceptosService catalogoConceptos;
+    private final CacheReporteFinanciero cacheReporteFinanciero;
+    private final boolean verificarFechas;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ResumenMensualService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 CatalogoConceptosService catalogoConceptos,
+                                 CacheReporteFinanciero cacheReporteFinanciero,
+                                 @Value("${app.reportes.resumen-mensual.verificar-fechas:true}") boolean verificarFechas) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.catalogoConceptos = catalogoConceptos;
+        this.cacheReporteFinanciero = cacheReporteFinanciero;
+        this.verificarFechas = verificarFechas;
+    }
+
+    /**
+     * Recalcula las filas de las unidades; se une a la transacción en curso si la hay
+     */
+    public void recalcularUnidades(Collection<Integer> unidadIds) {
+        List<Integer> ids = unidadIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < ids.size(); i += MAX_PARAMETROS_IN) {
+            List<Integer> bloque = ids.subList(i, Math.min(i + MAX_PARAMETROS_IN, ids.size()));
+            recalcularDonde("IN (" + String.join(", ", Collections.nCopies(bloque.size(), "?")) + ")", bloque.toArray());
+        }
+    }
+
+    /**
+     * Quita las filas de unidades que se van a borrar; llamar antes de borrarlas
+     */
+    public void eliminarUnidades(Collection<Integer> unidadIds) {
+        List<Integer> ids = unidadIds.stream().filter(Objects::nonNull).distinct().toList();
+        for (int i = 0; i < ids.size(); i += MAX_PARAMETROS_IN) {
+            List<Integer> bloque = ids.subList(i, Math.min(i + MAX_PARAMETROS_IN, ids.size()));
+            String filtro = "IN (" + String.join(", ", Collections.nCopies(bloque.size(), "?")) + ")";
+            Set<YearMonth> meses = jdbcTemplate.execute((ConnectionCallback<Set<YearMonth>>) con ->
+                    mesesDeUnidades(con, filtro, bloque.toArray()));
+            jdbcTemplate.update("DELETE FROM resumen_mensual_unidad WHERE unidad_id " + filtro, bloque.toArray());
+            cacheReporteFinanciero.invalidarAlConfirmar(meses);
+        }
+    }
+
+    /**
+     * Recalcula sobre una conexión propia, dentro de su transacción; lo usa la importación masiva.
+     * El filtro es un {@code IN (...)} sobre el id de la unidad. Devuelve los meses tocados, que
+     * quien confirma la transacción debe invalidar en {@link CacheReporteFinanciero}.
+     */
+    public Set<YearMonth> recalcular(Connection con, String filtroUnidades, Object... parametrosFiltro) throws SQLException {
+        Set<YearMonth> meses = mesesDeUnidades(con, filtroUnidades, parametrosFiltro);
+        try (PreparedStatement ps = con.prepareStatement("DELETE FROM resumen_mensual_unidad WHERE unidad_id " + filtroUnidades)) {
+            asignar(ps, 1, parametrosFiltro);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = con.prepareStatement(
+                INSERTAR_FILAS.formatted(filtroUnidades, COLUMNAS_CONCEPTOS, CONCEPTOS_CON_IVA,
+                        ReporteFinancieroServiceImpl.PIVOTE_CONCEPTOS))) {
+            int indice = 1;
+            Map<Integer, Boolean> aplicaIvaMap = catalogoConceptos.aplicaIvaPorId();
+            for (int conceptoId = 1; conceptoId <= 9; conceptoId++) {
+                ps.setDouble(indice++, Boolean.TRUE.equals(aplicaIvaMap.get(conceptoId)) ? 1 + TASA_IVA : 1.0);
+            }
+            indice = asignar(ps, indice, parametrosFiltro);
+            asignar(ps, indice, parametrosFiltro);
+            ps.executeUpdate();
+        }
+        return meses;
+    }
+
+    /**
+     * Regenera todas las filas del mes y registra la huella de sus fechas. Devuelve las filas del mes.
+     */
+    public int recalcularMes(YearMonth mes) {
+        LocalDate inicio = mes.atDay(1);
+        LocalDate fin = mes.atEndOfMonth();
+        Integer filas = transaccion.execute(estado -> {
+            entityManager.flush();
+            Map<String, Object> huella = jdbcTemplate.queryForMap(HUELLA_FECHAS, inicio, fin);
+            // Las unidades que salieron del mes ya no están en el filtro; sus filas se quitan por mes
+            jdbcTemplate.update("DELETE FROM resumen_mensual_unidad WHERE mes = ?", mes.toString());
+            Set<YearMonth> meses = new HashSet<>(jdbcTemplate.execute((ConnectionCallback<Set<YearMonth>>) con ->
+                    recalcular(con, UNIDADES_CON_FECHAS_EN_MES, inicio, fin)));
+            meses.add(mes);
+            cacheReporteFinanciero.invalidarAlConfirmar(meses);
+            jdbcTemplate.update(REGISTRAR_MES, mes.toString(), huella.get("registros"), huella.get("huella"));
+            return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM resumen_mensual_unidad WHERE mes = ?",
+                    Integer.class, mes.toString());
+        });
+        return filas != null ? filas : 0;
+    }
+
+    /**
+     * Filas del mes que entran al reporte: con días y con cuota de asociación, en el orden del reporte.
+     * Llamar antes a {@link #asegurarMes(YearMonth)}.
+     */
+    public List<ReporteFinancieroDTO> filasReportables(YearMonth mes) {
+        return jdbcTemplate.query(FILAS_REPORTABLES, (rs, fila) -> mapearFila(rs), mes.toString());
+    }
+
+    /**
+     * Un cambio de IVA en un concepto afecta a todos los meses: se olvidan sus huellas y cada mes
+     * se regenera la siguiente vez que se consulta
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarConcepto(ConceptoCobroModificadoEvent evento) {
+        int meses = jdbcTemplate.update("DELETE FROM resumen_mensual");
+        cacheReporteFinanciero.invalidarTodo();
+        System.out.println("🔄 Resumen mensual marcado para regenerarse (" + meses + " meses) por cambio en concepto " +
+                evento.conceptoId());
+    }
+
+    /**
+     * Regenera el mes si sus fechas_cobros cambiaron desde el último cálculo; al regenerarlo también
+     * se invalida en la caché, así que se llama antes de leer el mes de cualquiera de los dos
+     */
+    public void asegurarMes(YearMonth mes) {
+        if (!verificarFechas && existeRegistro(mes)) {
+            return;
+        }
+        Map<String, Object> actual = jdbcTemplate.queryForMap(HUELLA_FECHAS, mes.atDay(1), mes.atEndOfMonth());
+        List<Map<String, Object>> registrada = jdbcTemplate.queryForList(HUELLA_REGISTRADA, mes.toString());
+        if (!registrada.isEmpty()
+                && numero(registrada.get(0).get("registros_fechas")) == numero(actual.get("registros"))
+                && numero(registrada.get(0).get("huella_fechas")) == numero(actual.get("huella"))) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        int filas = recalcularMes(mes);
+        System.out.println("🧮 Resumen mensual de " + mes + " regenerado: " + filas + " unidades en " +
+                (System.nanoTime() - inicio) / 1_000_000 + " ms");
+    }
+
+    private boolean existeRegistro(YearMonth mes) {
+        return !jdbcTemplate.queryForList(HUELLA_REGISTRADA, mes.toString()).isEmpty();
+    }
+
+    private void recalcularDonde(String filtroUnidades, Object... parametrosFiltro) {
+        transaccion.executeWithoutResult(estado -> {
+            // Los cambios pendientes de JPA deben verse en el INSERT ... SELECT
+            entityManager.flush();
+            Set<YearMonth> meses = jdbcTemplate.execute((ConnectionCallback<Set<YearMonth>>) con ->
+                    recalcular(con, filtroUnidades, parametrosFiltro));
+            cacheReporteFinanciero.invalidarAlConfirmar(meses);
+        });
+    }
+
+    private static Set<YearMonth> mesesDeUnidades(Connection con, String filtroUnidades, Object[] parametrosFiltro)
+            throws SQLException {
+        Set<YearMonth> meses = new HashSet<>();
+        try (PreparedStatement ps = con.prepareStatement(MESES_DE_UNIDADES.formatted(filtroUnidades))) {
+            int indice = asignar(ps, 1, parametrosFiltro);
+            indice = asignar(ps, indice, parametrosFiltro);
+            asignar(ps, indice, parametrosFiltro);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    meses.add(YearMonth.parse(rs.getString(1)));
+                }
+            }
+        }
+        return meses;
+    }
+
+    private static int asignar(PreparedStatement ps, int indice, Object[] parametros) throws SQLException {
+        for (Object parametro : parametros) {
+            ps.setObject(indice++, parametro);
+        }
+        return indice;
+    }
+
+    private static long numero(Object valor) {
+        return valor instanceof Number numero ? numero.longValue() : 0L;
+    }
+
+    private ReporteFinancieroDTO mapearFila(ResultSet rs) throws SQLException {
+        ReporteFinancieroDTO dto = new ReporteFinancieroDTO();
+        dto.setNoSerie(rs.getString("no_serie"));
+        dto.setModelo(rs.getString("modelo"));
+        dto.setDistribuidora(rs.getString("distribuidora"));
+        dto.setClaveDistribuidor(rs.getString("clave_distribuidor"));
+        dto.setNumeroFactura(rs.getString("numero_factura"));
+        dto.setValorUnidad(rs.getDouble("valor_unidad"));
+        dto.setFechaTraslado(rs.getObject("fecha_traslado", LocalDate.class));
+        dto.setFechaInteres(rs.getObject("fecha_interes", LocalDate.class));
+        LocalDate fechaProceso = rs.getObject("fecha_proceso", LocalDate.class);
+        dto.setFechaProceso(fechaProceso != null ? fechaProceso : LocalDate.now());
+        dto.setDias(rs.getInt("dias"));
+
+        // Montos ya con IVA
+        dto.setImporteTraslado(rs.getDouble("concepto_1"));
+        dto.setSeguro(rs.getDouble("concepto_2"));
+        dto.setCuotaSeguro(rs.getDouble("concepto_3"));
+        dto.setFondoEstrella(rs.getDouble("concepto_9"));
+        dto.setAsociacion(rs.getDouble("concepto_4"));
+        dto.setConvencion(rs.getDouble("concepto_5"));
+        dto.setAmda(rs.getDouble("concepto_6"));
+        dto.setPublicidad(rs.getDouble("concepto_7"));
+        dto.setCapacitacion(rs.getDouble("concepto_8"));
+        dto.setCuotaAsociacion(dto.getAsociacion() + dto.getConvencion() + dto.getAmda() +
+                dto.getPublicidad() + dto.getCapacitacion());
+        return dto;
+    }
+}
@@ -11,6 +11,7 @@ import com.adavec.transporte.repository.UnidadRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,10 +21,13 @@ public class SeguroService {
     private final SeguroRepository seguroRepository;
     private final UnidadRepository unidadRepository;
     private final DistribuidorRepository distribuidorRepository;
-    public SeguroService(SeguroRepository seguroRepository, UnidadRepository unidadRepository, DistribuidorRepository distribuidorRepository) {
+    private final ResumenMensualService resumenMensualService;
+    public SeguroService(SeguroRepository seguroRepository, UnidadRepository unidadRepository, DistribuidorRepository distribuidorRepository,
+                         ResumenMensualService resumenMensualService) {
         this.seguroRepository = seguroRepository;
         this.unidadRepository = unidadRepository;
         this.distribuidorRepository = distribuidorRepository;
+        this.resumenMensualService = resumenMensualService;
     }
     public List<Seguro> obtenerTodos() {
         return seguroRepository.findAll();
@@ -40,6 +44,7 @@ public class SeguroService {
         return seguroRepository.findByFacturaContainingIgnoreCase(factura);
     }
 
+    @Transactional
     public Seguro guardarSeguroDesdeDTO(CrearSeguroRequest request) {
         Unidad unidad = unidadRepository.findById(request.getUnidadId())
                 .orElseThrow(() -> new RuntimeException("Unidad no encontrada"));
@@ -51,7 +56,9 @@ public class SeguroService {
         seguro.setValorSeguro(request.getValorSeguro());
         seguro.setSeguroDistribuidor(request.getSeguroDistribuidor());
 
-        return seguroRepository.save(seguro);
+        Seguro guardado = seguroRepository.save(seguro);
+        resumenMensualService.recalcularUnidades(List.of(unidad.getId()));
+        return guardado;
     }
     @Transactional
     public Seguro actualizarSeguro(SeguroDTO seguroDTO) {
@@ -66,6 +73,9 @@ public class SeguroService {
         Distribuidor distribuidora = distribuidorRepository.findById(seguroDTO.getDistribuidorId())
                 .orElseThrow(() -> new RuntimeException("Distribuidora no encontrada"));
 
+        // La unidad anterior también pierde o cambia su factura en el resumen
+        Integer unidadAnteriorId = seguro.getUnidad() != null ? seguro.getUnidad().getId() : null;
+
         // 3. Actualizar todos los campos
         seguro.setFactura(seguroDTO.getFactura());
         seguro.setValorSeguro(seguroDTO.getValorSeguro());
@@ -75,7 +85,9 @@ public class SeguroService {
         seguro.setUnidad(unidad);
         seguro.setDistribuidor(distribuidora); // Usamos el distribuidor del DTO
 
-        return seguroRepository.save(seguro);
+        Seguro guardado = seguroRepository.save(seguro);
+        resumenMensualService.recalcularUnidades(Arrays.asList(unidadAnteriorId, unidad.getId()));
+        return guardado;
     }
 
     @Transactional
@@ -83,7 +95,12 @@ public class SeguroService {
         if (!seguroRepository.existsByFactura(factura)) {
             throw new RuntimeException("No se encontró un seguro con la factura: " + factura);
         }
+        List<Integer> unidadIds = seguroRepository.findByFactura(factura).stream()
+                .filter(seguro -> seguro.getUnidad() != null)
+                .map(seguro -> seguro.getUnidad().getId())
+                .toList();
         seguroRepository.deleteByFactura(factura);
+        resumenMensualService.recalcularUnidades(unidadIds);
     }
 
 
@@ -3,7 +3,6 @@ package com.adavec.transporte.service;
 import com.adavec.transporte.dto.TarifaHistorialDTO;
 import com.adavec.transporte.model.ConceptoCobro;
 import com.adavec.transporte.model.TarifaConcepto;
-import com.adavec.transporte.repository.ConceptoCobroRepository;
 import com.adavec.transporte.repository.TarifaConceptoRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,11 +19,14 @@ import java.util.stream.Collectors;
 public class TarifaConceptoService {
 
     @Autowired
-    private ConceptoCobroRepository conceptoRepository;
+    private CatalogoConceptosService catalogoConceptos;
 
     @Autowired
     private TarifaConceptoRepository tarifaRepository;
 
+    @Autowired
+    private IndiceTarifas indiceTarifas;
+
     /**
      * Obtener todas las tarifas vigentes
      */
@@ -32,10 +34,10 @@ public class TarifaConceptoService {
         Map<String, Double> tarifas = new HashMap<>();
         LocalDate hoy = LocalDate.now();
 
-        List<ConceptoCobro> conceptos = conceptoRepository.findByActivoTrue();
+        List<ConceptoCobro> conceptos = catalogoConceptos.activos();
 
         for (ConceptoCobro concepto : conceptos) {
-            tarifaRepository.findTarifaVigente(concepto.getNombre(), hoy)
+            indiceTarifas.vigente(concepto.getNombre(), hoy)
                     .ifPresent(tarifa -> tarifas.put(concepto.getNombre(), tarifa.getValor()));
         }
 
@@ -50,7 +52,7 @@ public class TarifaConceptoService {
                                            LocalDate fechaInicio) {
 
         // 1. Buscar concepto
-        ConceptoCobro concepto = conceptoRepository.findByNombre(nombreConcepto)
+        ConceptoCobro concepto = catalogoConceptos.porNombre(nombreConcepto)
                 .orElseThrow(() -> new RuntimeException("Concepto no encontrado: " + nombreConcepto));
 
         // 2. Cerrar tarifa actual si existe
@@ -75,7 +77,7 @@ public class TarifaConceptoService {
      * Obtener historial de tarifas
      */
     public List<TarifaHistorialDTO> obtenerHistorial(String nombreConcepto) {
-        ConceptoCobro concepto = conceptoRepository.findByNombre(nombreConcepto)
+        ConceptoCobro concepto = catalogoConceptos.porNombre(nombreConcepto)
                 .orElseThrow(() -> new RuntimeException("Concepto no encontrado"));
 
         return tarifaRepository.findByConceptoIdOrderByFechaInicioDesc(concepto.getId())
@@ -95,18 +97,18 @@ public class TarifaConceptoService {
     public Double calcularMontoCobro(String nombreConcepto, Double valorUnidad, LocalDate fecha) {
 
         // 1. Obtener concepto
-        ConceptoCobro concepto = conceptoRepository.findByNombre(nombreConcepto)
+        ConceptoCobro concepto = catalogoConceptos.porNombre(nombreConcepto)
                 .orElseThrow(() -> new RuntimeException("Concepto no encontrado: " + nombreConcepto));
 
         // 2. Calcular según tipo
         switch (concepto.getTipoCalculo()) {
             case MONTO_FIJO:
-                TarifaConcepto tarifaFija = tarifaRepository.findTarifaVigente(nombreConcepto, fecha)
+                TarifaConcepto tarifaFija = indiceTarifas.vigente(nombreConcepto, fecha)
                         .orElseThrow(() -> new RuntimeException("No hay tarifa vigente para: " + nombreConcepto));
                 return tarifaFija.getValor();
 
             case PORCENTAJE:
-                TarifaConcepto tarifaPorcentaje = tarifaRepository.findTarifaVigente(nombreConcepto, fecha)
+                TarifaConcepto tarifaPorcentaje = indiceTarifas.vigente(nombreConcepto, fecha)
                         .orElseThrow(() -> new RuntimeException("No hay tarifa vigente para: " + nombreConcepto));
                 return valorUnidad * (tarifaPorcentaje.getValor() / 100);
 
@@ -125,7 +127,7 @@ public class TarifaConceptoService {
                                       LocalDate fechaInicio) {
 
         // 1. Buscar concepto
-        ConceptoCobro concepto = conceptoRepository.findByNombre(nombreConcepto)
+        ConceptoCobro concepto = catalogoConceptos.porNombre(nombreConcepto)
                 .orElseThrow(() -> new RuntimeException("Concepto no encontrado: " + nombreConcepto));
 
         // 2. Validar que NO sea MANUAL
@@ -168,7 +170,7 @@ public class TarifaConceptoService {
      * Obtener tarifa vigente mejorado
      */
     public TarifaConcepto obtenerTarifaVigente(String nombreConcepto, LocalDate fecha) {
-        return tarifaRepository.findTarifaVigente(nombreConcepto, fecha)
+        return indiceTarifas.vigente(nombreConcepto, fecha)
                 .orElseThrow(() -> new RuntimeException(
                         "No hay tarifa vigente para " + nombreConcepto + " en la fecha " + fecha
                 ));
@@ -179,7 +181,7 @@ public class TarifaConceptoService {
     public Map<String, Double> calcularTodosCobros(Double valorUnidad, LocalDate fecha) {
         Map<String, Double> cobros = new HashMap<>();
 
-        List<ConceptoCobro> conceptos = conceptoRepository.findByActivoTrue();
+        List<ConceptoCobro> conceptos = catalogoConceptos.activos();
 
         for (ConceptoCobro concepto : conceptos) {
             try {
@@ -203,7 +205,7 @@ public class TarifaConceptoService {
     public boolean tieneTarifaConfiguradaPorNombre(String nombreConcepto, LocalDate fecha) {
         try {
             // Verificar que el concepto existe
-            ConceptoCobro concepto = conceptoRepository.findByNombre(nombreConcepto)
+            ConceptoCobro concepto = catalogoConceptos.porNombre(nombreConcepto)
                     .orElse(null);
 
             if (concepto == null) {
@@ -218,7 +220,7 @@ public class TarifaConceptoService {
             }
 
             // Verificar que tiene tarifa vigente
-            boolean tieneTarifa = tarifaRepository.findTarifaVigente(nombreConcepto, fecha).isPresent();
+            boolean tieneTarifa = indiceTarifas.vigente(nombreConcepto, fecha).isPresent();
 
             if (tieneTarifa) {
                 System.out.println("✅ Concepto " + nombreConcepto + " tiene tarifa configurada");
@@ -239,7 +241,7 @@ public class TarifaConceptoService {
      */
     public boolean tieneTarifaConfigurada(Integer conceptoId, LocalDate fecha) {
         try {
-            ConceptoCobro concepto = conceptoRepository.findById(conceptoId).orElse(null);
+            ConceptoCobro concepto = catalogoConceptos.porId(conceptoId).orElse(null);
 
             if (concepto == null) {
                 System.out.println("❌ Concepto con ID " + conceptoId + " no encontrado");
@@ -259,14 +261,14 @@ public class TarifaConceptoService {
      */
     public Double obtenerPorcentajeVigente(Integer conceptoId, LocalDate fecha) {
         try {
-            ConceptoCobro concepto = conceptoRepository.findById(conceptoId).orElse(null);
+            ConceptoCobro concepto = catalogoConceptos.porId(conceptoId).orElse(null);
 
             if (concepto == null) {
                 System.out.println("❌ Concepto con ID " + conceptoId + " no encontrado");
                 return null;
             }
 
-            TarifaConcepto tarifa = tarifaRepository.findTarifaVigente(concepto.getNombre(), fecha)
+            TarifaConcepto tarifa = indiceTarifas.vigente(concepto.getNombre(), fecha)
                     .orElse(null);
 
             if (tarifa != null) {
@@ -289,7 +291,7 @@ public class TarifaConceptoService {
      */
     public Double calcularMonto(Integer conceptoId, Double valorUnidad, LocalDate fecha) {
         try {
-            ConceptoCobro concepto = conceptoRepository.findById(conceptoId).orElse(null);
+            ConceptoCobro concepto = catalogoConceptos.porId(conceptoId).orElse(null);
 
             if (concepto == null) {
                 System.out.println("❌ Concepto con ID " + conceptoId + " no encontrado");
@@ -313,7 +315,7 @@ public class TarifaConceptoService {
 
         try {
             // Verificar concepto
-            ConceptoCobro concepto = conceptoRepository.findByNombre(nombreConcepto).orElse(null);
+            ConceptoCobro concepto = catalogoConceptos.porNombre(nombreConcepto).orElse(null);
 
             if (concepto == null) {
                 System.out.println("❌ Concepto no encontrado en BD");
@@ -340,7 +342,7 @@ public class TarifaConceptoService {
                         System.out.println("✅ Monto calculado: $" + String.format("%.2f", monto));
 
                         // Mostrar detalles del cálculo
-                        TarifaConcepto tarifa = tarifaRepository.findTarifaVigente(nombreConcepto, fecha).orElse(null);
+                        TarifaConcepto tarifa = indiceTarifas.vigente(nombreConcepto, fecha).orElse(null);
                         if (tarifa != null) {
                             if (concepto.getTipoCalculo() == ConceptoCobro.TipoCalculo.PORCENTAJE) {
                                 System.out.println("🧮 Fórmula: " + valorUnidad + " × (" + tarifa.getValor() + "/100)");
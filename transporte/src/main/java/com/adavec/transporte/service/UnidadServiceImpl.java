@@ -10,6 +10,7 @@ import com.adavec.transporte.repository.DistribuidorRepository;
 import com.adavec.transporte.repository.ModeloRepository;
 import com.adavec.transporte.repository.SeguroRepository;
 import com.adavec.transporte.repository.UnidadRepository;
+import com.adavec.transporte.service.ResumenMensualService;
 import com.adavec.transporte.service.UnidadService;
 import jakarta.transaction.Transactional;
 import org.springframework.http.HttpStatus;
@@ -30,11 +31,14 @@ public class UnidadServiceImpl implements UnidadService {
     private final SeguroRepository seguroRepository;
     private DistribuidorRepository distribuidorRepository;
     private ModeloRepository modeloRepository;
-    public UnidadServiceImpl(UnidadRepository unidadRepository, SeguroRepository seguroRepository,  ModeloRepository modeloRepository, DistribuidorRepository distribuidorRepository) {
+    private final ResumenMensualService resumenMensualService;
+    public UnidadServiceImpl(UnidadRepository unidadRepository, SeguroRepository seguroRepository,  ModeloRepository modeloRepository, DistribuidorRepository distribuidorRepository,
+                             ResumenMensualService resumenMensualService) {
         this.unidadRepository = unidadRepository;
         this.seguroRepository = seguroRepository;
         this.modeloRepository = modeloRepository;
         this.distribuidorRepository = distribuidorRepository;
+        this.resumenMensualService = resumenMensualService;
     }
 
     @Override
@@ -94,6 +98,8 @@ public class UnidadServiceImpl implements UnidadService {
     @Transactional
     @Override
     public void eliminarPorNoSerie(String noSerie) {
+        unidadRepository.findByNoSerie(noSerie)
+                .ifPresent(unidad -> resumenMensualService.eliminarUnidades(List.of(unidad.getId())));
         unidadRepository.deleteByNoSerie(noSerie);
     }
 
@@ -207,7 +213,9 @@ public class UnidadServiceImpl implements UnidadService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ID de Seguro es requerido para actualizar la asociación de seguro.");
         }
 
-        return unidadRepository.save(unidadExistente);
+        Unidad actualizada = unidadRepository.save(unidadExistente);
+        resumenMensualService.recalcularUnidades(List.of(actualizada.getId()));
+        return actualizada;
     }
 
 }
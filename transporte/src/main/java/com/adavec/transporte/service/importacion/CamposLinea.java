@@ -0,0 +1,45 @@
+package com.adavec.transporte.service.importacion;
+
+import java.time.LocalDate;
+
+/**
+ * Fechas y valores numéricos de una línea tal como quedaron al validarla.
+ * La importación los toma de aquí en lugar de volver a interpretar las columnas.
+ * No es thread-safe: se reutiliza una instancia por lote, igual que {@link LineaTxt}.
+ */
+public final class CamposLinea {
+
+    private LocalDate fechaFondeo;
+    private LocalDate fechaInteres;
+    private int dias;
+    private double valorUnidad;
+    private double cuotaAsociacion;
+    private double valorSeguro;
+    private double tarifaUnica;
+
+    void limpiar() {
+        fechaFondeo = null;
+        fechaInteres = null;
+        dias = 0;
+        valorUnidad = 0.0;
+        cuotaAsociacion = 0.0;
+        valorSeguro = 0.0;
+        tarifaUnica = 0.0;
+    }
+
+    void setFechaFondeo(LocalDate fechaFondeo) { this.fechaFondeo = fechaFondeo; }
+    void setFechaInteres(LocalDate fechaInteres) { this.fechaInteres = fechaInteres; }
+    void setDias(int dias) { this.dias = dias; }
+    void setValorUnidad(double valorUnidad) { this.valorUnidad = valorUnidad; }
+    void setCuotaAsociacion(double cuotaAsociacion) { this.cuotaAsociacion = cuotaAsociacion; }
+    void setValorSeguro(double valorSeguro) { this.valorSeguro = valorSeguro; }
+    void setTarifaUnica(double tarifaUnica) { this.tarifaUnica = tarifaUnica; }
+
+    public LocalDate getFechaFondeo() { return fechaFondeo; }
+    public LocalDate getFechaInteres() { return fechaInteres; }
+    public int getDias() { return dias; }
+    public double getValorUnidad() { return valorUnidad; }
+    public double getCuotaAsociacion() { return cuotaAsociacion; }
+    public double getValorSeguro() { return valorSeguro; }
+    public double getTarifaUnica() { return tarifaUnica; }
+}
@@ -0,0 +1,146 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.model.Distribuidor;
+import com.adavec.transporte.model.Modelo;
+import com.adavec.transporte.repository.DistribuidorRepository;
+import com.adavec.transporte.repository.ModeloRepository;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Resuelve en bloque los modelos y distribuidores de cada lote de la importación.
+ * Solo consulta las claves que aún no están en {@link CatalogosImportacion}; las que
+ * no existen se crean todas juntas en una transacción propia con INSERT IGNORE y se
+ * vuelven a consultar. Los índices únicos de modelo.Nombre y distribuidor.ClaveDistribuidora
+ * impiden que dos importaciones simultáneas, aun en instancias distintas, creen el mismo
+ * distribuidor dos veces: la segunda se queda con el registro de la primera.
+ */
+@Service
+public class CatalogoImportacionService {
+
+    private static final int MAX_PARAMETROS_IN = 1000;
+
+    private final ModeloRepository modeloRepository;
+    private final DistribuidorRepository distribuidorRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccionNueva;
+
+    public CatalogoImportacionService(ModeloRepository modeloRepository,
+                                      DistribuidorRepository distribuidorRepository,
+                                      JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager) {
+        this.modeloRepository = modeloRepository;
+        this.distribuidorRepository = distribuidorRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccionNueva = new TransactionTemplate(transactionManager);
+        this.transaccionNueva.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Garantiza que los modelos y claves dadas estén en el catálogo de la importación
+     */
+    public void resolver(CatalogosImportacion catalogos, Collection<String> nombresModelo,
+                         Collection<String> clavesDistribuidor) {
+        Map<String, String> modelosFaltantes = faltantes(nombresModelo, catalogos::tieneModelo);
+        Map<String, String> clavesFaltantes = faltantes(clavesDistribuidor, catalogos::tieneDistribuidor);
+        if (modelosFaltantes.isEmpty() && clavesFaltantes.isEmpty()) {
+            return;
+        }
+
+        // Consulta en bloque de lo que ya existe
+        cargarExistentes(catalogos, modelosFaltantes, clavesFaltantes);
+        if (modelosFaltantes.isEmpty() && clavesFaltantes.isEmpty()) {
+            return;
+        }
+
+        try {
+            Collection<String> clavesNuevas = new ArrayList<>(clavesFaltantes.values());
+            Integer distribuidoresCreados = transaccionNueva.execute(status -> crearFaltantes(modelosFaltantes, clavesFaltantes));
+
+            // Solo se registran una vez confirmada la transacción; incluye lo que otra importación creó a la vez
+            cargarExistentes(catalogos, modelosFaltantes, clavesFaltantes);
+            catalogos.sumarDistribuidoresCreados(distribuidoresCreados != null ? distribuidoresCreados : 0);
+            if (distribuidoresCreados != null && distribuidoresCreados > 0) {
+                System.out.println("✅ Nuevos distribuidores creados: " + clavesNuevas);
+            }
+        } catch (PessimisticLockingFailureException e) {
+            throw e;
+        } catch (Exception e) {
+            // Las líneas afectadas se reportan como error al no encontrar su modelo o distribuidor
+            System.err.println("💥 Error creando modelos/distribuidores de la importación: " + e.getMessage());
+        }
+    }
+
+    private Map<String, String> faltantes(Collection<String> valores,
+                                          Predicate<String> yaResuelto) {
+        Map<String, String> faltantes = new LinkedHashMap<>();
+        for (String valor : valores) {
+            if (valor != null && !yaResuelto.test(valor)) {
+                faltantes.putIfAbsent(CatalogosImportacion.normalizar(valor), valor);
+            }
+        }
+        return faltantes;
+    }
+
+    private void cargarExistentes(CatalogosImportacion catalogos, Map<String, String> modelosFaltantes,
+                                  Map<String, String> clavesFaltantes) {
+        for (List<String> bloque : particionar(modelosFaltantes.values())) {
+            for (Modelo modelo : modeloRepository.findByNombreInOrderByIdAsc(bloque)) {
+                catalogos.registrarModelo(modelo);
+            }
+        }
+        modelosFaltantes.values().removeIf(catalogos::tieneModelo);
+
+        for (List<String> bloque : particionar(clavesFaltantes.values())) {
+            for (Distribuidor distribuidor : distribuidorRepository.findByClaveDistribuidoraInOrderByIdAsc(bloque)) {
+                catalogos.registrarDistribuidor(distribuidor);
+            }
+        }
+        clavesFaltantes.values().removeIf(catalogos::tieneDistribuidor);
+    }
+
+    /**
+     * Inserta los faltantes ignorando los que otra importación ya creó; devuelve los distribuidores insertados
+     */
+    private int crearFaltantes(Map<String, String> modelosFaltantes, Map<String, String> clavesFaltantes) {
+        int modelosCreados = 0;
+        for (List<String> bloque : particionar(modelosFaltantes.values())) {
+            // Uso: mismo valor por defecto que buscarOCrearModeloPorNombre
+            modelosCreados += jdbcTemplate.update("INSERT IGNORE INTO modelo (Nombre, Uso) VALUES "
+                    + String.join(", ", Collections.nCopies(bloque.size(), "(?, 'CARGA')")), bloque.toArray());
+        }
+        if (modelosCreados > 0) {
+            System.out.println("➕ Modelos creados en la importación: " + modelosCreados);
+        }
+
+        int distribuidoresCreados = 0;
+        for (List<String> bloque : particionar(clavesFaltantes.values())) {
+            List<Object> parametros = new ArrayList<>();
+            for (String clave : bloque) {
+                parametros.add(clave);
+                parametros.add("Distribuidor " + clave);
+            }
+            distribuidoresCreados += jdbcTemplate.update("INSERT IGNORE INTO distribuidor (ClaveDistribuidora, " +
+                    "NombreDistribuidora, Contacto, Correo, Sucursal, fecha_creacion, fecha_modificacion) VALUES "
+                    + String.join(", ", Collections.nCopies(bloque.size(),
+                    "(?, ?, 'Pendiente', 'pendiente@example.com', 'Principal', NOW(), NOW())")), parametros.toArray());
+        }
+        return distribuidoresCreados;
+    }
+
+    private List<List<String>> particionar(Collection<String> valores) {
+        List<String> lista = new ArrayList<>(valores);
+        List<List<String>> bloques = new ArrayList<>();
+        for (int i = 0; i < lista.size(); i += MAX_PARAMETROS_IN) {
+            bloques.add(lista.subList(i, Math.min(i + MAX_PARAMETROS_IN, lista.size())));
+        }
+        return bloques;
+    }
+}
@@ -0,0 +1,57 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.model.Distribuidor;
+import com.adavec.transporte.model.Modelo;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modelos y distribuidores ya resueltos durante una importación.
+ * Las claves se normalizan igual que las compara MySQL (sin distinguir mayúsculas
+ * ni espacios finales), que es como los distinguen sus índices únicos.
+ */
+public class CatalogosImportacion {
+
+    private final Map<String, Modelo> modelos = new ConcurrentHashMap<>();
+    private final Map<String, Distribuidor> distribuidores = new ConcurrentHashMap<>();
+    private final AtomicInteger distribuidoresCreados = new AtomicInteger();
+
+    static String normalizar(String valor) {
+        return valor.stripTrailing().toUpperCase(Locale.ROOT);
+    }
+
+    public Modelo modelo(String nombre) {
+        return modelos.get(normalizar(nombre));
+    }
+
+    public Distribuidor distribuidor(String clave) {
+        return distribuidores.get(normalizar(clave));
+    }
+
+    boolean tieneModelo(String nombre) {
+        return modelos.containsKey(normalizar(nombre));
+    }
+
+    boolean tieneDistribuidor(String clave) {
+        return distribuidores.containsKey(normalizar(clave));
+    }
+
+    void registrarModelo(Modelo modelo) {
+        modelos.putIfAbsent(normalizar(modelo.getNombre()), modelo);
+    }
+
+    void registrarDistribuidor(Distribuidor distribuidor) {
+        distribuidores.putIfAbsent(normalizar(distribuidor.getClaveDistribuidora()), distribuidor);
+    }
+
+    void sumarDistribuidoresCreados(int cantidad) {
+        distribuidoresCreados.addAndGet(cantidad);
+    }
+
+    public int getDistribuidoresCreados() {
+        return distribuidoresCreados.get();
+    }
+}
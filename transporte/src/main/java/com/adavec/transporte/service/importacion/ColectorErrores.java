@@ -0,0 +1,146 @@
+package com.adavec.transporte.service.importacion;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Errores de una importación con memoria acotada: guarda el conteo por tipo y las primeras
+ * muestras de cada tipo, y escribe la lista completa en un archivo NDJSON comprimido con gzip
+ * (un error por línea, en el orden en que se detectaron) que se consulta después por su id.
+ * <p>
+ * Lo comparten las particiones de una importación en paralelo, por eso sus métodos son sincronizados.
+ */
+public class ColectorErrores implements AutoCloseable {
+
+    private final String id;
+    private final Path archivo;
+    private final int muestrasPorTipo;
+    private final ObjectMapper objectMapper;
+    private final int[] conteo = new int[TipoError.values().length];
+    private final List<ErrorDetallado> muestras = new ArrayList<>();
+    private BufferedWriter escritor;
+    private boolean archivoCompleto = true;
+    private boolean cerrado;
+
+    ColectorErrores(String id, Path archivo, int muestrasPorTipo, ObjectMapper objectMapper) {
+        this.id = id;
+        this.archivo = archivo;
+        this.muestrasPorTipo = muestrasPorTipo;
+        this.objectMapper = objectMapper;
+    }
+
+    public String getId() { return id; }
+
+    public synchronized void agregar(ErrorDetallado error) {
+        if (conteo[error.getTipoError().ordinal()]++ < muestrasPorTipo) {
+            muestras.add(error);
+        }
+        escribir(error);
+    }
+
+    public synchronized int getTotal() {
+        return Arrays.stream(conteo).sum();
+    }
+
+    public synchronized Map<TipoError, Integer> contarPorTipo() {
+        Map<TipoError, Integer> contador = new EnumMap<>(TipoError.class);
+        for (TipoError tipo : TipoError.values()) {
+            if (conteo[tipo.ordinal()] > 0) {
+                contador.put(tipo, conteo[tipo.ordinal()]);
+            }
+        }
+        return contador;
+    }
+
+    /**
+     * Primeras muestras de cada tipo ordenadas por número de línea
+     */
+    public synchronized List<ErrorDetallado> getMuestras() {
+        List<ErrorDetallado> ordenadas = new ArrayList<>(muestras);
+        ordenadas.sort(Comparator.comparingInt(ErrorDetallado::getNumeroLinea));
+        return ordenadas;
+    }
+
+    /**
+     * Indica si quedaron errores fuera de las muestras
+     */
+    public synchronized boolean estaTruncado() {
+        return getTotal() > muestras.size();
+    }
+
+    /**
+     * El archivo existe y contiene todos los errores
+     */
+    public synchronized boolean tieneArchivo() {
+        return escritor != null && archivoCompleto;
+    }
+
+    /**
+     * Termina el archivo comprimido; sin errores no se crea ninguno
+     */
+    @Override
+    public synchronized void close() {
+        if (cerrado) {
+            return;
+        }
+        cerrado = true;
+        if (escritor == null) {
+            return;
+        }
+        try {
+            escritor.close();
+        } catch (IOException e) {
+            descartarArchivo(e);
+        }
+    }
+
+    private void escribir(ErrorDetallado error) {
+        if (cerrado || !archivoCompleto) {
+            return;
+        }
+        try {
+            if (escritor == null) {
+                Files.createDirectories(archivo.getParent());
+                escritor = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(Files.newOutputStream(archivo), 64 * 1024), StandardCharsets.UTF_8));
+            }
+            escritor.write(aJson(error));
+            escritor.newLine();
+        } catch (IOException e) {
+            descartarArchivo(e);
+        }
+    }
+
+    private String aJson(ErrorDetallado error) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(error.toMap());
+    }
+
+    /**
+     * Si el disco falla la importación sigue; solo se pierde la lista completa, no los conteos
+     */
+    private void descartarArchivo(IOException causa) {
+        archivoCompleto = false;
+        System.err.println("⚠️ No se pudo escribir el archivo de errores " + archivo + ": " + causa.getMessage());
+        try {
+            if (escritor != null) {
+                escritor.close();
+            }
+        } catch (IOException ignorada) {
+            // El archivo se borra de todos modos
+        }
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo borrar " + archivo + ": " + e.getMessage());
+        }
+    }
+}
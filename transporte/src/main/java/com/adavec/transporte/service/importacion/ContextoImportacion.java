@@ -0,0 +1,79 @@
+package com.adavec.transporte.service.importacion;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estado compartido por todos los lotes de una misma importación
+ */
+public class ContextoImportacion {
+
+    private final String nombreArchivo;
+    // Modo actualización: los VIN que ya existen se actualizan en lugar de rechazarse como duplicados
+    private final boolean actualizarExistentes;
+    // VIN aceptados (en mayúsculas) con la línea donde aparecieron por primera vez
+    private final Map<String, Integer> vinsDelArchivo = new ConcurrentHashMap<>();
+    private final CatalogosImportacion catalogos = new CatalogosImportacion();
+    private final ProgresoImportacion progreso = new ProgresoImportacion();
+    private volatile boolean cancelada;
+    // Solo en importaciones de archivos registrados por su huella
+    private volatile PuntoControlImportacion puntoControl;
+
+    public ContextoImportacion(String nombreArchivo) {
+        this(nombreArchivo, false);
+    }
+
+    public ContextoImportacion(String nombreArchivo, boolean actualizarExistentes) {
+        this.nombreArchivo = nombreArchivo;
+        this.actualizarExistentes = actualizarExistentes;
+    }
+
+    public String getNombreArchivo() {
+        return nombreArchivo;
+    }
+
+    public boolean isActualizarExistentes() {
+        return actualizarExistentes;
+    }
+
+    public Map<String, Integer> getVinsDelArchivo() {
+        return vinsDelArchivo;
+    }
+
+    public CatalogosImportacion getCatalogos() {
+        return catalogos;
+    }
+
+    public ProgresoImportacion getProgreso() {
+        return progreso;
+    }
+
+    public PuntoControlImportacion getPuntoControl() {
+        return puntoControl;
+    }
+
+    void setPuntoControl(PuntoControlImportacion puntoControl) {
+        this.puntoControl = puntoControl;
+    }
+
+    /**
+     * Pide detener la importación; los lotes ya confirmados se conservan
+     */
+    public void cancelar() {
+        cancelada = true;
+    }
+
+    public boolean isCancelada() {
+        return cancelada;
+    }
+
+    /**
+     * Se llama antes de cada lote para detener la importación si fue cancelada
+     */
+    public void verificarCancelacion() {
+        if (cancelada) {
+            throw new CancellationException("Importación de " + nombreArchivo + " cancelada");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.adavec.transporte.service.importacion;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Abre el archivo subido como texto plano aunque venga comprimido.
+ * El formato se detecta por los primeros bytes (no por la extensión) y se descomprime
+ * mientras se lee: nunca se guarda una copia descomprimida en disco ni en memoria.
+ * Un ZIP con varios TXT se lee como un solo archivo, uno tras otro en el orden del ZIP,
+ * de modo que la numeración de líneas continúa de un archivo al siguiente.
+ */
+public final class EntradaArchivo {
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private EntradaArchivo() {
+    }
+
+    /**
+     * Devuelve el contenido de texto de la entrada: gzip y zip se descomprimen, el resto se lee tal cual
+     */
+    public static InputStream abrir(InputStream entrada) throws IOException {
+        BufferedInputStream buffer = new BufferedInputStream(entrada, TAMANO_BUFFER);
+        buffer.mark(4);
+        int b0 = buffer.read();
+        int b1 = buffer.read();
+        int b2 = buffer.read();
+        int b3 = buffer.read();
+        buffer.reset();
+
+        if (b0 == 0x1F && b1 == 0x8B) {
+            System.out.println("📦 Archivo comprimido con gzip, se descomprime al leer");
+            return new GZIPInputStream(buffer, TAMANO_BUFFER);
+        }
+        if (b0 == 'P' && b1 == 'K' && b2 == 0x03 && b3 == 0x04) {
+            System.out.println("📦 Archivo ZIP, se leen sus archivos .txt en orden");
+            return new EntradasZip(new ZipInputStream(buffer));
+        }
+        return buffer;
+    }
+
+    /**
+     * Concatena las entradas .txt del ZIP; si una no termina en salto de línea se agrega uno,
+     * para que su última línea no se una con la primera del siguiente archivo
+     */
+    private static final class EntradasZip extends InputStream {
+
+        private final ZipInputStream zip;
+        private boolean enEntrada;
+        private boolean terminado;
+        private boolean saltoPendiente;
+        private int ultimoByte = '\n';
+        private int archivosLeidos;
+
+        EntradasZip(ZipInputStream zip) {
+            this.zip = zip;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] uno = new byte[1];
+            int leidos = read(uno, 0, 1);
+            return leidos == -1 ? -1 : uno[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (saltoPendiente) {
+                    saltoPendiente = false;
+                    ultimoByte = '\n';
+                    b[off] = '\n';
+                    return 1;
+                }
+                if (terminado) {
+                    return -1;
+                }
+                if (!enEntrada && !siguienteEntrada()) {
+                    terminado = true;
+                    if (archivosLeidos == 0) {
+                        throw new IOException("El archivo ZIP no contiene archivos .txt");
+                    }
+                    return -1;
+                }
+                int leidos = zip.read(b, off, len);
+                if (leidos > 0) {
+                    ultimoByte = b[off + leidos - 1];
+                    return leidos;
+                }
+                enEntrada = false;
+                saltoPendiente = ultimoByte != '\n';
+            }
+        }
+
+        private boolean siguienteEntrada() throws IOException {
+            ZipEntry entrada;
+            while ((entrada = zip.getNextEntry()) != null) {
+                String nombre = entrada.getName();
+                if (entrada.isDirectory() || nombre.startsWith("__MACOSX/")
+                        || !nombre.toLowerCase(Locale.ROOT).endsWith(".txt")) {
+                    continue;
+                }
+                System.out.println("📄 Leyendo " + nombre + " del ZIP");
+                archivosLeidos++;
+                enEntrada = true;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
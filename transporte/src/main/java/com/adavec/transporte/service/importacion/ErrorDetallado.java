@@ -0,0 +1,53 @@
+package com.adavec.transporte.service.importacion;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Error detallado de una línea del archivo importado
+ */
+public class ErrorDetallado {
+    private final int numeroLinea;
+    private final TipoError tipoError;
+    private final String mensaje;
+    private final String lineaOriginal;
+    private final String campo;
+    private final String valor;
+
+    public ErrorDetallado(int numeroLinea, TipoError tipoError, String mensaje, String lineaOriginal) {
+        this(numeroLinea, tipoError, mensaje, lineaOriginal, null, null);
+    }
+
+    public ErrorDetallado(int numeroLinea, TipoError tipoError, String mensaje, String lineaOriginal, String campo, String valor) {
+        this.numeroLinea = numeroLinea;
+        this.tipoError = tipoError;
+        this.mensaje = mensaje;
+        this.lineaOriginal = lineaOriginal;
+        this.campo = campo;
+        this.valor = valor;
+    }
+
+    // Getters
+    public int getNumeroLinea() { return numeroLinea; }
+    public TipoError getTipoError() { return tipoError; }
+    public String getMensaje() { return mensaje; }
+    public String getLineaOriginal() { return lineaOriginal; }
+    public String getCampo() { return campo; }
+    public String getValor() { return valor; }
+
+    @Override
+    public String toString() {
+        return String.format("Línea %d [%s]: %s", numeroLinea, tipoError.getDescripcion(), mensaje);
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("numeroLinea", numeroLinea);
+        map.put("tipoError", tipoError.getDescripcion());
+        map.put("message", mensaje);
+        map.put("lineaOriginal", lineaOriginal);
+        if (campo != null) map.put("campo", campo);
+        if (valor != null) map.put("valor", valor);
+        return map;
+    }
+}
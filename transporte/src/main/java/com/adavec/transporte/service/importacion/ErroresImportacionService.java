@@ -0,0 +1,144 @@
+package com.adavec.transporte.service.importacion;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Crea los colectores de errores de las importaciones y consulta los archivos que generan.
+ * Los archivos se conservan el tiempo de retención configurado; se depuran al crear uno nuevo.
+ */
+@Service
+public class ErroresImportacionService {
+
+    private static final String EXTENSION = ".ndjson.gz";
+    private static final TypeReference<Map<String, Object>> TIPO_ERROR_JSON = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+    private final Path directorio;
+    private final int muestrasPorTipo;
+    private final Duration retencion;
+
+    public ErroresImportacionService(ObjectMapper objectMapper,
+                                     @Value("${app.importacion.errores.directorio:importaciones/errores}") String directorio,
+                                     @Value("${app.importacion.errores.muestras-por-tipo:50}") int muestrasPorTipo,
+                                     @Value("${app.importacion.errores.retencion-horas:24}") long retencionHoras) {
+        this.objectMapper = objectMapper;
+        this.directorio = Path.of(directorio).toAbsolutePath();
+        this.muestrasPorTipo = Math.max(0, muestrasPorTipo);
+        this.retencion = Duration.ofHours(retencionHoras);
+    }
+
+    public ColectorErrores nuevoColector() {
+        depurarVencidos();
+        String id = UUID.randomUUID().toString();
+        return new ColectorErrores(id, directorio.resolve(id + EXTENSION), muestrasPorTipo, objectMapper);
+    }
+
+    /**
+     * Archivo de errores de una importación, si existe. El id debe ser un UUID para no salir del directorio.
+     */
+    public Optional<Path> archivo(String id) {
+        try {
+            UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        Path archivo = directorio.resolve(id + EXTENSION);
+        return Files.isRegularFile(archivo) ? Optional.of(archivo) : Optional.empty();
+    }
+
+    public String nombreDescarga(String id) {
+        return "errores-importacion-" + id + EXTENSION;
+    }
+
+    /**
+     * Página de errores leída en streaming del archivo comprimido; con tipo solo cuenta los de ese tipo.
+     * Devuelve vacío si el archivo no existe.
+     */
+    public Optional<Map<String, Object>> pagina(String id, int pagina, int tamano, TipoError tipo) throws IOException {
+        Optional<Path> archivo = archivo(id);
+        if (archivo.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long omitir = (long) pagina * tamano;
+        List<Map<String, Object>> errores = new ArrayList<>(tamano);
+        boolean hayMas = false;
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(archivo.get()), 64 * 1024), StandardCharsets.UTF_8))) {
+            String linea;
+            long coincidencias = 0;
+            while ((linea = lector.readLine()) != null) {
+                if (tipo != null && !linea.contains("\"" + tipo.getDescripcion() + "\"")) {
+                    continue;
+                }
+                Map<String, Object> error = objectMapper.readValue(linea, TIPO_ERROR_JSON);
+                if (tipo != null && !tipo.getDescripcion().equals(error.get("tipoError"))) {
+                    continue;
+                }
+                if (coincidencias++ < omitir) {
+                    continue;
+                }
+                if (errores.size() == tamano) {
+                    hayMas = true;
+                    break;
+                }
+                errores.add(error);
+            }
+        }
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("id", id);
+        resultado.put("pagina", pagina);
+        resultado.put("tamano", tamano);
+        if (tipo != null) {
+            resultado.put("tipoError", tipo.getDescripcion());
+        }
+        resultado.put("errores", errores);
+        resultado.put("hayMas", hayMas);
+        return Optional.of(resultado);
+    }
+
+    private void depurarVencidos() {
+        if (!Files.isDirectory(directorio)) {
+            return;
+        }
+        Instant limite = Instant.now().minus(retencion);
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            archivos.filter(archivo -> archivo.getFileName().toString().endsWith(EXTENSION))
+                    .filter(archivo -> modificadoAntesDe(archivo, limite))
+                    .forEach(archivo -> {
+                        try {
+                            Files.deleteIfExists(archivo);
+                        } catch (IOException e) {
+                            System.err.println("⚠️ No se pudo borrar el archivo de errores " + archivo + ": " + e.getMessage());
+                        }
+                    });
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo depurar el directorio de errores " + directorio + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean modificadoAntesDe(Path archivo, Instant limite) {
+        try {
+            return Files.getLastModifiedTime(archivo).toInstant().isBefore(limite);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.adavec.transporte.service.importacion;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Acumulador de estadísticas de una importación; cada lote produce uno y se suman al total.
+ * El total de una importación lleva un {@link ColectorErrores}: los errores que recibe pasan
+ * al colector en lugar de quedarse todos en memoria.
+ */
+@Getter
+public class EstadisticasImportacion {
+    private int importados;
+    private int actualizados;
+    private int sinCambios;
+    private int distribuidoresCreados;
+    private int conceptosAplicados;
+    private int desgloseCompleto;
+    private int tarifaUnicaDetectada;
+    private int unidadesExentas;
+    private int lotesConErrores;
+    private int totalLineas;
+    private final List<ErrorDetallado> errores = new ArrayList<>();
+    private final ColectorErrores colector;
+
+    public EstadisticasImportacion() {
+        this(null);
+    }
+
+    public EstadisticasImportacion(ColectorErrores colector) {
+        this.colector = colector;
+    }
+
+    public void sumarImportado() { importados++; }
+    public void sumarImportados(int cantidad) { importados += cantidad; }
+    public void sumarActualizado() { actualizados++; }
+    public void sumarActualizados(int cantidad) { actualizados += cantidad; }
+    public void sumarSinCambios() { sinCambios++; }
+    public void sumarSinCambios(int cantidad) { sinCambios += cantidad; }
+    public void sumarDistribuidoresCreados(int cantidad) { distribuidoresCreados += cantidad; }
+    public void sumarConceptosAplicados(int cantidad) { conceptosAplicados += cantidad; }
+    public void sumarDesgloseCompleto() { desgloseCompleto++; }
+    public void sumarDesgloseCompleto(int cantidad) { desgloseCompleto += cantidad; }
+    public void sumarTarifaUnicaDetectada() { tarifaUnicaDetectada++; }
+    public void sumarTarifaUnicaDetectada(int cantidad) { tarifaUnicaDetectada += cantidad; }
+    public void sumarUnidadExenta() { unidadesExentas++; }
+    public void sumarUnidadesExentas(int cantidad) { unidadesExentas += cantidad; }
+    public void sumarLoteConErrores() { lotesConErrores++; }
+    public void sumarLineas(int cantidad) { totalLineas += cantidad; }
+
+    public void agregarError(ErrorDetallado error) {
+        if (colector != null) {
+            colector.agregar(error);
+        } else {
+            errores.add(error);
+        }
+    }
+
+    public void agregarErrores(List<ErrorDetallado> nuevos) {
+        if (colector != null) {
+            nuevos.forEach(colector::agregar);
+        } else {
+            errores.addAll(nuevos);
+        }
+    }
+
+    /**
+     * Suma las estadísticas de otro lote a este acumulador
+     */
+    public void sumar(EstadisticasImportacion otro) {
+        importados += otro.importados;
+        actualizados += otro.actualizados;
+        sinCambios += otro.sinCambios;
+        distribuidoresCreados += otro.distribuidoresCreados;
+        conceptosAplicados += otro.conceptosAplicados;
+        desgloseCompleto += otro.desgloseCompleto;
+        tarifaUnicaDetectada += otro.tarifaUnicaDetectada;
+        unidadesExentas += otro.unidadesExentas;
+        lotesConErrores += otro.lotesConErrores;
+        totalLineas += otro.totalLineas;
+        // Si comparten colector sus errores ya están en él
+        agregarErrores(otro.errores);
+    }
+
+    public int getTotalErrores() {
+        return colector != null ? colector.getTotal() : errores.size();
+    }
+
+    public Map<TipoError, Integer> contarErroresPorTipo() {
+        if (colector != null) {
+            return colector.contarPorTipo();
+        }
+        Map<TipoError, Integer> contador = new EnumMap<>(TipoError.class);
+        for (ErrorDetallado error : errores) {
+            contador.merge(error.getTipoError(), 1, Integer::sum);
+        }
+        return contador;
+    }
+
+    /**
+     * Errores que se incluyen en la respuesta, ordenados por línea: todos, o las muestras del colector
+     */
+    public List<ErrorDetallado> erroresParaRespuesta() {
+        if (colector != null) {
+            return colector.getMuestras();
+        }
+        List<ErrorDetallado> ordenados = new ArrayList<>(errores);
+        ordenados.sort(Comparator.comparingInt(ErrorDetallado::getNumeroLinea));
+        return ordenados;
+    }
+}
@@ -0,0 +1,373 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.model.ImportacionArchivo;
+import com.adavec.transporte.model.ImportacionPuntoControl;
+import com.adavec.transporte.repository.ImportacionArchivoRepository;
+import com.adavec.transporte.repository.ImportacionPuntoControlRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Importación idempotente por huella del archivo: el SHA-256 del contenido subido identifica
+ * el archivo. Si ya se importó completo se devuelve el resumen guardado sin volver a leerlo;
+ * si un intento anterior quedó a medias se reanuda omitiendo los lotes ya confirmados.
+ * Las importaciones asíncronas registran además la copia del archivo en disco, para que
+ * {@link ImportacionTrabajoService} las retome después de un reinicio.
+ */
+@Service
+public class ImportacionArchivoService {
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+    // Se agrega al final del contenido: el mismo archivo en modo actualización es otra importación
+    private static final byte[] SUFIJO_ACTUALIZAR = "\nmodo=actualizar".getBytes(StandardCharsets.US_ASCII);
+    private static final int LARGO_MENSAJE_ERROR = 1000;
+
+    private final ImportacionArchivoRepository importacionArchivoRepository;
+    private final ImportacionPuntoControlRepository importacionPuntoControlRepository;
+    private final ImportacionTxtService importacionTxtService;
+    private final ObjectMapper objectMapper;
+
+    // Huellas que se están importando en esta instancia, con el nombre de su archivo
+    private final Map<String, String> enCurso = new ConcurrentHashMap<>();
+
+    public ImportacionArchivoService(ImportacionArchivoRepository importacionArchivoRepository,
+                                     ImportacionPuntoControlRepository importacionPuntoControlRepository,
+                                     ImportacionTxtService importacionTxtService,
+                                     ObjectMapper objectMapper) {
+        this.importacionArchivoRepository = importacionArchivoRepository;
+        this.importacionPuntoControlRepository = importacionPuntoControlRepository;
+        this.importacionTxtService = importacionTxtService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * SHA-256 en hexadecimal del contenido, leído en streaming
+     */
+    public String huella(InputStreamSource fuente, boolean actualizarExistentes) throws IOException {
+        MessageDigest digest = nuevoDigest();
+        try (InputStream entrada = fuente.getInputStream()) {
+            byte[] buffer = new byte[TAMANO_BUFFER];
+            int leidos;
+            while ((leidos = entrada.read(buffer)) != -1) {
+                digest.update(buffer, 0, leidos);
+            }
+        }
+        return terminarHuella(digest, actualizarExistentes);
+    }
+
+    /**
+     * Huella a partir del digest que ya recibió el contenido
+     */
+    public static String terminarHuella(MessageDigest digest, boolean actualizarExistentes) {
+        if (actualizarExistentes) {
+            digest.update(SUFIJO_ACTUALIZAR);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static MessageDigest nuevoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Resumen guardado si el archivo ya se importó completo
+     */
+    public Optional<RespuestaImportacion> resultadoPrevio(String hash) {
+        return importacionArchivoRepository.findByHash(hash)
+                .filter(archivo -> archivo.getEstado() == ImportacionArchivo.Estado.COMPLETADA)
+                .map(this::respuestaGuardada);
+    }
+
+    /**
+     * Importa el archivo una sola vez por huella. Con {@code forzar} se vuelve a importar
+     * desde el inicio aunque ya esté completo.
+     */
+    public RespuestaImportacion importar(InputStreamSource fuente, String hash, long tamanoBytes,
+                                         ContextoImportacion contexto, boolean paralelo, boolean forzar) throws IOException {
+        return importar(fuente, hash, tamanoBytes, contexto, paralelo, forzar, null);
+    }
+
+    /**
+     * Igual que la anterior; {@code rutaArchivo} es la copia en disco que permite reanudarla tras un reinicio
+     */
+    public RespuestaImportacion importar(InputStreamSource fuente, String hash, long tamanoBytes,
+                                         ContextoImportacion contexto, boolean paralelo, boolean forzar,
+                                         String rutaArchivo) throws IOException {
+        if (enCurso.putIfAbsent(hash, Objects.toString(contexto.getNombreArchivo(), "")) != null) {
+            Map<String, Object> cuerpo = new HashMap<>();
+            cuerpo.put("message", "Este mismo archivo ya se está importando");
+            cuerpo.put("tipoError", "IMPORTACION_EN_CURSO");
+            cuerpo.put("hash", hash);
+            return new RespuestaImportacion(HttpStatus.CONFLICT, cuerpo);
+        }
+        try {
+            Optional<ImportacionArchivo> existente = importacionArchivoRepository.findByHash(hash);
+            if (existente.isPresent() && existente.get().getEstado() == ImportacionArchivo.Estado.COMPLETADA && !forzar) {
+                System.out.println("♻️ " + contexto.getNombreArchivo() + " ya se importó, se devuelve el resumen guardado");
+                return respuestaGuardada(existente.get());
+            }
+
+            ImportacionArchivo archivo = prepararIntento(existente.orElse(null), hash, tamanoBytes, contexto,
+                    importacionTxtService.particionesPara(paralelo), forzar, rutaArchivo);
+            PuntoControlImportacion puntoControl = cargarPuntoControl(archivo);
+            contexto.setPuntoControl(puntoControl);
+
+            EstadisticasImportacion total;
+            try (InputStream entrada = fuente.getInputStream()) {
+                total = importacionTxtService.importar(entrada, contexto, paralelo);
+            } catch (CancellationException e) {
+                // Queda EN_PROCESO: se reanuda al volver a subir el archivo o, si tiene copia, al reiniciar
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                marcarFallida(archivo.getId(), e.getMessage());
+                throw e;
+            }
+
+            total.sumar(puntoControl.getPrevias());
+            RespuestaImportacion respuesta = RespuestaImportacion.desde(total);
+            if (puntoControl.esReanudacion()) {
+                respuesta.getCuerpo().put("importacionReanudada", true);
+                respuesta.getCuerpo().put("lineasConfirmadasPreviamente", puntoControl.getPrevias().getTotalLineas());
+            }
+            completar(archivo.getId(), respuesta);
+            return respuesta;
+        } finally {
+            enCurso.remove(hash);
+        }
+    }
+
+    /**
+     * Indica si el archivo se está importando ahora en esta instancia. El estado EN_PROCESO guardado
+     * no basta: también lo conservan los intentos cancelados o interrumpidos por una caída.
+     */
+    public boolean importando(String nombreArchivo) {
+        return nombreArchivo != null && enCurso.containsValue(nombreArchivo);
+    }
+
+    /**
+     * Registra el archivo de una importación asíncrona en cuanto se encola, con la ruta de su copia,
+     * para que un reinicio antes de que empiece tampoco la pierda
+     */
+    public void reservar(String hash, String nombreArchivo, long tamanoBytes, boolean paralelo,
+                         boolean actualizarExistentes, boolean forzar, String rutaArchivo) {
+        if (enCurso.containsKey(hash)) {
+            // El trabajo responderá que ya se está importando; no se toca el intento en marcha
+            return;
+        }
+        ImportacionArchivo archivo = registro(importacionArchivoRepository.findByHash(hash).orElse(null), hash,
+                importacionTxtService.particionesPara(paralelo), forzar);
+        archivo.setNombreArchivo(nombreArchivo);
+        archivo.setTamanoBytes(tamanoBytes);
+        archivo.setActualizarExistentes(actualizarExistentes);
+        archivo.setEstado(ImportacionArchivo.Estado.EN_PROCESO);
+        archivo.setRutaArchivo(rutaArchivo);
+        importacionArchivoRepository.save(archivo);
+    }
+
+    /**
+     * Archivos asíncronos que quedaron sin terminar, con la copia registrada
+     */
+    public List<ImportacionArchivo> pendientesDeReanudar() {
+        return importacionArchivoRepository.findByEstadoAndRutaArchivoIsNotNull(ImportacionArchivo.Estado.EN_PROCESO);
+    }
+
+    /**
+     * Olvida la copia del archivo (por ejemplo, si el usuario canceló): ya no se reanuda sola
+     */
+    public void liberarArchivo(String hash) {
+        importacionArchivoRepository.findByHash(hash)
+                .filter(archivo -> archivo.getRutaArchivo() != null)
+                .ifPresent(archivo -> {
+                    archivo.setRutaArchivo(null);
+                    importacionArchivoRepository.save(archivo);
+                });
+    }
+
+    private ImportacionArchivo prepararIntento(ImportacionArchivo archivo, String hash, long tamanoBytes,
+                                               ContextoImportacion contexto, int particiones, boolean forzar,
+                                               String rutaArchivo) {
+        archivo = registro(archivo, hash, particiones, forzar);
+        if (archivo.getParticiones() != particiones) {
+            // Con otro número de particiones solo se puede confiar en lo confirmado por todas
+            Posicion base = posicionSegura(archivo, importacionPuntoControlRepository.findByArchivoId(archivo.getId()));
+            importacionPuntoControlRepository.eliminarPorArchivo(archivo.getId());
+            archivo.setLineaBase(base.linea());
+            archivo.setDesplazamientoBase(base.desplazamiento());
+            archivo.setParticiones(particiones);
+        }
+
+        archivo.setNombreArchivo(contexto.getNombreArchivo());
+        archivo.setTamanoBytes(tamanoBytes);
+        archivo.setActualizarExistentes(contexto.isActualizarExistentes());
+        archivo.setEstado(ImportacionArchivo.Estado.EN_PROCESO);
+        archivo.setRutaArchivo(rutaArchivo);
+        archivo.setIntentos(archivo.getIntentos() + 1);
+        archivo.setMensajeError(null);
+        archivo.setFechaInicio(LocalDateTime.now());
+        archivo.setFechaFin(null);
+        return importacionArchivoRepository.save(archivo);
+    }
+
+    /**
+     * Registro del archivo listo para un intento: nuevo, reiniciado si se fuerza, ya estaba
+     * completo o se revirtió, o tal cual para reanudarlo
+     */
+    private ImportacionArchivo registro(ImportacionArchivo archivo, String hash, int particiones, boolean forzar) {
+        if (archivo == null) {
+            archivo = new ImportacionArchivo();
+            archivo.setHash(hash);
+            archivo.setIntentos(0);
+            reiniciar(archivo, particiones);
+        } else if (forzar || archivo.getEstado() == ImportacionArchivo.Estado.COMPLETADA
+                || archivo.getEstado() == ImportacionArchivo.Estado.REVERTIDA) {
+            importacionPuntoControlRepository.eliminarPorArchivo(archivo.getId());
+            reiniciar(archivo, particiones);
+        }
+        return archivo;
+    }
+
+    private static void reiniciar(ImportacionArchivo archivo, int particiones) {
+        archivo.setParticiones(particiones);
+        archivo.setLineaBase(0);
+        archivo.setDesplazamientoBase(0L);
+        archivo.setLineasProcesadas(0);
+        archivo.setUnidadesImportadas(0);
+        archivo.setUnidadesActualizadas(0);
+        archivo.setUnidadesSinCambios(0);
+        archivo.setConceptosAplicados(0);
+        archivo.setDesgloseCompleto(0);
+        archivo.setTarifaUnicaDetectada(0);
+        archivo.setUnidadesExentas(0);
+        archivo.setCodigoRespuesta(null);
+        archivo.setResumen(null);
+    }
+
+    private PuntoControlImportacion cargarPuntoControl(ImportacionArchivo archivo) {
+        EstadisticasImportacion previas = new EstadisticasImportacion();
+        previas.sumarLineas(archivo.getLineasProcesadas());
+        previas.sumarImportados(archivo.getUnidadesImportadas());
+        previas.sumarActualizados(archivo.getUnidadesActualizadas());
+        previas.sumarSinCambios(archivo.getUnidadesSinCambios());
+        previas.sumarConceptosAplicados(archivo.getConceptosAplicados());
+        previas.sumarDesgloseCompleto(archivo.getDesgloseCompleto());
+        previas.sumarTarifaUnicaDetectada(archivo.getTarifaUnicaDetectada());
+        previas.sumarUnidadesExentas(archivo.getUnidadesExentas());
+
+        List<ImportacionPuntoControl> puntos = importacionPuntoControlRepository.findByArchivoId(archivo.getId());
+        Map<Integer, Integer> ultimas = new HashMap<>();
+        for (ImportacionPuntoControl punto : puntos) {
+            ultimas.put(punto.getParticion(), punto.getUltimaLinea());
+        }
+        Posicion inicio = posicionSegura(archivo, puntos);
+        PuntoControlImportacion puntoControl = new PuntoControlImportacion(archivo.getId(), archivo.getLineaBase(),
+                ultimas, inicio.linea(), inicio.desplazamiento(), previas);
+        if (puntoControl.esReanudacion()) {
+            System.out.println("🔁 Reanudando " + archivo.getNombreArchivo() + " (intento " + archivo.getIntentos() +
+                    "): " + archivo.getLineasProcesadas() + " líneas ya confirmadas");
+        }
+        return puntoControl;
+    }
+
+    /**
+     * Última línea confirmada por todas las particiones y el byte donde termina. Cada partición
+     * confirma sus líneas en orden, así que toda línea hasta la menor de sus últimas ya está guardada;
+     * si alguna partición no confirmó nada, solo vale la línea base.
+     */
+    private static Posicion posicionSegura(ImportacionArchivo archivo, List<ImportacionPuntoControl> puntos) {
+        Posicion base = new Posicion(archivo.getLineaBase(), archivo.getDesplazamientoBase());
+        if (puntos.size() < archivo.getParticiones()) {
+            return base;
+        }
+        ImportacionPuntoControl menor = null;
+        for (ImportacionPuntoControl punto : puntos) {
+            if (punto.getParticion() < archivo.getParticiones()
+                    && (menor == null || punto.getUltimaLinea() < menor.getUltimaLinea())) {
+                menor = punto;
+            }
+        }
+        return menor != null && menor.getUltimaLinea() > base.linea()
+                ? new Posicion(menor.getUltimaLinea(), menor.getDesplazamiento())
+                : base;
+    }
+
+    private void completar(Integer archivoId, RespuestaImportacion respuesta) {
+        // Se vuelve a leer: los contadores los actualizó cada lote por JDBC
+        importacionArchivoRepository.findById(archivoId).ifPresent(archivo -> {
+            archivo.setEstado(ImportacionArchivo.Estado.COMPLETADA);
+            archivo.setRutaArchivo(null);
+            archivo.setCodigoRespuesta(respuesta.getEstado().value());
+            archivo.setResumen(aJson(respuesta.getCuerpo()));
+            archivo.setFechaFin(LocalDateTime.now());
+            importacionArchivoRepository.save(archivo);
+        });
+    }
+
+    private void marcarFallida(Integer archivoId, String mensaje) {
+        try {
+            importacionArchivoRepository.findById(archivoId).ifPresent(archivo -> {
+                archivo.setEstado(ImportacionArchivo.Estado.FALLIDA);
+                archivo.setRutaArchivo(null);
+                archivo.setMensajeError(mensaje != null && mensaje.length() > LARGO_MENSAJE_ERROR
+                        ? mensaje.substring(0, LARGO_MENSAJE_ERROR) : mensaje);
+                archivo.setFechaFin(LocalDateTime.now());
+                importacionArchivoRepository.save(archivo);
+            });
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ No se pudo marcar como fallida la importación " + archivoId + ": " + e.getMessage());
+        }
+    }
+
+    private RespuestaImportacion respuestaGuardada(ImportacionArchivo archivo) {
+        Map<String, Object> cuerpo = new LinkedHashMap<>();
+        if (archivo.getResumen() != null) {
+            try {
+                cuerpo.putAll(objectMapper.readValue(archivo.getResumen(), new TypeReference<Map<String, Object>>() {}));
+            } catch (JsonProcessingException e) {
+                System.err.println("⚠️ Resumen guardado ilegible para " + archivo.getHash() + ": " + e.getMessage());
+            }
+        }
+        cuerpo.put("importacionPrevia", true);
+        cuerpo.put("archivoOriginal", archivo.getNombreArchivo());
+        cuerpo.put("fechaImportacionPrevia", archivo.getFechaFin() != null ? archivo.getFechaFin().toString() : null);
+        cuerpo.put("hash", archivo.getHash());
+        HttpStatus estado = archivo.getCodigoRespuesta() != null
+                ? HttpStatus.valueOf(archivo.getCodigoRespuesta()) : HttpStatus.OK;
+        return new RespuestaImportacion(estado, cuerpo);
+    }
+
+    private String aJson(Map<String, Object> cuerpo) {
+        try {
+            return objectMapper.writeValueAsString(cuerpo);
+        } catch (JsonProcessingException e) {
+            System.err.println("⚠️ No se pudo guardar el resumen de la importación: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private record Posicion(int linea, long desplazamiento) {
+    }
+}
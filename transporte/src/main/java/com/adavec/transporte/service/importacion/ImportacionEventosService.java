@@ -0,0 +1,118 @@
+package com.adavec.transporte.service.importacion;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envía el avance de las importaciones asíncronas por Server-Sent Events.
+ * Un solo hilo revisa todas las suscripciones cada intervalo y solo envía un evento
+ * cuando el trabajo avanzó desde el último envío, así el número de eventos depende
+ * de la duración de la importación y no del número de lotes.
+ */
+@Service
+public class ImportacionEventosService {
+
+    // Ticks sin cambios tras los que se envía un comentario para mantener viva la conexión
+    private static final int TICKS_LATIDO = 15;
+
+    private final long timeoutMs;
+    private final ScheduledExecutorService programador;
+    private final Set<Suscripcion> suscripciones = ConcurrentHashMap.newKeySet();
+
+    public ImportacionEventosService(@Value("${app.importacion.sse.intervalo-ms:1000}") long intervaloMs,
+                                     @Value("${app.importacion.sse.timeout-ms:1800000}") long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        this.programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "importacion-sse");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long intervalo = Math.max(100, intervaloMs);
+        this.programador.scheduleWithFixedDelay(this::enviarAvances, intervalo, intervalo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Crea el emisor del trabajo; envía el estado actual de inmediato
+     */
+    public SseEmitter suscribir(TrabajoImportacion trabajo) {
+        SseEmitter emisor = new SseEmitter(timeoutMs);
+        Suscripcion suscripcion = new Suscripcion(trabajo, emisor);
+        emisor.onCompletion(() -> suscripciones.remove(suscripcion));
+        emisor.onTimeout(() -> {
+            suscripciones.remove(suscripcion);
+            emisor.complete();
+        });
+        emisor.onError(error -> suscripciones.remove(suscripcion));
+
+        suscripciones.add(suscripcion);
+        programador.execute(() -> enviar(suscripcion));
+        return emisor;
+    }
+
+    private void enviarAvances() {
+        for (Suscripcion suscripcion : suscripciones) {
+            enviar(suscripcion);
+        }
+    }
+
+    private void enviar(Suscripcion suscripcion) {
+        TrabajoImportacion trabajo = suscripcion.trabajo;
+        TrabajoImportacion.Estado estado = trabajo.getEstado();
+        ProgresoImportacion progreso = trabajo.getContexto().getProgreso();
+        int lotes = progreso.getLotesProcesados();
+
+        try {
+            if (estado.esFinal()) {
+                Map<String, Object> datos = trabajo.toMap();
+                datos.put("urlResultado", "/api/importar/trabajos/" + trabajo.getId() + "/resultado");
+                suscripcion.emisor.send(SseEmitter.event().name("fin").id(trabajo.getId()).data(datos));
+                suscripciones.remove(suscripcion);
+                suscripcion.emisor.complete();
+            } else if (estado != suscripcion.ultimoEstado || lotes != suscripcion.ultimosLotes) {
+                suscripcion.emisor.send(SseEmitter.event().name("progreso").id(trabajo.getId() + ":" + lotes)
+                        .data(trabajo.toMap()));
+                suscripcion.ultimoEstado = estado;
+                suscripcion.ultimosLotes = lotes;
+                suscripcion.ticksSinCambios = 0;
+            } else if (++suscripcion.ticksSinCambios >= TICKS_LATIDO) {
+                suscripcion.emisor.send(SseEmitter.event().comment("latido"));
+                suscripcion.ticksSinCambios = 0;
+            }
+        } catch (IOException | IllegalStateException e) {
+            // El cliente cerró la conexión
+            suscripciones.remove(suscripcion);
+            suscripcion.emisor.completeWithError(e);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        programador.shutdownNow();
+        suscripciones.forEach(suscripcion -> suscripcion.emisor.complete());
+        suscripciones.clear();
+    }
+
+    private static class Suscripcion {
+        private final TrabajoImportacion trabajo;
+        private final SseEmitter emisor;
+        // Solo las usa el hilo del programador
+        private TrabajoImportacion.Estado ultimoEstado;
+        private int ultimosLotes = -1;
+        private int ticksSinCambios;
+
+        Suscripcion(TrabajoImportacion trabajo, SseEmitter emisor) {
+            this.trabajo = trabajo;
+            this.emisor = emisor;
+        }
+    }
+}
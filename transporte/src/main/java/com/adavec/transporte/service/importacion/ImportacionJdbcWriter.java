@@ -0,0 +1,324 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.model.CobroDetalle;
+import com.adavec.transporte.model.Seguro;
+import com.adavec.transporte.model.Unidad;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Escritura masiva de la importación con batches JDBC.
+ * Las entidades usan IDENTITY, lo que impide que Hibernate agrupe los INSERT;
+ * aquí se envían en un solo batch por tabla y por lote (con rewriteBatchedStatements
+ * el driver de MySQL los convierte en INSERT multi-fila).
+ * Participa en la transacción activa del lote.
+ * En el modo actualización también lee en bloque los valores guardados de las unidades
+ * existentes y escribe sus cambios con UPDATE agrupados.
+ */
+@Component
+public class ImportacionJdbcWriter {
+
+    private static final String INSERT_UNIDAD =
+            "INSERT INTO unidad (NoSerie, ModeloID, DistribuidoraID, DebisFecha, Valor_unidad, archivo_origen) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_COBRO_DETALLE =
+            "INSERT INTO cobro_detalle (unidad_id, concepto_id, monto_aplicado, archivo_origen) VALUES (?, ?, ?, ?)";
+
+    private static final String INSERT_SEGURO =
+            "INSERT INTO seguros (DistribuidoraID, UnidadID, Factura, ValorSeguro, SeguroDistribuidor, cuotaSeguro, cuotaFactura) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_UNIDAD =
+            "UPDATE unidad SET DebisFecha = ?, Valor_unidad = ? WHERE id = ?";
+
+    private static final String UPDATE_SEGURO =
+            "UPDATE seguros SET Factura = ?, ValorSeguro = ?, SeguroDistribuidor = ?, cuotaSeguro = ?, cuotaFactura = ? " +
+                    "WHERE id = ?";
+
+    // Los cargos manuales (archivo_origen MANUAL_<millis>) no son parte del desglose del archivo:
+    // no se comparan ni se borran al reemplazarlo
+    private static final String SIN_CARGOS_MANUALES =
+            " AND (archivo_origen IS NULL OR archivo_origen NOT LIKE 'MANUAL\\_%')";
+
+    private static final String SUMAR_CONTADORES_ARCHIVO =
+            "UPDATE importacion_archivo SET lineas_procesadas = lineas_procesadas + ?, " +
+                    "unidades_importadas = unidades_importadas + ?, unidades_actualizadas = unidades_actualizadas + ?, " +
+                    "unidades_sin_cambios = unidades_sin_cambios + ?, conceptos_aplicados = conceptos_aplicados + ?, " +
+                    "desglose_completo = desglose_completo + ?, tarifa_unica_detectada = tarifa_unica_detectada + ?, " +
+                    "unidades_exentas = unidades_exentas + ? WHERE id = ?";
+
+    // MySQL asigna en orden: el desplazamiento se compara con la última línea antes de actualizarla
+    private static final String GUARDAR_PUNTO_CONTROL =
+            "INSERT INTO importacion_punto_control (archivo_id, particion, ultima_linea, desplazamiento) VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE desplazamiento = IF(VALUES(ultima_linea) > ultima_linea, VALUES(desplazamiento), desplazamiento), " +
+                    "ultima_linea = GREATEST(ultima_linea, VALUES(ultima_linea))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ImportacionJdbcWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserta las unidades en un batch y asigna a cada una el id generado
+     */
+    public void insertarUnidades(List<Unidad> unidades) {
+        if (unidades.isEmpty()) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(INSERT_UNIDAD, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Unidad unidad = unidades.get(i);
+                        ps.setString(1, unidad.getNoSerie());
+                        setId(ps, 2, unidad.getModelo() != null ? unidad.getModelo().getId() : null);
+                        setId(ps, 3, unidad.getDistribuidor() != null ? unidad.getDistribuidor().getId() : null);
+                        setFecha(ps, 4, unidad.getDebisFecha());
+                        setDouble(ps, 5, unidad.getValorUnidad());
+                        ps.setString(6, unidad.getArchivoOrigen());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return unidades.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> claves = keyHolder.getKeyList();
+        if (claves.size() != unidades.size()) {
+            throw new IncorrectResultSizeDataAccessException(
+                    "No se obtuvieron los ids generados de todas las unidades", unidades.size(), claves.size());
+        }
+        for (int i = 0; i < unidades.size(); i++) {
+            Number id = (Number) claves.get(i).values().iterator().next();
+            unidades.get(i).setId(id.intValue());
+        }
+    }
+
+    /**
+     * Inserta los detalles de cobro en un solo batch
+     */
+    public void insertarCobrosDetalle(List<CobroDetalle> detalles) {
+        if (detalles.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_COBRO_DETALLE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                CobroDetalle detalle = detalles.get(i);
+                ps.setInt(1, detalle.getUnidad().getId());
+                ps.setInt(2, detalle.getConcepto().getId());
+                ps.setDouble(3, detalle.getMontoAplicado());
+                ps.setString(4, detalle.getArchivoOrigen());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return detalles.size();
+            }
+        });
+    }
+
+    /**
+     * Inserta los seguros en un solo batch
+     */
+    public void insertarSeguros(List<Seguro> seguros) {
+        if (seguros.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SEGURO, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Seguro seguro = seguros.get(i);
+                setId(ps, 1, seguro.getDistribuidor() != null ? seguro.getDistribuidor().getId() : null);
+                setId(ps, 2, seguro.getUnidad() != null ? seguro.getUnidad().getId() : null);
+                ps.setString(3, seguro.getFactura());
+                setDouble(ps, 4, seguro.getValorSeguro());
+                setDouble(ps, 5, seguro.getSeguroDistribuidor());
+                setDouble(ps, 6, seguro.getCuotaSeguro());
+                setFecha(ps, 7, seguro.getFechaFactura());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return seguros.size();
+            }
+        });
+    }
+
+    /**
+     * Valores guardados de las unidades con esos VIN, con su seguro y su desglose.
+     * La clave ignora mayúsculas, igual que la collation de la columna; si un VIN
+     * está repetido en BD se toma la unidad más antigua.
+     */
+    public Map<String, UnidadExistente> buscarUnidadesExistentes(Collection<String> vins) {
+        Map<String, UnidadExistente> existentes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (vins.isEmpty()) {
+            return existentes;
+        }
+
+        jdbcTemplate.query("SELECT id, NoSerie, DebisFecha, Valor_unidad FROM unidad WHERE NoSerie IN (" +
+                marcadores(vins.size()) + ") ORDER BY id", rs -> {
+            Date debisFecha = rs.getDate(3);
+            Double valorUnidad = doble(rs, 4);
+            existentes.putIfAbsent(rs.getString(2), new UnidadExistente(rs.getInt(1),
+                    debisFecha != null ? debisFecha.toLocalDate() : null, valorUnidad));
+        }, vins.toArray());
+        if (existentes.isEmpty()) {
+            return existentes;
+        }
+
+        Map<Integer, UnidadExistente> porId = new TreeMap<>();
+        existentes.values().forEach(unidad -> porId.put(unidad.getId(), unidad));
+        Object[] ids = porId.keySet().toArray();
+        String enIds = marcadores(ids.length);
+
+        jdbcTemplate.query("SELECT UnidadID, Factura, ValorSeguro, SeguroDistribuidor, cuotaSeguro, cuotaFactura, id " +
+                "FROM seguros WHERE UnidadID IN (" + enIds + ") ORDER BY id", rs -> {
+            UnidadExistente unidad = porId.get(rs.getInt(1));
+            if (!unidad.tieneSeguro()) {
+                Date fechaFactura = rs.getDate(6);
+                unidad.asignarSeguro(rs.getInt(7), rs.getString(2), doble(rs, 3), doble(rs, 4), doble(rs, 5),
+                        fechaFactura != null ? fechaFactura.toLocalDate() : null);
+            }
+        }, ids);
+
+        jdbcTemplate.query("SELECT unidad_id, concepto_id, monto_aplicado FROM cobro_detalle WHERE unidad_id IN (" +
+                        enIds + ")" + SIN_CARGOS_MANUALES,
+                (RowCallbackHandler) rs -> porId.get(rs.getInt(1)).agregarCobro(rs.getInt(2), rs.getDouble(3)), ids);
+        return existentes;
+    }
+
+    /**
+     * Actualiza fecha de fondeo y valor de las unidades en un solo batch
+     */
+    public void actualizarUnidades(List<Unidad> unidades) {
+        if (unidades.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(UPDATE_UNIDAD, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Unidad unidad = unidades.get(i);
+                setFecha(ps, 1, unidad.getDebisFecha());
+                setDouble(ps, 2, unidad.getValorUnidad());
+                ps.setInt(3, unidad.getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return unidades.size();
+            }
+        });
+    }
+
+    /**
+     * Actualiza los seguros en un solo batch, cada uno por su id: solo el seguro que se comparó
+     */
+    public void actualizarSeguros(List<Seguro> seguros) {
+        if (seguros.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(UPDATE_SEGURO, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Seguro seguro = seguros.get(i);
+                ps.setString(1, seguro.getFactura());
+                setDouble(ps, 2, seguro.getValorSeguro());
+                setDouble(ps, 3, seguro.getSeguroDistribuidor());
+                setDouble(ps, 4, seguro.getCuotaSeguro());
+                setFecha(ps, 5, seguro.getFechaFactura());
+                ps.setInt(6, seguro.getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return seguros.size();
+            }
+        });
+    }
+
+    /**
+     * Borra el desglose de las unidades cuyo desglose se va a reemplazar; los cargos manuales se conservan.
+     * El archivo_origen de la unidad no cambia: identifica al archivo que la creó, que es lo único que se revierte.
+     */
+    public void eliminarCobrosDetalle(List<Integer> unidadIds) {
+        if (unidadIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM cobro_detalle WHERE unidad_id IN (" + marcadores(unidadIds.size()) + ")" +
+                SIN_CARGOS_MANUALES, unidadIds.toArray());
+    }
+
+    /**
+     * Registra el avance del lote en el archivo importado: contadores y última línea de su partición
+     */
+    public void registrarPuntoControl(Integer archivoId, int particion, LineaArchivo ultimaLinea,
+                                      EstadisticasImportacion estadisticas) {
+        jdbcTemplate.update(SUMAR_CONTADORES_ARCHIVO, estadisticas.getTotalLineas(), estadisticas.getImportados(),
+                estadisticas.getActualizados(), estadisticas.getSinCambios(), estadisticas.getConceptosAplicados(), estadisticas.getDesgloseCompleto(),
+                estadisticas.getTarifaUnicaDetectada(), estadisticas.getUnidadesExentas(), archivoId);
+        jdbcTemplate.update(GUARDAR_PUNTO_CONTROL, archivoId, particion, ultimaLinea.numero(), ultimaLinea.fin());
+    }
+
+    private static String marcadores(int cantidad) {
+        return String.join(", ", Collections.nCopies(cantidad, "?"));
+    }
+
+    private static Double doble(ResultSet rs, int indice) throws SQLException {
+        double valor = rs.getDouble(indice);
+        return rs.wasNull() ? null : valor;
+    }
+
+    private static void setId(PreparedStatement ps, int indice, Integer id) throws SQLException {
+        if (id == null) {
+            ps.setNull(indice, Types.INTEGER);
+        } else {
+            ps.setInt(indice, id);
+        }
+    }
+
+    private static void setDouble(PreparedStatement ps, int indice, Double valor) throws SQLException {
+        if (valor == null) {
+            ps.setNull(indice, Types.DOUBLE);
+        } else {
+            ps.setDouble(indice, valor);
+        }
+    }
+
+    private static void setFecha(PreparedStatement ps, int indice, LocalDate fecha) throws SQLException {
+        if (fecha == null) {
+            ps.setNull(indice, Types.DATE);
+        } else {
+            ps.setDate(indice, Date.valueOf(fecha));
+        }
+    }
+}
@@ -0,0 +1,780 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.dto.DatosImportacion;
+import com.adavec.transporte.dto.ResultadoDesglose;
+import com.adavec.transporte.model.*;
+import com.adavec.transporte.repository.UnidadRepository;
+import com.adavec.transporte.service.*;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Procesa un lote de líneas del TXT dentro de una sola transacción.
+ * Se invoca desde {@link ImportacionTxtService} a través del proxy de Spring,
+ * por lo que la transacción y el reintento se aplican al lote completo.
+ */
+@Service
+public class ImportacionLoteService {
+
+    private final DesgloseCobroService desgloseCobroService;
+    private final CatalogoImportacionService catalogoImportacionService;
+
+    private final CatalogoConceptosService catalogoConceptos;
+    private final UnidadRepository unidadRepository;
+    private final ImportacionJdbcWriter importacionJdbcWriter;
+
+    private final TarifaConceptoService tarifaConceptoService;
+    private final ResumenMensualService resumenMensualService;
+
+    private static final int MAX_PARAMETROS_IN = 1000;
+
+    // Constantes para detección automática
+    static final double VALOR_DESGLOSE_COMPLETO = 17883.0;
+    static final double VALOR_TARIFA_UNICA_IVA = 26564.0;
+
+    public ImportacionLoteService(DesgloseCobroService desgloseCobroService,
+                                  CatalogoImportacionService catalogoImportacionService,
+                                  CatalogoConceptosService catalogoConceptos,
+                                  UnidadRepository unidadRepository,
+                                  ImportacionJdbcWriter importacionJdbcWriter,
+                                  TarifaConceptoService tarifaConceptoService,
+                                  ResumenMensualService resumenMensualService) {
+        this.desgloseCobroService = desgloseCobroService;
+        this.catalogoImportacionService = catalogoImportacionService;
+        this.catalogoConceptos = catalogoConceptos;
+        this.unidadRepository = unidadRepository;
+        this.importacionJdbcWriter = importacionJdbcWriter;
+        this.tarifaConceptoService = tarifaConceptoService;
+        this.resumenMensualService = resumenMensualService;
+    }
+
+    /**
+     * Línea ya validada y con su unidad preparada, pendiente de escribirse en el lote
+     */
+    private static class RegistroLinea {
+        private final int numeroLinea;
+        private final String linea;
+        private final DatosImportacion datos;
+        private final Double valorSeguro;
+        private Distribuidor distribuidor;
+        // Solo en modo actualización, cuando el VIN ya existe
+        private UnidadExistente existente;
+
+        RegistroLinea(int numeroLinea, String linea, DatosImportacion datos, Double valorSeguro) {
+            this.numeroLinea = numeroLinea;
+            this.linea = linea;
+            this.datos = datos;
+            this.valorSeguro = valorSeguro;
+        }
+
+        int numeroLinea() { return numeroLinea; }
+        String linea() { return linea; }
+        DatosImportacion datos() { return datos; }
+        Double valorSeguro() { return valorSeguro; }
+        Distribuidor distribuidor() { return distribuidor; }
+        UnidadExistente existente() { return existente; }
+    }
+
+    /**
+     * Procesa un lote de líneas con manejo de errores mejorado y desglose de conceptos.
+     * Todo el lote se confirma en un solo commit; ante bloqueos se reintenta el lote completo.
+     * Las unidades, detalles de cobro y seguros se escriben con batches JDBC al final de cada fase.
+     * En modo actualización los VIN existentes se comparan con lo guardado y solo se escribe lo que cambió.
+     */
+    @Retryable(
+            retryFor = {PessimisticLockingFailureException.class},
+            maxAttempts = 3,
+            backoff = @Backoff(delay = 500, multiplier = 2)
+    )
+    @Transactional(isolation = Isolation.READ_COMMITTED, rollbackFor = Exception.class)
+    public EstadisticasImportacion procesarLote(List<LineaArchivo> lineas, ContextoImportacion contexto, int particion) {
+        EstadisticasImportacion estadisticas = procesar(lineas, contexto);
+
+        // En la misma transacción: si el lote se revierte, su punto de control también
+        PuntoControlImportacion puntoControl = contexto.getPuntoControl();
+        if (puntoControl != null) {
+            importacionJdbcWriter.registrarPuntoControl(puntoControl.getArchivoId(), particion,
+                    lineas.get(lineas.size() - 1), estadisticas);
+        }
+        return estadisticas;
+    }
+
+    private EstadisticasImportacion procesar(List<LineaArchivo> lineas, ContextoImportacion contexto) {
+        String nombreArchivo = contexto.getNombreArchivo();
+        EstadisticasImportacion estadisticas = new EstadisticasImportacion();
+        estadisticas.sumarLineas(lineas.size());
+        LineaTxt col = new LineaTxt();
+        CamposLinea campos = new CamposLinea();
+        List<RegistroLinea> candidatos = new ArrayList<>(lineas.size());
+
+        // Fase 1: validar y leer las columnas de cada línea
+        for (LineaArchivo lineaArchivo : lineas) {
+            int numeroLinea = lineaArchivo.numero();
+            String linea = lineaArchivo.texto();
+
+            try {
+                // La línea se tokeniza una sola vez; validación y construcción comparten las columnas
+                col.cargar(linea);
+
+                // Validar línea antes de procesar
+                ResultadoValidacion validacion = ValidadorLineaTxt.validar(col, numeroLinea, campos);
+                if (!validacion.isEsValido()) {
+                    estadisticas.agregarErrores(validacion.getErrores());
+                    continue;
+                }
+
+                DatosImportacion datosImportacion = leerDatos(col, campos, nombreArchivo);
+                Double valorSeguro = campos.getValorSeguro();
+
+                candidatos.add(new RegistroLinea(numeroLinea, linea, datosImportacion, valorSeguro));
+
+            } catch (Exception e) {
+                estadisticas.agregarError(new ErrorDetallado(numeroLinea, TipoError.ERROR_PROCESAMIENTO,
+                        "Error inesperado al procesar línea: " + e.getMessage(),
+                        linea));
+                System.err.println("💥 Error en línea " + numeroLinea + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        // Fase 2: verificar duplicados del lote completo con una sola consulta
+        boolean actualizar = contexto.isActualizarExistentes();
+        Map<String, UnidadExistente> unidadesExistentes = actualizar ? buscarUnidadesExistentes(candidatos) : Map.of();
+        Set<String> existentes = actualizar ? unidadesExistentes.keySet() : buscarVinsExistentes(candidatos);
+
+        // Fase 3: descartar duplicados en BD y dentro del archivo
+        Map<String, Integer> vinsDelArchivo = contexto.getVinsDelArchivo();
+        Map<String, Integer> vinsDelLote = new HashMap<>();
+        List<RegistroLinea> pendientes = new ArrayList<>(candidatos.size());
+        for (RegistroLinea registro : candidatos) {
+            int numeroLinea = registro.numeroLinea();
+            String linea = registro.linea();
+            DatosImportacion datosImportacion = registro.datos();
+            String noSerie = datosImportacion.getNoSerie();
+
+            // Verificar duplicados
+            if (existentes.contains(noSerie) && !actualizar) {
+                estadisticas.agregarError(new ErrorDetallado(numeroLinea, TipoError.DUPLICADO,
+                        String.format("Unidad duplicada - VIN: %s ya existe en el sistema (Distribuidor: %s, Modelo: %s)",
+                                noSerie, datosImportacion.getClaveDistribuidora(), datosImportacion.getModeloNombre()),
+                        linea, "noSerie", noSerie));
+                continue;
+            }
+
+            // VIN repetido dentro del mismo archivo; al reintentar un lote la misma línea no cuenta como repetida
+            String claveVin = noSerie.toUpperCase(Locale.ROOT);
+            Integer primeraLinea = vinsDelArchivo.get(claveVin);
+            if (primeraLinea == null || primeraLinea == numeroLinea) {
+                primeraLinea = vinsDelLote.putIfAbsent(claveVin, numeroLinea);
+            }
+            if (primeraLinea != null && primeraLinea != numeroLinea) {
+                estadisticas.agregarError(new ErrorDetallado(numeroLinea, TipoError.DUPLICADO,
+                        String.format("Unidad duplicada - VIN: %s repetido en el archivo (primera aparición en línea %d)",
+                                noSerie, primeraLinea),
+                        linea, "noSerie", noSerie));
+                continue;
+            }
+            registro.existente = unidadesExistentes.get(noSerie);
+            pendientes.add(registro);
+        }
+
+        // Fase 4: resolver en bloque modelos y distribuidores; las claves ya vistas salen del catálogo en memoria
+        CatalogosImportacion catalogos = contexto.getCatalogos();
+        Set<String> nombresModelo = new HashSet<>();
+        Set<String> clavesDistribuidor = new HashSet<>();
+        for (RegistroLinea registro : pendientes) {
+            nombresModelo.add(registro.datos().getModeloNombre());
+            clavesDistribuidor.add(registro.datos().getClaveDistribuidora());
+        }
+        catalogoImportacionService.resolver(catalogos, nombresModelo, clavesDistribuidor);
+
+        List<RegistroLinea> registros = new ArrayList<>(pendientes.size());
+        for (RegistroLinea registro : pendientes) {
+            int numeroLinea = registro.numeroLinea();
+            String linea = registro.linea();
+            DatosImportacion datosImportacion = registro.datos();
+            String claveDistribuidora = datosImportacion.getClaveDistribuidora();
+            String modeloNombre = datosImportacion.getModeloNombre();
+
+            // Procesar modelo y distribuidor
+            Modelo modelo = catalogos.modelo(modeloNombre);
+            if (modelo == null) {
+                estadisticas.agregarError(new ErrorDetallado(numeroLinea, TipoError.ERROR_BASE_DATOS,
+                        "No se pudo crear o encontrar el modelo: " + modeloNombre,
+                        linea, "modeloNombre", modeloNombre));
+                continue;
+            }
+
+            Distribuidor distribuidor = catalogos.distribuidor(claveDistribuidora);
+            if (distribuidor == null) {
+                estadisticas.agregarError(new ErrorDetallado(numeroLinea, TipoError.DISTRIBUIDOR_INVALIDO,
+                        "No se pudo crear o encontrar el distribuidor: " + claveDistribuidora,
+                        linea, "claveDistribuidora", claveDistribuidora));
+                continue;
+            }
+
+            // Preparar la unidad; se inserta junto con el resto del lote
+            Unidad unidad = new Unidad();
+            if (registro.existente() != null) {
+                unidad.setId(registro.existente().getId());
+            } else {
+                // Solo la unidad que crea este archivo queda marcada con él; es lo que se revierte
+                unidad.setArchivoOrigen(nombreArchivo);
+            }
+            unidad.setNoSerie(datosImportacion.getNoSerie());
+            unidad.setModelo(modelo);
+            unidad.setDistribuidor(distribuidor);
+            unidad.setDebisFecha(datosImportacion.getFechaFondeo());
+            unidad.setValorUnidad(datosImportacion.getValorUnidad());
+            datosImportacion.setUnidad(unidad);
+
+            registro.distribuidor = distribuidor;
+            vinsDelArchivo.putIfAbsent(datosImportacion.getNoSerie().toUpperCase(Locale.ROOT), numeroLinea);
+            registros.add(registro);
+        }
+
+        if (registros.isEmpty()) {
+            return estadisticas;
+        }
+
+        // Fase 5: insertar todas las unidades nuevas del lote en un solo batch JDBC
+        List<Unidad> unidades = new ArrayList<>(registros.size());
+        for (RegistroLinea registro : registros) {
+            if (registro.existente() == null) {
+                unidades.add(registro.datos().getUnidad());
+            }
+        }
+        importacionJdbcWriter.insertarUnidades(unidades);
+
+        // Fase 6: calcular cobros y seguros de cada unidad; se acumulan para escribirlos en batch
+        List<CobroDetalle> detalles = new ArrayList<>();
+        List<Seguro> seguros = new ArrayList<>(registros.size());
+        List<Unidad> unidadesActualizadas = new ArrayList<>();
+        List<Seguro> segurosActualizados = new ArrayList<>();
+        List<Integer> desglosesReemplazados = new ArrayList<>();
+        for (RegistroLinea registro : registros) {
+            if (registro.existente() == null) {
+                estadisticas.sumarImportado();
+                calcularCobrosYSeguro(registro, detalles, seguros, estadisticas, nombreArchivo);
+                continue;
+            }
+
+            // Unidad existente: se calcula igual que una nueva y se compara con lo guardado
+            EstadisticasImportacion parcial = new EstadisticasImportacion();
+            List<CobroDetalle> nuevosDetalles = new ArrayList<>();
+            List<Seguro> nuevoSeguro = new ArrayList<>(1);
+            calcularCobrosYSeguro(registro, nuevosDetalles, nuevoSeguro, parcial, nombreArchivo);
+
+            UnidadExistente existente = registro.existente();
+            Unidad unidad = registro.datos().getUnidad();
+            boolean unidadCambio = existente.unidadCambio(unidad.getDebisFecha(), unidad.getValorUnidad());
+            Seguro seguro = nuevoSeguro.isEmpty() ? null : nuevoSeguro.get(0);
+            boolean seguroCambio = seguro != null && existente.seguroCambio(seguro.getFactura(), seguro.getValorSeguro(),
+                    seguro.getSeguroDistribuidor(), seguro.getCuotaSeguro(), seguro.getFechaFactura());
+            List<UnidadExistente.Cobro> cobros = new ArrayList<>(nuevosDetalles.size());
+            for (CobroDetalle detalle : nuevosDetalles) {
+                cobros.add(new UnidadExistente.Cobro(detalle.getConcepto().getId(), detalle.getMontoAplicado()));
+            }
+            boolean desgloseCambio = existente.desgloseCambio(cobros);
+
+            if (!unidadCambio && !seguroCambio && !desgloseCambio) {
+                estadisticas.agregarErrores(parcial.getErrores());
+                estadisticas.sumarSinCambios();
+                continue;
+            }
+
+            estadisticas.sumar(parcial);
+            estadisticas.sumarActualizado();
+            if (unidadCambio) {
+                unidadesActualizadas.add(unidad);
+            }
+            if (seguroCambio) {
+                // Sin seguro previo se inserta uno nuevo; con él se actualiza el mismo que se comparó
+                if (existente.tieneSeguro()) {
+                    seguro.setId(existente.getSeguroId());
+                    segurosActualizados.add(seguro);
+                } else {
+                    seguros.add(seguro);
+                }
+            }
+            if (desgloseCambio) {
+                desglosesReemplazados.add(existente.getId());
+                detalles.addAll(nuevosDetalles);
+            }
+            System.out.println("🔄 Unidad actualizada - VIN: " + unidad.getNoSerie() +
+                    (unidadCambio ? " [unidad]" : "") + (seguroCambio ? " [seguro]" : "") + (desgloseCambio ? " [desglose]" : ""));
+        }
+
+        // Fase 7: escribir cambios, detalles de cobro y seguros del lote en batch
+        importacionJdbcWriter.actualizarUnidades(unidadesActualizadas);
+        importacionJdbcWriter.actualizarSeguros(segurosActualizados);
+        importacionJdbcWriter.eliminarCobrosDetalle(desglosesReemplazados);
+        importacionJdbcWriter.insertarCobrosDetalle(detalles);
+        importacionJdbcWriter.insertarSeguros(seguros);
+
+        // Resumen mensual de las unidades escritas, en la transacción del lote
+        List<Integer> unidadIds = new ArrayList<>(registros.size());
+        for (RegistroLinea registro : registros) {
+            unidadIds.add(registro.datos().getUnidad().getId());
+        }
+        resumenMensualService.recalcularUnidades(unidadIds);
+
+        return estadisticas;
+    }
+
+    /**
+     * Calcula el desglose de cobros y el seguro de la unidad del registro
+     */
+    private void calcularCobrosYSeguro(RegistroLinea registro, List<CobroDetalle> detalles, List<Seguro> seguros,
+                                       EstadisticasImportacion estadisticas, String nombreArchivo) {
+        int numeroLinea = registro.numeroLinea();
+        String linea = registro.linea();
+        DatosImportacion datosImportacion = registro.datos();
+        Unidad unidad = datosImportacion.getUnidad();
+        String noSerie = datosImportacion.getNoSerie();
+        Double tarifaUnica = datosImportacion.getTarifaUnica();
+        Double cuotaAsociacion = datosImportacion.getCuotaAsociacion();
+        Double fondoEstrella = datosImportacion.getFondoEstrella();
+        Double valorUnidad = datosImportacion.getValorUnidad();
+        LocalDate fechaTraslado = datosImportacion.getFechaTraslado();
+
+        try {
+            // *** PROCESAR COBROS CON MANEJO GRANULAR DE CONCEPTOS ***
+            try {
+                // Intentar usar el servicio completo primero
+                ResultadoDesglose resultadoDesglose = desgloseCobroService.calcularDesglose(datosImportacion);
+
+                if (resultadoDesglose.isExitoso()) {
+                    // El servicio funcionó correctamente
+                    detalles.addAll(resultadoDesglose.getDetalles());
+                    estadisticas.sumarConceptosAplicados(resultadoDesglose.getDetalles().size());
+
+                    // Detectar tipo de desglose para estadísticas
+                    if (Math.abs(cuotaAsociacion - VALOR_DESGLOSE_COMPLETO) < 0.01) {
+                        estadisticas.sumarDesgloseCompleto();
+                        System.out.println("🔍 Desglose completo 17,883 aplicado para VIN: " + noSerie);
+                    }
+
+                    if (Math.abs(tarifaUnica - VALOR_TARIFA_UNICA_IVA) < 0.01) {
+                        estadisticas.sumarTarifaUnicaDetectada();
+                        System.out.println("🔍 Tarifa única con IVA 26,564 detectada para VIN: " + noSerie);
+                    }
+
+                    // Log advertencias del servicio
+                    if (!resultadoDesglose.getAdvertencias().isEmpty()) {
+                        System.out.println("⚠️ Advertencias para VIN " + noSerie + ":");
+                        resultadoDesglose.getAdvertencias().forEach(adv ->
+                                System.out.println("   - " + adv));
+                    }
+
+                    System.out.println("✅ Cobros procesados - VIN: " + noSerie +
+                            " - " + resultadoDesglose.getDetalles().size() + " conceptos" +
+                            " - Total: $" + String.format("%.2f", resultadoDesglose.getTotalDesglosado()));
+
+                } else if (resultadoDesglose.isExento()) {
+                    // Unidad exenta pero aún aplicar seguros básicos
+                    estadisticas.sumarUnidadExenta();
+                    System.out.println("ℹ️ Unidad exenta de tarifa única - VIN: " + noSerie +
+                            " - " + resultadoDesglose.getMotivo());
+
+                    // Aplicar solo seguros básicos para unidades exentas
+                    int conceptosBasicos = aplicarConceptosBasicos(detalles, unidad, valorUnidad, fechaTraslado, nombreArchivo);
+                    estadisticas.sumarConceptosAplicados(conceptosBasicos);
+
+                    if (conceptosBasicos > 0) {
+                        System.out.println("✅ Aplicados " + conceptosBasicos + " conceptos básicos para VIN exenta: " + noSerie);
+                    }
+
+                } else {
+                    // Error en el servicio, intentar aplicación manual de conceptos
+                    System.err.println("⚠️ Error en servicio de desglose para VIN " + noSerie +
+                            ": " + resultadoDesglose.getError());
+                    System.out.println("🔄 Intentando aplicación manual de conceptos...");
+
+                    int conceptosAplicadosManual = aplicarConceptosManualmente(detalles,
+                            unidad, tarifaUnica, cuotaAsociacion, fondoEstrella, valorUnidad,
+                            fechaTraslado, nombreArchivo
+                    );
+
+                    if (conceptosAplicadosManual > 0) {
+                        estadisticas.sumarConceptosAplicados(conceptosAplicadosManual);
+
+                        // Detectar tipo de desglose para estadísticas
+                        if (Math.abs(cuotaAsociacion - VALOR_DESGLOSE_COMPLETO) < 0.01) {
+                            estadisticas.sumarDesgloseCompleto();
+                            System.out.println("🔍 Desglose completo 17,883 aplicado manualmente para VIN: " + noSerie);
+                        }
+
+                        if (Math.abs(tarifaUnica - VALOR_TARIFA_UNICA_IVA) < 0.01) {
+                            estadisticas.sumarTarifaUnicaDetectada();
+                            System.out.println("🔍 Tarifa única con IVA 26,564 aplicada manualmente para VIN: " + noSerie);
+                        }
+
+                        System.out.println("✅ Aplicados " + conceptosAplicadosManual +
+                                " conceptos manualmente para VIN: " + noSerie);
+                    } else {
+                        estadisticas.agregarError(new ErrorDetallado(numeroLinea, TipoError.ERROR_DESGLOSE,
+                                "No se pudieron aplicar conceptos: " + resultadoDesglose.getError(),
+                                linea));
+                    }
+                }
+
+            } catch (Exception e) {
+                System.err.println("💥 Error inesperado en cobros para VIN " + noSerie + ": " + e.getMessage());
+
+                // Como último recurso, aplicar conceptos básicos
+                try {
+                    int conceptosBasicos = aplicarConceptosBasicos(detalles, unidad, valorUnidad, fechaTraslado, nombreArchivo);
+                    if (conceptosBasicos > 0) {
+                        estadisticas.sumarConceptosAplicados(conceptosBasicos);
+                        System.out.println("🛡️ Aplicados " + conceptosBasicos + " conceptos básicos como respaldo para VIN: " + noSerie);
+                    }
+                } catch (Exception ex) {
+                    estadisticas.agregarError(new ErrorDetallado(numeroLinea, TipoError.ERROR_DESGLOSE,
+                            "Error crítico procesando cobros: " + ex.getMessage(),
+                            linea));
+                    System.err.println("💥 Error crítico en conceptos básicos para VIN " + noSerie + ": " + ex.getMessage());
+                }
+            }
+
+
+
+            // Guardar seguro (mantener)
+            seguros.add(crearSeguro(unidad, registro.distribuidor(), datosImportacion.getNumeroFactura(),
+                    registro.valorSeguro(), cuotaAsociacion, valorUnidad, datosImportacion.getFechaFondeo()));
+
+            System.out.println("✅ Unidad procesada exitosamente - VIN: " + noSerie);
+
+        } catch (PessimisticLockingFailureException e) {
+            throw e;
+        } catch (Exception e) {
+            estadisticas.agregarError(new ErrorDetallado(numeroLinea, TipoError.ERROR_PROCESAMIENTO,
+                    "Error inesperado al procesar línea: " + e.getMessage(),
+                    linea));
+            System.err.println("💥 Error en línea " + numeroLinea + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Arma los datos de importación de una línea ya validada; también lo usa la importación masiva
+     */
+    static DatosImportacion leerDatos(LineaTxt col, CamposLinea campos, String nombreArchivo) {
+        String claveDistribuidora = col.texto(0);
+        String factura = col.texto(1);
+        String modeloNombre = col.texto(2);
+        String noSerie = col.texto(4).trim();
+
+        // Fechas y montos ya interpretados por la validación
+        LocalDate fechaFondeo = campos.getFechaFondeo();
+        LocalDate fechaInteres = campos.getFechaInteres();
+        Integer dias = campos.getDias();
+        Double valorUnidad = campos.getValorUnidad();
+        Double cuotaAsociacion = campos.getCuotaAsociacion();
+        Double tarifaUnica = campos.getTarifaUnica();
+
+        Double fondoEstrella = 0.0;
+        if (col.columnas() > 12) {
+            fondoEstrella = convertirADouble(col.texto(12));
+        }
+
+        // Detectar tarifa única con IVA en penúltima columna
+        if (col.columnas() > 15) {
+            Double valorPenultimaColumna = convertirADouble(col.texto(col.columnas() - 2));
+            if (Math.abs(valorPenultimaColumna - VALOR_TARIFA_UNICA_IVA) < 0.01) {
+                tarifaUnica = valorPenultimaColumna;
+                System.out.println("🔍 Detectada tarifa única con IVA: " + valorPenultimaColumna +
+                        " para VIN: " + noSerie);
+            }
+        }
+
+        LocalDate fechaTraslado = fechaFondeo;
+        if (col.columnas() > 15) {
+            LocalDate fechaTemp = parseFecha(col.texto(15));
+            if (fechaTemp != null) {
+                fechaTraslado = fechaTemp;
+            }
+        }
+
+        DatosImportacion datosImportacion = new DatosImportacion();
+        datosImportacion.setTarifaUnica(tarifaUnica);
+        datosImportacion.setCuotaAsociacion(cuotaAsociacion);
+        datosImportacion.setFondoEstrella(fondoEstrella);
+        datosImportacion.setValorUnidad(valorUnidad);
+        datosImportacion.setFechaTraslado(fechaTraslado);
+        datosImportacion.setFechaInteres(fechaInteres);
+        datosImportacion.setFechaFondeo(fechaFondeo);
+        datosImportacion.setArchivoOrigen(nombreArchivo);
+        datosImportacion.setDias(dias);
+        datosImportacion.setNumeroFactura(factura);
+        datosImportacion.setClaveDistribuidora(claveDistribuidora);
+        datosImportacion.setModeloNombre(modeloNombre);
+        datosImportacion.setNoSerie(noSerie);
+
+        return datosImportacion;
+    }
+
+    /**
+     * Modo actualización: valores guardados de los VIN del lote que ya existen en BD
+     */
+    private Map<String, UnidadExistente> buscarUnidadesExistentes(List<RegistroLinea> candidatos) {
+        Set<String> vins = new LinkedHashSet<>();
+        for (RegistroLinea candidato : candidatos) {
+            vins.add(candidato.datos().getNoSerie());
+        }
+
+        Map<String, UnidadExistente> existentes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<String> pendientes = new ArrayList<>(vins);
+        for (int i = 0; i < pendientes.size(); i += MAX_PARAMETROS_IN) {
+            existentes.putAll(importacionJdbcWriter.buscarUnidadesExistentes(
+                    pendientes.subList(i, Math.min(i + MAX_PARAMETROS_IN, pendientes.size()))));
+        }
+        return existentes;
+    }
+
+    /**
+     * Consulta en bloque cuáles VIN del lote ya existen en BD.
+     * La comparación ignora mayúsculas, igual que la collation de la columna.
+     */
+    private Set<String> buscarVinsExistentes(List<RegistroLinea> candidatos) {
+        Set<String> existentes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        if (candidatos.isEmpty()) {
+            return existentes;
+        }
+
+        Set<String> vins = new LinkedHashSet<>();
+        for (RegistroLinea candidato : candidatos) {
+            vins.add(candidato.datos().getNoSerie());
+        }
+
+        // Particionar para no generar listas IN demasiado grandes con lotes configurados muy altos
+        List<String> pendientes = new ArrayList<>(vins);
+        for (int i = 0; i < pendientes.size(); i += MAX_PARAMETROS_IN) {
+            existentes.addAll(unidadRepository.findNoSeriesExistentes(
+                    pendientes.subList(i, Math.min(i + MAX_PARAMETROS_IN, pendientes.size()))));
+        }
+        return existentes;
+    }
+
+    private int aplicarConceptosBasicos(List<CobroDetalle> detalles, Unidad unidad, Double valorUnidad, LocalDate fechaTraslado, String nombreArchivo) {
+        int conceptosAplicados = 0;
+
+        try {
+            System.out.println("🔧 Aplicando conceptos básicos para VIN: " + unidad.getNoSerie() +
+                    " - Valor: $" + String.format("%.2f", valorUnidad));
+
+            // 1. SEGURO BÁSICO - DINÁMICO DESDE BD
+            conceptosAplicados += aplicarConceptoSiExiste(detalles, "Seguro Básico", "Seguro",
+                    unidad, valorUnidad, fechaTraslado, nombreArchivo);
+
+            // 2. ADMINISTRACIÓN - DINÁMICO DESDE BD
+            conceptosAplicados += aplicarConceptoSiExiste(detalles, "Gastos Administrativos", "Administración",
+                    unidad, valorUnidad, fechaTraslado, nombreArchivo);
+
+            // 3. MANEJO - DINÁMICO DESDE BD (OPCIONAL)
+            conceptosAplicados += aplicarConceptoSiExiste(detalles, "Manejo de Unidad", "Manejo",
+                    unidad, valorUnidad, fechaTraslado, nombreArchivo);
+
+            System.out.println("✅ Total conceptos básicos aplicados: " + conceptosAplicados);
+
+        } catch (Exception e) {
+            System.err.println("💥 Error aplicando conceptos básicos dinámicos: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return conceptosAplicados;
+    }
+
+    /**
+     * Intenta aplicar un concepto buscando por nombre principal y alternativo
+     */
+    private int aplicarConceptoSiExiste(List<CobroDetalle> detalles, String nombrePrincipal, String nombreAlternativo,
+                                        Unidad unidad, Double valorUnidad, LocalDate fechaTraslado, String nombreArchivo) {
+        try {
+            // Intentar con nombre principal
+            ConceptoCobro concepto = catalogoConceptos.porNombre(nombrePrincipal).orElse(null);
+
+            // Si no existe, intentar con nombre alternativo
+            if (concepto == null) {
+                concepto = catalogoConceptos.porNombre(nombreAlternativo).orElse(null);
+            }
+
+            if (concepto != null) {
+                return aplicarConceptoConTarifa(detalles, concepto, unidad, valorUnidad, fechaTraslado, nombreArchivo);
+            } else {
+                System.out.println("⚠️ No se encontró concepto: " + nombrePrincipal + " ni " + nombreAlternativo);
+                return 0;
+            }
+
+        } catch (Exception e) {
+            System.err.println("💥 Error aplicando concepto " + nombrePrincipal + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Aplica un concepto consultando su tarifa en BD
+     */
+    private int aplicarConceptoConTarifa(List<CobroDetalle> detalles, ConceptoCobro concepto, Unidad unidad, Double valorUnidad,
+                                         LocalDate fechaTraslado, String nombreArchivo) {
+        try {
+            // Calcular monto usando el servicio dinámico
+            Double monto = tarifaConceptoService.calcularMonto(concepto.getId(), valorUnidad, fechaTraslado);
+
+            if (monto != null && monto > 0) {
+                // Aplicar el concepto
+                aplicarConcepto(detalles, unidad, concepto, monto, fechaTraslado, nombreArchivo,
+                        "Aplicado desde tarifa_concepto");
+
+                System.out.println("✅ " + concepto.getNombre() + " aplicado: $" + String.format("%.2f", monto));
+                return 1;
+
+            } else {
+                // Intentar fallback si es seguro básico
+                if (concepto.getNombre().toLowerCase().contains("seguro")) {
+                    Double montoFallback = valorUnidad * 0.03; // 3% por defecto
+                    aplicarConcepto(detalles, unidad, concepto, montoFallback, fechaTraslado, nombreArchivo,
+                            "Fallback 3% - Sin tarifa en BD");
+
+                    System.out.println("⚠️ " + concepto.getNombre() + " aplicado con fallback: $" +
+                            String.format("%.2f", montoFallback));
+                    return 1;
+                }
+
+                System.out.println("❌ No se pudo calcular " + concepto.getNombre() + " - Sin tarifa configurada");
+                return 0;
+            }
+
+        } catch (Exception e) {
+            System.err.println("💥 Error aplicando concepto " + concepto.getNombre() + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Aplica conceptos manualmente cuando el servicio automático falla
+     */
+    private int aplicarConceptosManualmente(List<CobroDetalle> detalles, Unidad unidad, Double tarifaUnica, Double cuotaAsociacion,
+                                            Double fondoEstrella, Double valorUnidad, LocalDate fechaTraslado,
+                                            String nombreArchivo) {
+        int conceptosAplicados = 0;
+
+        try {
+            // 1. Aplicar tarifa única si existe
+            if (tarifaUnica != null && tarifaUnica > 0) {
+                ConceptoCobro conceptoTarifa = catalogoConceptos.porNombre("Tarifa Única")
+                        .or(() -> catalogoConceptos.porNombre("Tarifas"))
+                        .orElse(null);
+
+                if (conceptoTarifa != null) {
+                    aplicarConcepto(detalles, unidad, conceptoTarifa, tarifaUnica, fechaTraslado, nombreArchivo,
+                            "Tarifa única manual - $" + tarifaUnica);
+                    conceptosAplicados++;
+                    System.out.println("✅ Tarifa única aplicada manualmente: $" + String.format("%.2f", tarifaUnica));
+                }
+            }
+
+            // 2. Aplicar cuota de asociación si existe
+            if (cuotaAsociacion != null && cuotaAsociacion > 0) {
+                ConceptoCobro conceptoCuota = catalogoConceptos.porNombre("Cuota de Asociación")
+                        .or(() -> catalogoConceptos.porNombre("Asociación"))
+                        .orElse(null);
+
+                if (conceptoCuota != null) {
+                    aplicarConcepto(detalles, unidad, conceptoCuota, cuotaAsociacion, fechaTraslado, nombreArchivo,
+                            "Cuota asociación manual - $" + cuotaAsociacion);
+                    conceptosAplicados++;
+                    System.out.println("✅ Cuota asociación aplicada manualmente: $" + String.format("%.2f", cuotaAsociacion));
+                }
+            }
+
+            // 3. Aplicar fondo estrella si existe
+            if (fondoEstrella != null && fondoEstrella > 0) {
+                ConceptoCobro conceptoFondo = catalogoConceptos.porNombre("Fondo Estrella")
+                        .or(() -> catalogoConceptos.porNombre("Fondo"))
+                        .orElse(null);
+
+                if (conceptoFondo != null) {
+                    aplicarConcepto(detalles, unidad, conceptoFondo, fondoEstrella, fechaTraslado, nombreArchivo,
+                            "Fondo estrella manual - $" + fondoEstrella);
+                    conceptosAplicados++;
+                    System.out.println("✅ Fondo estrella aplicado manualmente: $" + String.format("%.2f", fondoEstrella));
+                }
+            }
+
+            // 4. Siempre aplicar conceptos básicos como respaldo
+            int conceptosBasicos = aplicarConceptosBasicos(detalles, unidad, valorUnidad, fechaTraslado, nombreArchivo);
+            conceptosAplicados += conceptosBasicos;
+
+        } catch (Exception e) {
+            System.err.println("Error en aplicación manual de conceptos: " + e.getMessage());
+        }
+
+        return conceptosAplicados;
+    }
+
+    /**
+     * Aplica un concepto específico a una unidad
+     */
+    private void aplicarConcepto(List<CobroDetalle> detalles, Unidad unidad, ConceptoCobro concepto, Double monto,
+                                 LocalDate fecha, String archivoOrigen, String observaciones) {
+        try {
+            CobroDetalle detalle = new CobroDetalle();
+            detalle.setUnidad(unidad);
+            detalle.setConcepto(concepto);
+            detalle.setMontoAplicado(monto);  // ← Cambiado de setMonto a setMontoAplicado
+
+            detalle.setArchivoOrigen(archivoOrigen);
+
+            // Se escribe junto con el resto del lote
+            detalles.add(detalle);
+
+        } catch (Exception e) {
+            System.err.println("Error guardando concepto " + concepto.getNombre() +
+                    " para unidad " + unidad.getNoSerie() + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    // *** MÉTODOS NECESARIOS ***
+    private Seguro crearSeguro(Unidad unidad, Distribuidor distribuidor, String factura,
+                              Double valorSeguro, Double seguroDistribuidor, Double valorUnidad,
+                              LocalDate fechaFactura) {
+        Seguro seguro = new Seguro();
+        seguro.setUnidad(unidad);
+        seguro.setDistribuidor(distribuidor);
+        seguro.setFactura(factura);
+        seguro.setValorSeguro(valorSeguro);
+        seguro.setSeguroDistribuidor(seguroDistribuidor);
+        seguro.setCuotaSeguro(valorUnidad * 0.0324);
+        seguro.setFechaFactura(fechaFactura);
+        return seguro;
+    }
+
+    // *** MÉTODOS DE UTILIDAD ***
+    private static Double convertirADouble(String raw) {
+        if (raw == null || raw.contains("SIN CVE") || raw.contains("N/A")) {
+            return 0.0;
+        }
+        Double valor = ParserCampos.decimal(raw);
+        return valor != null ? valor : 0.0;
+    }
+
+    private static LocalDate parseFecha(String raw) {
+        if (ParserCampos.estaVacio(raw) || raw.length() < 8) {
+            return null;
+        }
+        LocalDate fecha = ParserCampos.fecha(raw);
+        if (fecha == null) {
+            System.err.println("Fecha inválida: " + raw);
+        }
+        return fecha;
+    }
+}
@@ -0,0 +1,469 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.dto.DatosImportacion;
+import com.adavec.transporte.model.ConceptoCobro;
+import com.adavec.transporte.service.CacheReporteFinanciero;
+import com.adavec.transporte.service.CatalogoConceptosService;
+import com.adavec.transporte.service.ResumenMensualService;
+import com.mysql.cj.jdbc.JdbcStatement;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Importación masiva del TXT para cargas iniciales y reimportaciones de recuperación.
+ * <p>
+ * Las líneas se validan igual que en la importación normal y las válidas se envían en
+ * streaming a una tabla temporal con {@code LOAD DATA LOCAL INFILE}; después, con SQL
+ * por conjuntos, se descartan duplicados, se crean y enlazan modelos y distribuidores
+ * con joins, y se llenan unidad, cobro_detalle y seguros con las mismas reglas de
+ * desglose que {@link com.adavec.transporte.service.DesgloseCobroService}.
+ * Todo ocurre en una sola transacción sobre una conexión propia, la única que tiene
+ * permitido enviar datos locales; el servidor debe tener {@code local_infile=ON}.
+ * <p>
+ * Está pensada para ejecutarse sola. Los modelos y distribuidores faltantes se crean con
+ * {@code INSERT IGNORE}: los índices únicos de ambos catálogos (ver {@link VerificadorIndicesCatalogo})
+ * evitan duplicarlos aunque una importación por lotes los cree al mismo tiempo.
+ */
+@Service
+public class ImportacionMasivaService {
+
+    private static final String CREAR_STAGING = """
+            CREATE TEMPORARY TABLE importacion_staging (
+                linea INT NOT NULL PRIMARY KEY,
+                clave_distribuidora VARCHAR(255) NOT NULL,
+                factura VARCHAR(255),
+                modelo VARCHAR(255) NOT NULL,
+                no_serie VARCHAR(255) NOT NULL,
+                fecha_fondeo DATE,
+                valor_unidad DOUBLE NOT NULL,
+                cuota_asociacion DOUBLE NOT NULL,
+                valor_seguro DOUBLE NOT NULL,
+                tarifa_unica DOUBLE NOT NULL,
+                fondo_estrella DOUBLE NOT NULL,
+                texto TEXT,
+                estado VARCHAR(20) NOT NULL DEFAULT 'OK',
+                primera_linea INT,
+                modelo_id INT,
+                distribuidor_id INT,
+                unidad_id INT,
+                INDEX idx_staging_no_serie (no_serie),
+                INDEX idx_staging_modelo (modelo),
+                INDEX idx_staging_clave (clave_distribuidora)
+            )""";
+
+    // MySQL no permite usar una tabla temporal dos veces en la misma consulta; la primera aparición va aparte
+    private static final String CREAR_STAGING_VIN = """
+            CREATE TEMPORARY TABLE importacion_staging_vin (
+                no_serie VARCHAR(255) NOT NULL PRIMARY KEY,
+                linea INT NOT NULL
+            )""";
+
+    // El nombre del archivo se ignora: los datos salen del stream asignado al statement
+    private static final String CARGAR_STAGING = """
+            LOAD DATA LOCAL INFILE 'importacion.tsv' INTO TABLE importacion_staging
+            CHARACTER SET utf8mb4
+            (linea, clave_distribuidora, factura, modelo, no_serie, fecha_fondeo,
+             valor_unidad, cuota_asociacion, valor_seguro, tarifa_unica, fondo_estrella, texto)""";
+
+    private static final String MARCAR_EXISTENTES = """
+            UPDATE importacion_staging s
+            JOIN unidad u ON u.NoSerie = s.no_serie
+            SET s.estado = 'DUPLICADO'""";
+
+    private static final String PRIMERAS_APARICIONES = """
+            INSERT INTO importacion_staging_vin (no_serie, linea)
+            SELECT no_serie, MIN(linea) FROM importacion_staging
+            WHERE estado = 'OK'
+            GROUP BY no_serie""";
+
+    private static final String MARCAR_REPETIDOS = """
+            UPDATE importacion_staging s
+            JOIN importacion_staging_vin v ON v.no_serie = s.no_serie
+            SET s.estado = 'REPETIDO', s.primera_linea = v.linea
+            WHERE s.estado = 'OK' AND s.linea <> v.linea""";
+
+    private static final String CREAR_MODELOS = """
+            INSERT IGNORE INTO modelo (Nombre, Uso)
+            SELECT MIN(s.modelo), 'CARGA' FROM importacion_staging s
+            WHERE s.estado = 'OK' AND NOT EXISTS (SELECT 1 FROM modelo m WHERE m.Nombre = s.modelo)
+            GROUP BY s.modelo""";
+
+    private static final String CREAR_DISTRIBUIDORES = """
+            INSERT IGNORE INTO distribuidor (NombreDistribuidora, ClaveDistribuidora, Contacto, Correo, Sucursal,
+                                             fecha_creacion, fecha_modificacion)
+            SELECT CONCAT('Distribuidor ', MIN(s.clave_distribuidora)), MIN(s.clave_distribuidora),
+                   'Pendiente', 'pendiente@example.com', 'Principal', ?, ?
+            FROM importacion_staging s
+            WHERE s.estado = 'OK'
+              AND NOT EXISTS (SELECT 1 FROM distribuidor d WHERE d.ClaveDistribuidora = s.clave_distribuidora)
+            GROUP BY s.clave_distribuidora""";
+
+    // Nombre y clave son únicos en BD: cada línea enlaza con un solo registro
+    private static final String ENLAZAR_MODELOS = """
+            UPDATE importacion_staging s
+            JOIN modelo m ON m.Nombre = s.modelo
+            SET s.modelo_id = m.id
+            WHERE s.estado = 'OK'""";
+
+    private static final String ENLAZAR_DISTRIBUIDORES = """
+            UPDATE importacion_staging s
+            JOIN distribuidor d ON d.ClaveDistribuidora = s.clave_distribuidora
+            SET s.distribuidor_id = d.id
+            WHERE s.estado = 'OK'""";
+
+    private static final String INSERTAR_UNIDADES = """
+            INSERT INTO unidad (NoSerie, ModeloID, DistribuidoraID, DebisFecha, Valor_unidad, archivo_origen)
+            SELECT no_serie, modelo_id, distribuidor_id, fecha_fondeo, valor_unidad, ?
+            FROM importacion_staging
+            WHERE estado = 'OK'
+            ORDER BY linea""";
+
+    private static final String ENLAZAR_UNIDADES = """
+            UPDATE importacion_staging s
+            JOIN unidad u ON u.NoSerie = s.no_serie
+            SET s.unidad_id = u.id
+            WHERE s.estado = 'OK'""";
+
+    private static final String INSERTAR_COBRO = """
+            INSERT INTO cobro_detalle (unidad_id, concepto_id, monto_aplicado, archivo_origen)
+            SELECT unidad_id, ?, %s, ?
+            FROM importacion_staging
+            WHERE estado = 'OK' AND %s""";
+
+    private static final String INSERTAR_SEGUROS = """
+            INSERT INTO seguros (DistribuidoraID, UnidadID, Factura, ValorSeguro, SeguroDistribuidor, cuotaSeguro, cuotaFactura)
+            SELECT distribuidor_id, unidad_id, factura, valor_seguro, cuota_asociacion, valor_unidad * 0.0324, fecha_fondeo
+            FROM importacion_staging
+            WHERE estado = 'OK'""";
+
+    private static final String CONTAR_DESGLOSE_COMPLETO =
+            "SELECT COUNT(*) FROM importacion_staging WHERE estado = 'OK' AND ABS(cuota_asociacion - 17883) < 0.01";
+
+    private static final String CONTAR_TARIFA_UNICA_IVA =
+            "SELECT COUNT(*) FROM importacion_staging WHERE estado = 'OK' AND ABS(tarifa_unica - 26564) < 0.01";
+
+    private static final String LEER_DESCARTADAS = """
+            SELECT linea, estado, primera_linea, no_serie, clave_distribuidora, modelo, texto
+            FROM importacion_staging
+            WHERE estado <> 'OK'
+            ORDER BY linea""";
+
+    /**
+     * Concepto, monto y condición de cada regla de desglose, en el mismo orden que DesgloseCobroService
+     */
+    private record ReglaCobro(String concepto, String monto, String condicion) {
+    }
+
+    private static final List<ReglaCobro> REGLAS_COBRO = List.of(
+            // Seguros básicos sobre el valor de la unidad
+            new ReglaCobro("SEGURO_BROKER", "valor_unidad * 0.0134", "valor_unidad > 0"),
+            new ReglaCobro("SEGURO_ADAVEC", "valor_unidad * 0.0324", "valor_unidad > 0"),
+            // Tarifa única; 26,564 trae IVA y se registra la base de 22,900
+            new ReglaCobro("TARIFA_UNICA",
+                    "CASE WHEN ABS(tarifa_unica - 26564) < 0.01 THEN 22900 ELSE tarifa_unica END", "tarifa_unica > 0"),
+            // Cuota de asociación normal
+            new ReglaCobro("ADAVEC_ASOCIACION", "cuota_asociacion",
+                    "cuota_asociacion > 0 AND ABS(cuota_asociacion - 17883) >= 0.01"),
+            // Desglose completo de 17,883
+            new ReglaCobro("ADAVEC_ASOCIACION", "1200", "ABS(cuota_asociacion - 17883) < 0.01"),
+            new ReglaCobro("ADAVEC_CONVENCION", "1500", "ABS(cuota_asociacion - 17883) < 0.01"),
+            new ReglaCobro("ADAVEC_AMDA", "103", "ABS(cuota_asociacion - 17883) < 0.01"),
+            new ReglaCobro("ASOBENS_PUBLICIDAD", "8000", "ABS(cuota_asociacion - 17883) < 0.01"),
+            new ReglaCobro("ASOBENS_CAPACITACION", "5000", "ABS(cuota_asociacion - 17883) < 0.01"),
+            // Fondo estrella
+            new ReglaCobro("FONDO_ESTRELLA", "fondo_estrella", "fondo_estrella > 0")
+    );
+
+    private final DataSourceProperties dataSourceProperties;
+    private final CatalogoConceptosService catalogoConceptos;
+    private final ErroresImportacionService erroresImportacionService;
+    private final ResumenMensualService resumenMensualService;
+    private final CacheReporteFinanciero cacheReporteFinanciero;
+
+    public ImportacionMasivaService(DataSourceProperties dataSourceProperties,
+                                    CatalogoConceptosService catalogoConceptos,
+                                    ErroresImportacionService erroresImportacionService,
+                                    ResumenMensualService resumenMensualService,
+                                    CacheReporteFinanciero cacheReporteFinanciero) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.catalogoConceptos = catalogoConceptos;
+        this.erroresImportacionService = erroresImportacionService;
+        this.resumenMensualService = resumenMensualService;
+        this.cacheReporteFinanciero = cacheReporteFinanciero;
+    }
+
+    /**
+     * Importa el archivo completo en una transacción; si algo falla no queda nada escrito
+     */
+    public EstadisticasImportacion importar(InputStream entrada, String nombreArchivo) throws IOException, SQLException {
+        // Sin estos conceptos una unidad podría quedar sin cobros, caso que solo resuelve la importación por lotes
+        if (catalogoConceptos.porNombre("SEGURO_BROKER").isEmpty()
+                && catalogoConceptos.porNombre("SEGURO_ADAVEC").isEmpty()) {
+            throw new IllegalStateException(
+                    "La importación masiva requiere los conceptos SEGURO_BROKER o SEGURO_ADAVEC configurados");
+        }
+
+        long inicio = System.nanoTime();
+        ColectorErrores colector = erroresImportacionService.nuevoColector();
+        EstadisticasImportacion estadisticas = new EstadisticasImportacion(colector);
+        System.out.println("🚀 Iniciando importación masiva de " + nombreArchivo);
+        Set<YearMonth> mesesModificados;
+
+        try (colector; Connection con = abrirConexion();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(EntradaArchivo.abrir(entrada)))) {
+            con.setAutoCommit(false);
+            try {
+                ejecutar(con, CREAR_STAGING);
+                ejecutar(con, CREAR_STAGING_VIN);
+
+                int cargadas = cargarStaging(con, new RegistrosStaging(reader, nombreArchivo, estadisticas));
+                System.out.println("📥 " + cargadas + " líneas válidas cargadas en la tabla temporal");
+
+                // Duplicados: primero contra BD, después dentro del archivo (primera aparición gana)
+                ejecutar(con, MARCAR_EXISTENTES);
+                ejecutar(con, PRIMERAS_APARICIONES);
+                ejecutar(con, MARCAR_REPETIDOS);
+
+                // Catálogos: se crean los que faltan y se enlazan con joins
+                ejecutar(con, CREAR_MODELOS);
+                Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+                estadisticas.sumarDistribuidoresCreados(ejecutar(con, CREAR_DISTRIBUIDORES, ahora, ahora));
+                ejecutar(con, ENLAZAR_MODELOS);
+                ejecutar(con, ENLAZAR_DISTRIBUIDORES);
+
+                estadisticas.sumarImportados(ejecutar(con, INSERTAR_UNIDADES, nombreArchivo));
+                ejecutar(con, ENLAZAR_UNIDADES);
+
+                estadisticas.sumarConceptosAplicados(insertarCobros(con, nombreArchivo));
+                ejecutar(con, INSERTAR_SEGUROS);
+
+                // Resumen mensual de las unidades del archivo, en la misma transacción
+                mesesModificados = resumenMensualService.recalcular(con,
+                        "IN (SELECT id FROM unidad WHERE archivo_origen = ?)", nombreArchivo);
+
+                estadisticas.sumarDesgloseCompleto(contar(con, CONTAR_DESGLOSE_COMPLETO));
+                estadisticas.sumarTarifaUnicaDetectada(contar(con, CONTAR_TARIFA_UNICA_IVA));
+                leerDescartadas(con, estadisticas);
+
+                con.commit();
+            } catch (SQLException | RuntimeException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+        // La conexión no es de Spring: la caché se invalida después del commit
+        cacheReporteFinanciero.invalidar(mesesModificados);
+
+        double segundos = Math.max((System.nanoTime() - inicio) / 1_000_000_000.0, 0.001);
+        System.out.println("🏁 Importación masiva de " + nombreArchivo + " terminada: " + estadisticas.getTotalLineas() +
+                " líneas, " + estadisticas.getImportados() + " unidades importadas en " +
+                String.format("%.1f s (%.0f líneas/s)", segundos, estadisticas.getTotalLineas() / segundos));
+        return estadisticas;
+    }
+
+    private Connection abrirConexion() throws SQLException {
+        Properties propiedades = new Properties();
+        if (dataSourceProperties.determineUsername() != null) {
+            propiedades.setProperty("user", dataSourceProperties.determineUsername());
+        }
+        if (dataSourceProperties.determinePassword() != null) {
+            propiedades.setProperty("password", dataSourceProperties.determinePassword());
+        }
+        // Solo esta conexión puede enviar datos locales; las del pool siguen sin permitirlo
+        propiedades.setProperty("allowLoadLocalInfile", "true");
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), propiedades);
+    }
+
+    private int cargarStaging(Connection con, InputStream registros) throws SQLException {
+        try (Statement statement = con.createStatement()) {
+            statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(registros);
+            return statement.executeUpdate(CARGAR_STAGING);
+        } catch (SQLException e) {
+            System.err.println("💥 Error en LOAD DATA LOCAL INFILE: " + e.getMessage());
+            System.err.println("💡 Verificar que el servidor MySQL tenga local_infile=ON");
+            throw e;
+        }
+    }
+
+    int insertarCobros(Connection con, String nombreArchivo) throws SQLException {
+        int total = 0;
+        for (ReglaCobro regla : REGLAS_COBRO) {
+            Optional<ConceptoCobro> concepto = catalogoConceptos.porNombre(regla.concepto());
+            if (concepto.isEmpty()) {
+                System.err.println("⚠️ Concepto no encontrado, se omite en la importación masiva: " + regla.concepto());
+                continue;
+            }
+            total += ejecutar(con, String.format(INSERTAR_COBRO, regla.monto(), regla.condicion()),
+                    concepto.get().getId(), nombreArchivo);
+        }
+        return total;
+    }
+
+    private void leerDescartadas(Connection con, EstadisticasImportacion estadisticas) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(LEER_DESCARTADAS);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int numeroLinea = rs.getInt("linea");
+                String noSerie = rs.getString("no_serie");
+                String linea = rs.getString("texto");
+                String mensaje = "DUPLICADO".equals(rs.getString("estado"))
+                        ? String.format("Unidad duplicada - VIN: %s ya existe en el sistema (Distribuidor: %s, Modelo: %s)",
+                                noSerie, rs.getString("clave_distribuidora"), rs.getString("modelo"))
+                        : String.format("Unidad duplicada - VIN: %s repetido en el archivo (primera aparición en línea %d)",
+                                noSerie, rs.getInt("primera_linea"));
+                estadisticas.agregarError(new ErrorDetallado(numeroLinea, TipoError.DUPLICADO, mensaje,
+                        linea, "noSerie", noSerie));
+            }
+        }
+    }
+
+    private static int ejecutar(Connection con, String sql, Object... parametros) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.length; i++) {
+                ps.setObject(i + 1, parametros[i]);
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    private static int contar(Connection con, String sql) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Convierte las líneas del TXT en filas para LOAD DATA (separadas por tabulador, {@code \N} para nulos).
+     * Se lee bajo demanda mientras el driver envía los datos, así el archivo nunca está completo en memoria.
+     * Las líneas inválidas no se envían: sus errores quedan en las estadísticas.
+     */
+    private static final class RegistrosStaging extends InputStream {
+
+        private static final int TAMANO_BLOQUE = 64 * 1024;
+
+        private final BufferedReader reader;
+        private final String nombreArchivo;
+        private final EstadisticasImportacion estadisticas;
+        private final LineaTxt col = new LineaTxt();
+        private final CamposLinea campos = new CamposLinea();
+        private final StringBuilder filas = new StringBuilder(TAMANO_BLOQUE + 1024);
+
+        private byte[] bloque = new byte[0];
+        private int posicion;
+        private int numeroLinea;
+        private boolean terminado;
+
+        RegistrosStaging(BufferedReader reader, String nombreArchivo, EstadisticasImportacion estadisticas) {
+            this.reader = reader;
+            this.nombreArchivo = nombreArchivo;
+            this.estadisticas = estadisticas;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (posicion == bloque.length && !llenar()) {
+                return -1;
+            }
+            return bloque[posicion++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (posicion == bloque.length && !llenar()) {
+                return -1;
+            }
+            int copiar = Math.min(len, bloque.length - posicion);
+            System.arraycopy(bloque, posicion, b, off, copiar);
+            posicion += copiar;
+            return copiar;
+        }
+
+        private boolean llenar() throws IOException {
+            filas.setLength(0);
+            String linea;
+            while (filas.length() < TAMANO_BLOQUE && !terminado) {
+                if ((linea = reader.readLine()) == null) {
+                    terminado = true;
+                    break;
+                }
+                agregarFila(++numeroLinea, linea);
+            }
+            bloque = filas.toString().getBytes(StandardCharsets.UTF_8);
+            posicion = 0;
+            return bloque.length > 0;
+        }
+
+        private void agregarFila(int numero, String linea) {
+            estadisticas.sumarLineas(1);
+            try {
+                col.cargar(linea);
+                ResultadoValidacion validacion = ValidadorLineaTxt.validar(col, numero, campos);
+                if (!validacion.isEsValido()) {
+                    estadisticas.agregarErrores(validacion.getErrores());
+                    return;
+                }
+                DatosImportacion datos = ImportacionLoteService.leerDatos(col, campos, nombreArchivo);
+
+                filas.append(numero).append('\t');
+                texto(datos.getClaveDistribuidora());
+                texto(datos.getNumeroFactura());
+                texto(datos.getModeloNombre());
+                texto(datos.getNoSerie());
+                fecha(datos.getFechaFondeo());
+                filas.append(datos.getValorUnidad()).append('\t');
+                filas.append(datos.getCuotaAsociacion()).append('\t');
+                filas.append(campos.getValorSeguro()).append('\t');
+                filas.append(datos.getTarifaUnica()).append('\t');
+                filas.append(datos.getFondoEstrella()).append('\t');
+                escapar(linea);
+                filas.append('\n');
+            } catch (Exception e) {
+                estadisticas.agregarError(new ErrorDetallado(numero, TipoError.ERROR_PROCESAMIENTO,
+                        "Error inesperado al procesar línea: " + e.getMessage(), linea));
+                System.err.println("💥 Error en línea " + numero + ": " + e.getMessage());
+            }
+        }
+
+        private void texto(String valor) {
+            if (valor == null) {
+                filas.append("\\N");
+            } else {
+                escapar(valor);
+            }
+            filas.append('\t');
+        }
+
+        private void fecha(LocalDate valor) {
+            filas.append(valor == null ? "\\N" : valor.toString()).append('\t');
+        }
+
+        private void escapar(String valor) {
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                switch (c) {
+                    case '\\' -> filas.append("\\\\");
+                    case '\t' -> filas.append("\\t");
+                    case '\n' -> filas.append("\\n");
+                    case '\r' -> filas.append("\\r");
+                    case '\0' -> filas.append("\\0");
+                    default -> filas.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.model.ImportacionArchivo;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Importaciones asíncronas: el archivo se copia a un temporal y se procesa en segundo
+ * plano, mientras el cliente consulta el avance con el id del trabajo.
+ * Los trabajos terminados se conservan en memoria durante el tiempo de retención configurado.
+ * La huella del archivo se calcula al copiarlo: si ya se importó, el trabajo termina en el acto
+ * con el resumen guardado.
+ * <p>
+ * La copia se guarda en el directorio configurado y queda registrada hasta que la importación
+ * termina; si la aplicación se detiene o se cae a la mitad, al arrancar se vuelve a encolar y
+ * continúa desde su último punto de control. El directorio debe sobrevivir a los reinicios.
+ */
+@Service
+public class ImportacionTrabajoService {
+
+    private final ImportacionArchivoService importacionArchivoService;
+    private final Duration retencion;
+    private final Path directorio;
+    private final ExecutorService ejecutor;
+    private final Map<String, TrabajoImportacion> trabajos = new ConcurrentHashMap<>();
+    private volatile boolean deteniendo;
+
+    public ImportacionTrabajoService(ImportacionArchivoService importacionArchivoService,
+                                     @Value("${app.importacion.trabajos.concurrentes:2}") int concurrentes,
+                                     @Value("${app.importacion.trabajos.retencion-minutos:60}") long retencionMinutos,
+                                     @Value("${app.importacion.trabajos.directorio:importaciones}") String directorio) {
+        this.importacionArchivoService = importacionArchivoService;
+        this.retencion = Duration.ofMinutes(retencionMinutos);
+        this.directorio = Path.of(directorio).toAbsolutePath();
+        AtomicInteger contador = new AtomicInteger();
+        this.ejecutor = Executors.newFixedThreadPool(Math.max(1, concurrentes), tarea -> {
+            Thread hilo = new Thread(tarea, "importacion-txt-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    /**
+     * Copia el archivo a disco y encola su importación; devuelve el trabajo registrado
+     */
+    public TrabajoImportacion encolar(MultipartFile archivo, boolean paralelo, boolean actualizarExistentes,
+                                      boolean forzar) throws IOException {
+        limpiarTerminados();
+
+        Files.createDirectories(directorio);
+        Path temporal = Files.createTempFile(directorio, "importacion-", ".tmp");
+        String hash;
+        try {
+            MessageDigest digest = ImportacionArchivoService.nuevoDigest();
+            try (InputStream entrada = new DigestInputStream(archivo.getInputStream(), digest);
+                 OutputStream salida = Files.newOutputStream(temporal)) {
+                entrada.transferTo(salida);
+            }
+            hash = ImportacionArchivoService.terminarHuella(digest, actualizarExistentes);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+
+        TrabajoImportacion trabajo = new TrabajoImportacion(UUID.randomUUID().toString(),
+                archivo.getOriginalFilename(), Files.size(temporal), paralelo, actualizarExistentes);
+        trabajos.put(trabajo.getId(), trabajo);
+
+        try {
+            Optional<RespuestaImportacion> previo = forzar ? Optional.empty() : importacionArchivoService.resultadoPrevio(hash);
+            if (previo.isPresent()) {
+                Files.deleteIfExists(temporal);
+                trabajo.iniciar();
+                trabajo.completar(previo.get());
+                System.out.println("♻️ Importación " + trabajo.getId() + ": " + trabajo.getNombreArchivo() + " ya se había importado");
+                return trabajo;
+            }
+            importacionArchivoService.reservar(hash, trabajo.getNombreArchivo(), Files.size(temporal), paralelo,
+                    actualizarExistentes, forzar, temporal.toString());
+        } catch (RuntimeException e) {
+            trabajos.remove(trabajo.getId());
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        ejecutor.execute(() -> ejecutar(trabajo, temporal, hash, forzar));
+
+        System.out.println("📥 Importación " + trabajo.getId() + " en cola para " + trabajo.getNombreArchivo());
+        return trabajo;
+    }
+
+    public Optional<TrabajoImportacion> buscar(String id) {
+        return Optional.ofNullable(trabajos.get(id));
+    }
+
+    /**
+     * Indica si hay un trabajo del archivo en cola o en proceso
+     */
+    public boolean hayTrabajoActivo(String nombreArchivo) {
+        return trabajos.values().stream()
+                .anyMatch(trabajo -> !trabajo.getEstado().esFinal() && nombreArchivo.equals(trabajo.getNombreArchivo()));
+    }
+
+    /**
+     * Cancela el trabajo. Si ya estaba en proceso se detiene antes del siguiente lote;
+     * los lotes ya confirmados no se revierten.
+     */
+    public Optional<TrabajoImportacion> cancelar(String id) {
+        TrabajoImportacion trabajo = trabajos.get(id);
+        if (trabajo == null) {
+            return Optional.empty();
+        }
+        trabajo.getContexto().cancelar();
+        if (trabajo.getEstado() == TrabajoImportacion.Estado.EN_COLA) {
+            // El hilo lo descarta al tomarlo de la cola y borra su temporal
+            trabajo.marcarCancelado();
+        }
+        System.out.println("🛑 Cancelación solicitada para la importación " + id);
+        return Optional.of(trabajo);
+    }
+
+    /**
+     * Vuelve a encolar las importaciones asíncronas que quedaron a medias por un reinicio
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reanudarPendientes() {
+        List<ImportacionArchivo> pendientes;
+        try {
+            pendientes = importacionArchivoService.pendientesDeReanudar();
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ No se pudieron consultar las importaciones pendientes: " + e.getMessage());
+            return;
+        }
+
+        for (ImportacionArchivo pendiente : pendientes) {
+            Path copia = Path.of(pendiente.getRutaArchivo());
+            if (!Files.isRegularFile(copia)) {
+                // Puede ser de otra instancia con su propio directorio; se deja registrada
+                System.err.println("⚠️ No se encontró la copia de " + pendiente.getNombreArchivo() + " en " + copia +
+                        "; no se reanuda en esta instancia");
+                continue;
+            }
+            TrabajoImportacion trabajo = new TrabajoImportacion(UUID.randomUUID().toString(),
+                    pendiente.getNombreArchivo(), pendiente.getTamanoBytes() != null ? pendiente.getTamanoBytes() : 0,
+                    pendiente.getParticiones() > 1, Boolean.TRUE.equals(pendiente.getActualizarExistentes()));
+            trabajos.put(trabajo.getId(), trabajo);
+            ejecutor.execute(() -> ejecutar(trabajo, copia, pendiente.getHash(), false));
+            System.out.println("🔁 Importación interrumpida de " + pendiente.getNombreArchivo() +
+                    " reanudada como trabajo " + trabajo.getId() + " (" + pendiente.getLineasProcesadas() +
+                    " líneas ya confirmadas)");
+        }
+    }
+
+    private void ejecutar(TrabajoImportacion trabajo, Path copia, String hash, boolean forzar) {
+        boolean conservarCopia = false;
+        try {
+            if (deteniendo) {
+                // Se detuvo antes de empezar: queda registrada para el próximo arranque
+                conservarCopia = true;
+                return;
+            }
+            if (!trabajo.iniciar()) {
+                importacionArchivoService.liberarArchivo(hash);
+                return;
+            }
+            try {
+                trabajo.completar(importacionArchivoService.importar(new FileSystemResource(copia), hash,
+                        Files.size(copia), trabajo.getContexto(), trabajo.isParalelo(), forzar, copia.toString()));
+            } catch (CancellationException e) {
+                trabajo.marcarCancelado();
+                if (deteniendo) {
+                    conservarCopia = true;
+                    System.out.println("⏸️ Importación " + trabajo.getId() + " detenida por apagado tras " +
+                            trabajo.getContexto().getProgreso().getLineasProcesadas() + " líneas; se reanudará al arrancar");
+                } else {
+                    importacionArchivoService.liberarArchivo(hash);
+                    System.out.println("🛑 Importación " + trabajo.getId() + " cancelada tras " +
+                            trabajo.getContexto().getProgreso().getLineasProcesadas() + " líneas");
+                }
+            } catch (Exception e) {
+                trabajo.fallar(e.getMessage());
+                System.err.println("💥 Error crítico en la importación " + trabajo.getId() + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ No se pudo actualizar el registro de la importación " + trabajo.getId() + ": " + e.getMessage());
+        } finally {
+            if (!conservarCopia) {
+                try {
+                    Files.deleteIfExists(copia);
+                } catch (IOException e) {
+                    System.err.println("⚠️ No se pudo borrar la copia " + copia + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void limpiarTerminados() {
+        Instant limite = Instant.now().minus(retencion);
+        trabajos.values().removeIf(trabajo -> trabajo.getEstado().esFinal()
+                && trabajo.getFin() != null && trabajo.getFin().isBefore(limite));
+    }
+
+    @PreDestroy
+    public void detener() {
+        deteniendo = true;
+        trabajos.values().forEach(trabajo -> trabajo.getContexto().cancelar());
+        ejecutor.shutdown();
+    }
+}
@@ -0,0 +1,385 @@
+package com.adavec.transporte.service.importacion;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Motor de importación de archivos TXT: lee el archivo en streaming y confirma
+ * cada lote de líneas en una sola transacción mediante {@link ImportacionLoteService}.
+ * <p>
+ * En modo paralelo las líneas se reparten en particiones por clave de distribuidor;
+ * cada partición se procesa en su propio hilo virtual, en orden de archivo, y el número
+ * de lotes que usan conexión a la vez está limitado por un semáforo.
+ * <p>
+ * El archivo puede llegar comprimido con gzip o zip; ver {@link EntradaArchivo}.
+ * <p>
+ * Al reanudar con un punto de control se salta directo al byte donde termina la última
+ * línea confirmada por todas las particiones, sin volver a leer ese prefijo.
+ * <p>
+ * Los errores van a un {@link ColectorErrores}: en memoria solo quedan conteos y muestras.
+ */
+@Service
+public class ImportacionTxtService {
+
+    // Marca de fin de partición
+    private static final List<LineaArchivo> FIN_PARTICION = List.of();
+
+    private final ImportacionLoteService importacionLoteService;
+    private final ErroresImportacionService erroresImportacionService;
+    private final int tamanoLote;
+    private final int particiones;
+    private final int conexionesMaximas;
+
+    public ImportacionTxtService(ImportacionLoteService importacionLoteService,
+                                 ErroresImportacionService erroresImportacionService,
+                                 @Value("${app.importacion.tamano-lote:200}") int tamanoLote,
+                                 @Value("${app.importacion.paralelo.particiones:8}") int particiones,
+                                 @Value("${app.importacion.paralelo.conexiones-maximas:4}") int conexionesMaximas) {
+        this.importacionLoteService = importacionLoteService;
+        this.erroresImportacionService = erroresImportacionService;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.particiones = Math.max(1, particiones);
+        this.conexionesMaximas = Math.max(1, conexionesMaximas);
+    }
+
+    public int getTamanoLote() {
+        return tamanoLote;
+    }
+
+    /**
+     * Número de particiones con que se procesa el archivo (1 en modo secuencial)
+     */
+    public int particionesPara(boolean paralelo) {
+        return paralelo ? particiones : 1;
+    }
+
+    /**
+     * Importa el contenido del archivo de forma secuencial
+     */
+    public EstadisticasImportacion importar(InputStream entrada, String nombreArchivo) throws IOException {
+        return importar(entrada, nombreArchivo, false);
+    }
+
+    /**
+     * Importa el contenido del archivo y devuelve las estadísticas acumuladas
+     */
+    public EstadisticasImportacion importar(InputStream entrada, String nombreArchivo, boolean paralelo) throws IOException {
+        return importar(entrada, new ContextoImportacion(nombreArchivo), paralelo);
+    }
+
+    /**
+     * Importa usando un contexto creado por quien llama, para consultar su avance
+     * o cancelarla desde otro hilo. Si se cancela lanza {@link CancellationException}.
+     */
+    public EstadisticasImportacion importar(InputStream entrada, ContextoImportacion contexto, boolean paralelo) throws IOException {
+        String nombreArchivo = contexto.getNombreArchivo();
+        long inicio = System.nanoTime();
+        // Se cuentan los bytes recibidos (comprimidos, si es el caso) para que el avance se compare con el tamaño subido
+        entrada = EntradaArchivo.abrir(new EntradaContada(entrada, contexto.getProgreso()));
+
+        PuntoControlImportacion puntoControl = contexto.getPuntoControl();
+        int lineaInicial = 0;
+        long desplazamiento = 0;
+        if (puntoControl != null && puntoControl.getDesplazamientoInicio() > 0) {
+            // En un archivo sin comprimir es un salto de posición; comprimido se descomprime sin procesarlo
+            entrada.skipNBytes(puntoControl.getDesplazamientoInicio());
+            lineaInicial = puntoControl.getLineaInicio();
+            desplazamiento = puntoControl.getDesplazamientoInicio();
+            System.out.println("⏩ Reanudación desde la línea " + (lineaInicial + 1) + " (" + desplazamiento +
+                    " bytes ya confirmados sin volver a leer)");
+        }
+        LectorLineas lector = new LectorLineas(entrada, desplazamiento);
+
+        System.out.println("🚀 Iniciando importación " + (paralelo ? "en paralelo (" + particiones + " particiones)" : "en streaming") +
+                " de " + nombreArchivo + " en lotes de " + tamanoLote + " líneas");
+
+        EstadisticasImportacion total;
+        // Al cerrar el colector su archivo queda completo antes de armar la respuesta
+        try (ColectorErrores colector = erroresImportacionService.nuevoColector()) {
+            total = paralelo
+                    ? importarEnParalelo(lector, lineaInicial, contexto, colector)
+                    : importarSecuencial(lector, lineaInicial, contexto, colector);
+        }
+
+        // Los distribuidores se crean fuera de la transacción de cada lote; se cuentan al final
+        total.sumarDistribuidoresCreados(contexto.getCatalogos().getDistribuidoresCreados());
+
+        double segundos = Math.max((System.nanoTime() - inicio) / 1_000_000_000.0, 0.001);
+        System.out.println("🏁 Importación de " + nombreArchivo + " terminada: " + total.getTotalLineas() +
+                " líneas, " + total.getImportados() + " unidades importadas en " +
+                String.format("%.1f s (%.0f líneas/s, %.0f unidades/s)",
+                        segundos, total.getTotalLineas() / segundos, total.getImportados() / segundos));
+        return total;
+    }
+
+    private EstadisticasImportacion importarSecuencial(LectorLineas lector, int lineaInicial, ContextoImportacion contexto,
+                                                       ColectorErrores colector) throws IOException {
+        EstadisticasImportacion total = new EstadisticasImportacion(colector);
+
+        // Cada lote se procesa en cuanto se completa, así la memoria usada no depende del tamaño del archivo
+        int lineasLeidas = lineaInicial;
+        int numeroLote = 0;
+        int omitidas = 0;
+        PuntoControlImportacion puntoControl = contexto.getPuntoControl();
+        List<LineaArchivo> lote = new ArrayList<>(tamanoLote);
+        try (lector) {
+            String linea;
+            while ((linea = lector.leerLinea()) != null) {
+                lineasLeidas++;
+                if (puntoControl != null && puntoControl.yaConfirmada(0, lineasLeidas)) {
+                    omitidas++;
+                    continue;
+                }
+                lote.add(new LineaArchivo(lineasLeidas, linea, lector.getPosicion()));
+                if (lote.size() == tamanoLote) {
+                    contexto.verificarCancelacion();
+                    procesarLote(lote, ++numeroLote, 0, contexto, total);
+                    lote = new ArrayList<>(tamanoLote);
+                }
+            }
+        }
+        if (!lote.isEmpty()) {
+            contexto.verificarCancelacion();
+            procesarLote(lote, ++numeroLote, 0, contexto, total);
+        }
+        informarOmitidas(omitidas);
+        return total;
+    }
+
+    /**
+     * Reparte las líneas por distribuidor entre particiones con cola acotada; el hilo que lee
+     * se bloquea cuando una partición va atrasada, así la memoria sigue acotada.
+     * Las líneas con un VIN ya visto van a la partición de su primera aparición, de modo que
+     * la detección de repetidos da el mismo resultado que la importación secuencial.
+     */
+    private EstadisticasImportacion importarEnParalelo(LectorLineas lector, int lineaInicial, ContextoImportacion contexto,
+                                                       ColectorErrores colector) throws IOException {
+        Semaphore conexiones = new Semaphore(conexionesMaximas);
+        List<BlockingQueue<List<LineaArchivo>>> colas = new ArrayList<>(particiones);
+        List<EstadisticasImportacion> parciales = new ArrayList<>(particiones);
+        List<Future<?>> trabajadores = new ArrayList<>(particiones);
+        Map<String, Integer> particionPorVin = new HashMap<>();
+        int lotesCreados = 0;
+        int omitidas = 0;
+
+        try (ExecutorService hilosVirtuales = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int p = 0; p < particiones; p++) {
+                int particion = p;
+                BlockingQueue<List<LineaArchivo>> cola = new ArrayBlockingQueue<>(2);
+                EstadisticasImportacion parcial = new EstadisticasImportacion(colector);
+                colas.add(cola);
+                parciales.add(parcial);
+                trabajadores.add(hilosVirtuales.submit(() -> {
+                    List<LineaArchivo> lote;
+                    while ((lote = cola.take()) != FIN_PARTICION) {
+                        contexto.verificarCancelacion();
+                        conexiones.acquire();
+                        try {
+                            procesarLote(lote, 0, particion, contexto, parcial);
+                        } finally {
+                            conexiones.release();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            List<List<LineaArchivo>> buffers = new ArrayList<>(particiones);
+            for (int p = 0; p < particiones; p++) {
+                buffers.add(new ArrayList<>(tamanoLote));
+            }
+
+            PuntoControlImportacion puntoControl = contexto.getPuntoControl();
+            try (lector) {
+                String linea;
+                int numeroLinea = lineaInicial;
+                while ((linea = lector.leerLinea()) != null) {
+                    // Se calcula aunque la línea se omita, para conservar la afinidad de VIN del intento anterior;
+                    // la de los VIN vistos antes del salto se pierde, lo que solo afecta a VIN repetidos
+                    int particion = particionDe(linea, particionPorVin);
+                    if (puntoControl != null && puntoControl.yaConfirmada(particion, numeroLinea + 1)) {
+                        numeroLinea++;
+                        omitidas++;
+                        continue;
+                    }
+                    List<LineaArchivo> buffer = buffers.get(particion);
+                    buffer.add(new LineaArchivo(++numeroLinea, linea, lector.getPosicion()));
+                    if (buffer.size() == tamanoLote) {
+                        contexto.verificarCancelacion();
+                        enviar(colas.get(particion), buffer, trabajadores.get(particion));
+                        buffers.set(particion, new ArrayList<>(tamanoLote));
+                        lotesCreados++;
+                    }
+                }
+                for (int p = 0; p < particiones; p++) {
+                    if (!buffers.get(p).isEmpty()) {
+                        enviar(colas.get(p), buffers.get(p), trabajadores.get(p));
+                        lotesCreados++;
+                    }
+                }
+            } finally {
+                for (int p = 0; p < particiones; p++) {
+                    if (!trabajadores.get(p).isDone()) {
+                        enviar(colas.get(p), FIN_PARTICION, trabajadores.get(p));
+                    }
+                }
+            }
+
+            for (Future<?> trabajador : trabajadores) {
+                esperar(trabajador);
+            }
+        }
+
+        // Unir resultados; los errores ya están en el colector compartido, que ordena sus muestras por línea
+        EstadisticasImportacion total = new EstadisticasImportacion(colector);
+        parciales.forEach(total::sumar);
+        System.out.println("🧵 Importación en paralelo: " + lotesCreados + " lotes en " + particiones + " particiones");
+        informarOmitidas(omitidas);
+        return total;
+    }
+
+    /**
+     * Partición de la línea según su clave de distribuidor (primera columna)
+     */
+    private int particionDe(String linea, Map<String, Integer> particionPorVin) {
+        int finClave = linea.indexOf('|');
+        String clave = finClave >= 0 ? linea.substring(0, finClave) : linea;
+        int particion = Math.floorMod(CatalogosImportacion.normalizar(clave).hashCode(), particiones);
+
+        // El VIN es la quinta columna
+        int inicioVin = finClave;
+        for (int i = 0; i < 3 && inicioVin >= 0; i++) {
+            inicioVin = linea.indexOf('|', inicioVin + 1);
+        }
+        if (inicioVin < 0) {
+            return particion;
+        }
+        int finVin = linea.indexOf('|', inicioVin + 1);
+        String vin = (finVin >= 0 ? linea.substring(inicioVin + 1, finVin) : linea.substring(inicioVin + 1))
+                .trim().toUpperCase(Locale.ROOT);
+        if (vin.isEmpty()) {
+            return particion;
+        }
+        Integer anterior = particionPorVin.putIfAbsent(vin, particion);
+        return anterior != null ? anterior : particion;
+    }
+
+    private void enviar(BlockingQueue<List<LineaArchivo>> cola, List<LineaArchivo> lote, Future<?> trabajador) throws IOException {
+        try {
+            // Si la partición terminó con error no se queda esperando espacio en su cola
+            while (!cola.offer(lote, 1, TimeUnit.SECONDS)) {
+                if (trabajador.isDone()) {
+                    esperar(trabajador);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Importación interrumpida", e);
+        }
+    }
+
+    private void esperar(Future<?> trabajador) throws IOException {
+        try {
+            trabajador.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Importación interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException cancelacion) {
+                throw cancelacion;
+            }
+            throw new IOException("Error en una partición de la importación: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Procesa un lote en una transacción; si el lote no se puede confirmar se procesa
+     * línea por línea para aislar las líneas con error sin perder las válidas.
+     */
+    private void procesarLote(List<LineaArchivo> lote, int numeroLote, int particion,
+                              ContextoImportacion contexto, EstadisticasImportacion total) {
+        int primera = lote.get(0).numero();
+        int ultima = lote.get(lote.size() - 1).numero();
+        System.out.println("📦 Procesando lote " + (numeroLote > 0 ? numeroLote + " " : "") +
+                "(líneas " + primera + " a " + ultima + ")");
+        EstadisticasImportacion resultado = new EstadisticasImportacion();
+        try {
+            resultado.sumar(importacionLoteService.procesarLote(lote, contexto, particion));
+            registrar(resultado, contexto, total);
+            return;
+        } catch (Exception e) {
+            resultado.sumarLoteConErrores();
+            System.err.println("💥 Error crítico en lote de líneas " + primera + " a " + ultima +
+                    ", se procesará línea por línea: " + e.getMessage());
+        }
+
+        for (LineaArchivo linea : lote) {
+            try {
+                resultado.sumar(importacionLoteService.procesarLote(List.of(linea), contexto, particion));
+            } catch (Exception e) {
+                resultado.sumarLineas(1);
+                resultado.agregarError(new ErrorDetallado(linea.numero(), TipoError.ERROR_PROCESAMIENTO,
+                        "Error crítico al procesar línea: " + e.getMessage(), linea.texto()));
+                System.err.println("💥 Error en línea " + linea.numero() + ": " + e.getMessage());
+            }
+        }
+        registrar(resultado, contexto, total);
+    }
+
+    private void informarOmitidas(int omitidas) {
+        if (omitidas > 0) {
+            System.out.println("⏭️ Reanudación: se omitieron " + omitidas + " líneas confirmadas en un intento anterior");
+        }
+    }
+
+    private void registrar(EstadisticasImportacion resultado, ContextoImportacion contexto,
+                           EstadisticasImportacion total) {
+        total.sumar(resultado);
+        contexto.getProgreso().registrar(resultado);
+    }
+
+    /**
+     * Cuenta los bytes leídos del archivo para estimar el avance
+     */
+    private static class EntradaContada extends FilterInputStream {
+
+        private final ProgresoImportacion progreso;
+
+        EntradaContada(InputStream entrada, ProgresoImportacion progreso) {
+            super(entrada);
+            this.progreso = progreso;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int leido = super.read();
+            if (leido >= 0) {
+                progreso.sumarBytesLeidos(1);
+            }
+            return leido;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int leidos = super.read(b, off, len);
+            if (leidos > 0) {
+                progreso.sumarBytesLeidos(leidos);
+            }
+            return leidos;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long saltados = super.skip(n);
+            progreso.sumarBytesLeidos(saltados);
+            return saltados;
+        }
+    }
+}
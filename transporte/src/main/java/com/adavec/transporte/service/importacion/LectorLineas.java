@@ -0,0 +1,93 @@
+package com.adavec.transporte.service.importacion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Lector de líneas que lleva la cuenta de los bytes consumidos, para que el punto de control
+ * guarde dónde termina la última línea confirmada y la reanudación salte directo a ese byte.
+ * Reconoce los mismos fines de línea que {@link java.io.BufferedReader} (\n, \r\n y \r) y
+ * decodifica con el juego de caracteres por defecto, igual que {@link java.io.InputStreamReader}.
+ */
+final class LectorLineas implements Closeable {
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final InputStream entrada;
+    private final Charset charset = Charset.defaultCharset();
+    private final byte[] buffer = new byte[TAMANO_BUFFER];
+    private int inicio;
+    private int fin;
+    private byte[] linea = new byte[512];
+    private long posicion;
+
+    LectorLineas(InputStream entrada, long posicionInicial) {
+        this.entrada = entrada;
+        this.posicion = posicionInicial;
+    }
+
+    /**
+     * Siguiente línea sin el fin de línea, o null al terminar el archivo
+     */
+    String leerLinea() throws IOException {
+        int largo = 0;
+        while (true) {
+            if (inicio == fin && !llenar()) {
+                return largo == 0 ? null : decodificar(largo);
+            }
+            int i = inicio;
+            while (i < fin && buffer[i] != '\n' && buffer[i] != '\r') {
+                i++;
+            }
+            largo = agregar(largo, i - inicio);
+            posicion += i - inicio;
+            if (i == fin) {
+                inicio = fin;
+                continue;
+            }
+
+            byte terminador = buffer[i];
+            inicio = i + 1;
+            posicion++;
+            if (terminador == '\r' && (inicio < fin || llenar()) && buffer[inicio] == '\n') {
+                inicio++;
+                posicion++;
+            }
+            return decodificar(largo);
+        }
+    }
+
+    /**
+     * Bytes consumidos hasta el final de la última línea leída, contando desde el inicio del archivo
+     */
+    long getPosicion() {
+        return posicion;
+    }
+
+    private int agregar(int largo, int cantidad) {
+        if (largo + cantidad > linea.length) {
+            linea = Arrays.copyOf(linea, Math.max(linea.length * 2, largo + cantidad));
+        }
+        System.arraycopy(buffer, inicio, linea, largo, cantidad);
+        return largo + cantidad;
+    }
+
+    private boolean llenar() throws IOException {
+        int leidos = entrada.read(buffer, 0, buffer.length);
+        inicio = 0;
+        fin = Math.max(leidos, 0);
+        return leidos > 0;
+    }
+
+    private String decodificar(int largo) {
+        return new String(linea, 0, largo, charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        entrada.close();
+    }
+}
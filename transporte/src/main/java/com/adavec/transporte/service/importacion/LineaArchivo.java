@@ -0,0 +1,7 @@
+package com.adavec.transporte.service.importacion;
+
+/**
+ * Línea del archivo con su número original (base 1) y el byte donde termina, fin de línea incluido
+ */
+public record LineaArchivo(int numero, String texto, long fin) {
+}
@@ -0,0 +1,165 @@
+package com.adavec.transporte.service.importacion;
+
+import java.util.Arrays;
+
+/**
+ * Tokenizador reutilizable para las líneas del TXT separadas por '|'.
+ * Recorre la línea una sola vez y guarda los límites de cada columna; el texto
+ * de una columna solo se crea cuando se pide y se conserva hasta la siguiente línea.
+ * Respeta la semántica de {@code String.split("\\|")}: las columnas vacías al final
+ * se descartan y una línea sin separadores cuenta como una sola columna.
+ * No es thread-safe: se usa una instancia por hilo o por lote.
+ */
+public final class LineaTxt {
+
+    private static final char SEPARADOR = '|';
+
+    private String linea;
+    private int columnas;
+    private int[] inicios = new int[32];
+    private int[] fines = new int[32];
+    private String[] textos = new String[32];
+
+    /**
+     * Tokeniza una nueva línea reutilizando los arreglos internos
+     */
+    public LineaTxt cargar(String linea) {
+        Arrays.fill(textos, 0, columnas, null);
+        this.linea = linea;
+        this.columnas = 0;
+        if (linea == null) {
+            return this;
+        }
+
+        int inicio = 0;
+        int largo = linea.length();
+        for (int i = 0; i < largo; i++) {
+            if (linea.charAt(i) == SEPARADOR) {
+                agregar(inicio, i);
+                inicio = i + 1;
+            }
+        }
+
+        // Sin separadores split() devuelve la línea completa, aunque esté vacía
+        if (columnas == 0) {
+            agregar(0, largo);
+            return this;
+        }
+        agregar(inicio, largo);
+
+        // Igual que split(): quitar columnas vacías al final
+        while (columnas > 0 && inicios[columnas - 1] == fines[columnas - 1]) {
+            columnas--;
+        }
+        return this;
+    }
+
+    private void agregar(int inicio, int fin) {
+        if (columnas == inicios.length) {
+            int nuevo = columnas * 2;
+            inicios = Arrays.copyOf(inicios, nuevo);
+            fines = Arrays.copyOf(fines, nuevo);
+            textos = Arrays.copyOf(textos, nuevo);
+        }
+        inicios[columnas] = inicio;
+        fines[columnas] = fin;
+        columnas++;
+    }
+
+    public String getLinea() {
+        return linea;
+    }
+
+    public int columnas() {
+        return columnas;
+    }
+
+    /**
+     * Texto de la columna (sin recortar); se crea una sola vez por línea
+     */
+    public String texto(int indice) {
+        verificarIndice(indice);
+        String texto = textos[indice];
+        if (texto == null) {
+            texto = linea.substring(inicios[indice], fines[indice]);
+            textos[indice] = texto;
+        }
+        return texto;
+    }
+
+    /**
+     * Vista de la columna sin copiar caracteres
+     */
+    public CharSequence campo(int indice) {
+        verificarIndice(indice);
+        return new Campo(linea, inicios[indice], fines[indice]);
+    }
+
+    /**
+     * Indica si la columna está vacía o solo contiene espacios, sin crear cadenas
+     */
+    public boolean estaVacia(int indice) {
+        verificarIndice(indice);
+        for (int i = inicios[indice]; i < fines[indice]; i++) {
+            if (linea.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Longitud de la columna sin espacios al inicio ni al final
+     */
+    public int longitudRecortada(int indice) {
+        verificarIndice(indice);
+        int inicio = inicios[indice];
+        int fin = fines[indice];
+        while (inicio < fin && linea.charAt(inicio) <= ' ') {
+            inicio++;
+        }
+        while (fin > inicio && linea.charAt(fin - 1) <= ' ') {
+            fin--;
+        }
+        return fin - inicio;
+    }
+
+    private void verificarIndice(int indice) {
+        if (indice < 0 || indice >= columnas) {
+            throw new ArrayIndexOutOfBoundsException(
+                    "Index " + indice + " out of bounds for length " + columnas);
+        }
+    }
+
+    /**
+     * Vista de solo lectura sobre una porción de la línea
+     */
+    private record Campo(String linea, int inicio, int fin) implements CharSequence {
+
+        @Override
+        public int length() {
+            return fin - inicio;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length()) {
+                throw new StringIndexOutOfBoundsException(index);
+            }
+            return linea.charAt(inicio + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length() || start > end) {
+                throw new StringIndexOutOfBoundsException("begin " + start + ", end " + end + ", length " + length());
+            }
+            return new Campo(linea, inicio + start, inicio + end);
+        }
+
+        @Override
+        public String toString() {
+            return linea.substring(inicio, fin);
+        }
+    }
+}
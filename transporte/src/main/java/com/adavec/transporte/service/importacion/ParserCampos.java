@@ -0,0 +1,241 @@
+package com.adavec.transporte.service.importacion;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Lectura de las columnas de fecha (yyyyMMdd) y numéricas del TXT sin usar excepciones
+ * para los casos comunes. Los resultados coinciden con {@code LocalDate.parse(..., BASIC_ISO_DATE)},
+ * {@code Double.parseDouble} e {@code Integer.parseInt}; solo los formatos poco usuales
+ * (exponentes, más de 15 dígitos, zona horaria en la fecha) pasan por esos métodos.
+ * Un valor no válido se informa devolviendo {@code null}.
+ */
+public final class ParserCampos {
+
+    // Fechas vistas recientemente; la mayoría de las líneas de un archivo comparten pocas fechas
+    private static final int TAMANO_CACHE_FECHAS = 1024;
+    private static final LocalDate[] CACHE_FECHAS = new LocalDate[TAMANO_CACHE_FECHAS];
+
+    private static final double[] POTENCIAS_10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Mayor mantisa que se representa exacta en un double (2^53)
+    private static final long MAX_MANTISA_EXACTA = 1L << 53;
+
+    private ParserCampos() {
+    }
+
+    /**
+     * Indica si el valor es nulo o solo contiene espacios (igual que {@code trim().isEmpty()})
+     */
+    public static boolean estaVacio(String valor) {
+        if (valor == null) {
+            return true;
+        }
+        for (int i = 0; i < valor.length(); i++) {
+            if (valor.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fecha yyyyMMdd; {@code null} si está vacía o no es una fecha válida
+     */
+    public static LocalDate fecha(String valor) {
+        if (valor == null || valor.length() < 8) {
+            return null;
+        }
+        if (valor.length() == 8) {
+            int numero = 0;
+            for (int i = 0; i < 8; i++) {
+                char c = valor.charAt(i);
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+                numero = numero * 10 + (c - '0');
+            }
+            return fecha(numero);
+        }
+        // yyyyMMdd seguido de zona horaria: caso poco común, se delega al formato original
+        try {
+            return LocalDate.parse(valor, DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static LocalDate fecha(int yyyymmdd) {
+        int indice = yyyymmdd % TAMANO_CACHE_FECHAS;
+        LocalDate enCache = CACHE_FECHAS[indice];
+        int anio = yyyymmdd / 10000;
+        int mes = (yyyymmdd / 100) % 100;
+        int dia = yyyymmdd % 100;
+        if (enCache != null && enCache.getDayOfMonth() == dia && enCache.getMonthValue() == mes
+                && enCache.getYear() == anio) {
+            return enCache;
+        }
+        if (mes < 1 || mes > 12 || dia < 1 || dia > diasDelMes(anio, mes)) {
+            return null;
+        }
+        LocalDate fecha = LocalDate.of(anio, mes, dia);
+        CACHE_FECHAS[indice] = fecha;
+        return fecha;
+    }
+
+    private static int diasDelMes(int anio, int mes) {
+        return switch (mes) {
+            case 2 -> (anio % 4 == 0 && (anio % 100 != 0 || anio % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Número decimal (con espacios alrededor permitidos); {@code null} si no es válido
+     */
+    public static Double decimal(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        int inicio = 0;
+        int fin = valor.length();
+        while (inicio < fin && valor.charAt(inicio) <= ' ') {
+            inicio++;
+        }
+        while (fin > inicio && valor.charAt(fin - 1) <= ' ') {
+            fin--;
+        }
+        if (inicio == fin) {
+            return null;
+        }
+
+        int i = inicio;
+        boolean negativo = false;
+        char signo = valor.charAt(i);
+        if (signo == '-' || signo == '+') {
+            negativo = signo == '-';
+            i++;
+        }
+
+        long mantisa = 0;
+        int digitos = 0;
+        int decimales = 0;
+        boolean hayDigitos = false;
+        boolean punto = false;
+        boolean simple = true;
+        for (; i < fin; i++) {
+            char c = valor.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hayDigitos = true;
+                // los ceros a la izquierda no cuentan como dígitos significativos
+                if (mantisa != 0 || c != '0') {
+                    digitos++;
+                }
+                if (digitos > 15) {
+                    simple = false;
+                    break;
+                }
+                mantisa = mantisa * 10 + (c - '0');
+                if (punto) {
+                    decimales++;
+                }
+            } else if (c == '.' && !punto) {
+                punto = true;
+            } else if (puedeSerLiteralJava(c)) {
+                // exponente, NaN, Infinity, hexadecimal o sufijo d/f
+                simple = false;
+                break;
+            } else {
+                return null;
+            }
+        }
+
+        if (simple) {
+            if (!hayDigitos) {
+                return null;
+            }
+            if (decimales > 22 || mantisa > MAX_MANTISA_EXACTA) {
+                return decimalLento(valor, inicio, fin);
+            }
+            // Con mantisa y potencia de 10 exactas la división da el mismo redondeo que parseDouble
+            double resultado = decimales == 0 ? mantisa : mantisa / POTENCIAS_10[decimales];
+            return negativo ? -resultado : resultado;
+        }
+        return decimalLento(valor, inicio, fin);
+    }
+
+    private static boolean puedeSerLiteralJava(char c) {
+        return "eEnNaAiIfFtTyYxXpPdDbBcC".indexOf(c) >= 0;
+    }
+
+    private static Double decimalLento(String valor, int inicio, int fin) {
+        try {
+            return Double.parseDouble(valor.substring(inicio, fin));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Número entero (con espacios alrededor permitidos); {@code null} si no es válido o no cabe en un int
+     */
+    public static Integer entero(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        int inicio = 0;
+        int fin = valor.length();
+        while (inicio < fin && valor.charAt(inicio) <= ' ') {
+            inicio++;
+        }
+        while (fin > inicio && valor.charAt(fin - 1) <= ' ') {
+            fin--;
+        }
+        if (inicio == fin) {
+            return null;
+        }
+
+        int i = inicio;
+        boolean negativo = false;
+        char signo = valor.charAt(i);
+        if (signo == '-' || signo == '+') {
+            negativo = signo == '-';
+            i++;
+            if (i == fin) {
+                return null;
+            }
+        }
+
+        long resultado = 0;
+        for (; i < fin; i++) {
+            char c = valor.charAt(i);
+            if (c < '0' || c > '9') {
+                // Integer.parseInt también acepta dígitos Unicode
+                return c > 127 ? enteroLento(valor, inicio, fin) : null;
+            }
+            resultado = resultado * 10 + (c - '0');
+            if (resultado > (long) Integer.MAX_VALUE + 1) {
+                return null;
+            }
+        }
+        if (negativo) {
+            resultado = -resultado;
+        }
+        if (resultado > Integer.MAX_VALUE || resultado < Integer.MIN_VALUE) {
+            return null;
+        }
+        return (int) resultado;
+    }
+
+    private static Integer enteroLento(String valor, int inicio, int fin) {
+        try {
+            return Integer.parseInt(valor.substring(inicio, fin));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.adavec.transporte.service.importacion;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Avance de una importación en curso. Los lotes lo actualizan al terminar y se puede
+ * consultar desde otro hilo en cualquier momento sin bloquear la importación.
+ */
+public class ProgresoImportacion {
+
+    private static final TipoError[] TIPOS = TipoError.values();
+
+    private final AtomicLong bytesLeidos = new AtomicLong();
+    private final AtomicInteger lineasProcesadas = new AtomicInteger();
+    private final AtomicInteger unidadesImportadas = new AtomicInteger();
+    private final AtomicInteger conceptosAplicados = new AtomicInteger();
+    private final AtomicInteger lotesProcesados = new AtomicInteger();
+    private final AtomicIntegerArray erroresPorTipo = new AtomicIntegerArray(TIPOS.length);
+
+    /**
+     * Suma el resultado de un lote ya procesado
+     */
+    public void registrar(EstadisticasImportacion lote) {
+        lineasProcesadas.addAndGet(lote.getTotalLineas());
+        unidadesImportadas.addAndGet(lote.getImportados());
+        conceptosAplicados.addAndGet(lote.getConceptosAplicados());
+        lotesProcesados.incrementAndGet();
+        for (ErrorDetallado error : lote.getErrores()) {
+            erroresPorTipo.incrementAndGet(error.getTipoError().ordinal());
+        }
+    }
+
+    public void sumarBytesLeidos(long cantidad) {
+        bytesLeidos.addAndGet(cantidad);
+    }
+
+    public long getBytesLeidos() {
+        return bytesLeidos.get();
+    }
+
+    public int getLineasProcesadas() {
+        return lineasProcesadas.get();
+    }
+
+    public int getUnidadesImportadas() {
+        return unidadesImportadas.get();
+    }
+
+    public int getConceptosAplicados() {
+        return conceptosAplicados.get();
+    }
+
+    public int getLotesProcesados() {
+        return lotesProcesados.get();
+    }
+
+    public Map<TipoError, Integer> getErroresPorTipo() {
+        Map<TipoError, Integer> errores = new EnumMap<>(TipoError.class);
+        for (int i = 0; i < TIPOS.length; i++) {
+            int cantidad = erroresPorTipo.get(i);
+            if (cantidad > 0) {
+                errores.put(TIPOS[i], cantidad);
+            }
+        }
+        return errores;
+    }
+
+    public int getTotalErrores() {
+        int total = 0;
+        for (int i = 0; i < TIPOS.length; i++) {
+            total += erroresPorTipo.get(i);
+        }
+        return total;
+    }
+}
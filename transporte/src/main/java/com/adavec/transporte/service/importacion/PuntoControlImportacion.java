@@ -0,0 +1,61 @@
+package com.adavec.transporte.service.importacion;
+
+import java.util.Map;
+
+/**
+ * Punto de control de un archivo registrado: cada lote confirmado deja su última línea
+ * en la misma transacción, y al reanudar se omiten las líneas que ya estaban confirmadas.
+ */
+public class PuntoControlImportacion {
+
+    private final Integer archivoId;
+    private final int lineaBase;
+    private final Map<Integer, Integer> ultimaLineaPorParticion;
+    private final int lineaInicio;
+    private final long desplazamientoInicio;
+    private final EstadisticasImportacion previas;
+
+    /**
+     * @param lineaInicio          última línea confirmada por todas las particiones
+     * @param desplazamientoInicio byte donde termina esa línea; la lectura se reanuda desde ahí
+     */
+    public PuntoControlImportacion(Integer archivoId, int lineaBase, Map<Integer, Integer> ultimaLineaPorParticion,
+                                   int lineaInicio, long desplazamientoInicio, EstadisticasImportacion previas) {
+        this.archivoId = archivoId;
+        this.lineaBase = lineaBase;
+        this.ultimaLineaPorParticion = Map.copyOf(ultimaLineaPorParticion);
+        this.lineaInicio = lineaInicio;
+        this.desplazamientoInicio = desplazamientoInicio;
+        this.previas = previas;
+    }
+
+    public Integer getArchivoId() {
+        return archivoId;
+    }
+
+    /**
+     * Contadores de los lotes confirmados en intentos anteriores
+     */
+    public EstadisticasImportacion getPrevias() {
+        return previas;
+    }
+
+    public int getLineaInicio() {
+        return lineaInicio;
+    }
+
+    public long getDesplazamientoInicio() {
+        return desplazamientoInicio;
+    }
+
+    public boolean esReanudacion() {
+        return lineaBase > 0 || !ultimaLineaPorParticion.isEmpty();
+    }
+
+    /**
+     * Indica si la línea ya quedó guardada en un intento anterior
+     */
+    public boolean yaConfirmada(int particion, int numeroLinea) {
+        return numeroLinea <= Math.max(lineaBase, ultimaLineaPorParticion.getOrDefault(particion, 0));
+    }
+}
@@ -0,0 +1,214 @@
+package com.adavec.transporte.service.importacion;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Resumen de una importación terminada con el código HTTP que le corresponde.
+ * Lo usan la importación síncrona, los trabajos asíncronos y el registro de archivos
+ * ya importados, que lo guarda para devolverlo igual si se vuelve a subir el archivo.
+ */
+public class RespuestaImportacion {
+
+    private final HttpStatus estado;
+    private final Map<String, Object> cuerpo;
+
+    public RespuestaImportacion(HttpStatus estado, Map<String, Object> cuerpo) {
+        this.estado = estado;
+        this.cuerpo = cuerpo;
+    }
+
+    public HttpStatus getEstado() { return estado; }
+    public Map<String, Object> getCuerpo() { return cuerpo; }
+
+    public ResponseEntity<Map<String, Object>> toResponseEntity() {
+        return ResponseEntity.status(estado).body(cuerpo);
+    }
+
+    /**
+     * Construye la respuesta a partir de las estadísticas de la importación
+     */
+    public static RespuestaImportacion desde(EstadisticasImportacion estadisticas) {
+        if (estadisticas.getTotalLineas() == 0) {
+            return new RespuestaImportacion(HttpStatus.BAD_REQUEST, new HashMap<>(
+                    Map.of("mensaje", "El archivo no contiene datos", "tipoError", "ARCHIVO_SIN_DATOS")));
+        }
+
+        Map<String, Object> resultado = new HashMap<>();
+        // Con colector son solo las primeras muestras de cada tipo; los conteos siempre son completos
+        List<ErrorDetallado> todosLosErrores = estadisticas.erroresParaRespuesta();
+
+        // Contar errores por tipo
+        Map<TipoError, Integer> contadorErrores = estadisticas.contarErroresPorTipo();
+        int cantidadDuplicados = contadorErrores.getOrDefault(TipoError.DUPLICADO, 0);
+        int cantidadValidacion = contar(contadorErrores, TipoError::esValidacion);
+        int cantidadSistema = contar(contadorErrores, TipoError::esSistema);
+
+        // Construir respuesta con estadísticas mejoradas
+        resultado.put("unidadesImportadas", estadisticas.getImportados());
+        resultado.put("unidadesActualizadas", estadisticas.getActualizados());
+        resultado.put("unidadesSinCambios", estadisticas.getSinCambios());
+        resultado.put("distribuidoresCreados", estadisticas.getDistribuidoresCreados());
+        resultado.put("conceptosAplicados", estadisticas.getConceptosAplicados());
+        resultado.put("desgloseCompletoDetectado", estadisticas.getDesgloseCompleto());
+        resultado.put("tarifaUnicaIvaDetectada", estadisticas.getTarifaUnicaDetectada());
+        resultado.put("unidadesExentas", estadisticas.getUnidadesExentas());
+        resultado.put("lotesConErrores", estadisticas.getLotesConErrores());
+        resultado.put("totalLineasProcesadas", estadisticas.getTotalLineas());
+        resultado.put("totalErrores", estadisticas.getTotalErrores());
+        agregarReporteErrores(resultado, estadisticas.getColector());
+
+        // Añadir resumen de errores por tipo
+        if (!contadorErrores.isEmpty()) {
+            Map<String, Integer> resumenErrores = new HashMap<>();
+            contadorErrores.forEach((tipo, cantidad) ->
+                    resumenErrores.put(tipo.getDescripcion(), cantidad));
+            resultado.put("resumenErrores", resumenErrores);
+        }
+
+        // Separar errores por tipo para códigos de estado específicos
+        List<ErrorDetallado> erroresDuplicados = todosLosErrores.stream()
+                .filter(error -> error.getTipoError() == TipoError.DUPLICADO)
+                .toList();
+
+        List<ErrorDetallado> erroresValidacion = todosLosErrores.stream()
+                .filter(error -> error.getTipoError().esValidacion())
+                .toList();
+
+        List<ErrorDetallado> erroresSistema = todosLosErrores.stream()
+                .filter(error -> error.getTipoError().esSistema())
+                .toList();
+
+        // Manejo específico para duplicados (HTTP 409 - Conflict)
+        if (cantidadDuplicados > 0) {
+            System.err.println("🔄 ==========================================");
+            System.err.println("🔄  UNIDADES DUPLICADAS ENCONTRADAS");
+            System.err.println("🔄 ==========================================");
+            erroresDuplicados.forEach(error -> System.err.println("🔄 " + error.toString()));
+            System.err.println("🔄 ==========================================");
+            System.err.println("🔄 Total de duplicados: " + cantidadDuplicados);
+            System.err.println("🔄 ==========================================");
+
+            List<Map<String, Object>> duplicadosDetallados = erroresDuplicados.stream()
+                    .map(ErrorDetallado::toMap)
+                    .toList();
+
+            resultado.put("message", "Importación rechazada: Se detectaron unidades duplicadas que ya existen en el sistema");
+            resultado.put("tipoError", "CONFLICTO_DUPLICADOS");
+            resultado.put("duplicados", duplicadosDetallados);
+            resultado.put("cantidadDuplicados", cantidadDuplicados);
+            resultado.put("solucion", "Revise los números de serie (VIN) y elimine las unidades duplicadas del archivo");
+
+            if (!todosLosErrores.isEmpty()) {
+                resultado.put("todosLosErrores", todosLosErrores.stream().map(ErrorDetallado::toMap).toList());
+            }
+
+            return new RespuestaImportacion(HttpStatus.CONFLICT, resultado);
+        }
+
+        // Manejo para errores de validación (HTTP 422 - Unprocessable Entity)
+        if (cantidadValidacion > 0) {
+            System.err.println("⚠️ ==========================================");
+            System.err.println("⚠️  ERRORES DE VALIDACIÓN ENCONTRADOS");
+            System.err.println("⚠️ ==========================================");
+            erroresValidacion.forEach(error -> System.err.println("⚠️ " + error.toString()));
+            System.err.println("⚠️ ==========================================");
+            System.err.println("⚠️ Total de errores de validación: " + cantidadValidacion);
+            System.err.println("⚠️ ==========================================");
+
+            List<Map<String, Object>> validacionDetallada = erroresValidacion.stream()
+                    .map(ErrorDetallado::toMap)
+                    .toList();
+
+            resultado.put("message", "Importación rechazada: Los datos contienen errores de validación que deben corregirse");
+            resultado.put("tipoError", "ERROR_VALIDACION");
+            resultado.put("erroresValidacion", validacionDetallada);
+            resultado.put("cantidadErroresValidacion", cantidadValidacion);
+            resultado.put("solucion", "Corrija los campos obligatorios faltantes, formatos de fecha y valores numéricos inválidos");
+
+            if (!todosLosErrores.isEmpty()) {
+                resultado.put("todosLosErrores", todosLosErrores.stream().map(ErrorDetallado::toMap).toList());
+            }
+
+            return new RespuestaImportacion(HttpStatus.UNPROCESSABLE_ENTITY, resultado);
+        }
+
+        // Manejo para errores de sistema (HTTP 500 - Internal Server Error)
+        if (cantidadSistema > 0) {
+            System.err.println("💥 ==========================================");
+            System.err.println("💥  ERRORES DE SISTEMA ENCONTRADOS");
+            System.err.println("💥 ==========================================");
+            erroresSistema.forEach(error -> System.err.println("💥 " + error.toString()));
+            System.err.println("💥 ==========================================");
+            System.err.println("💥 Total de errores de sistema: " + cantidadSistema);
+            System.err.println("💥 ==========================================");
+
+            List<Map<String, Object>> sistemaDetallado = erroresSistema.stream()
+                    .map(ErrorDetallado::toMap)
+                    .toList();
+
+            resultado.put("message", "Importación fallida: Se produjeron errores internos del sistema");
+            resultado.put("tipoError", "ERROR_SISTEMA");
+            resultado.put("erroresSistema", sistemaDetallado);
+            resultado.put("cantidadErroresSistema", cantidadSistema);
+            resultado.put("solucion", "Contacte al administrador del sistema. Los errores han sido registrados para revisión");
+
+            if (!todosLosErrores.isEmpty()) {
+                resultado.put("todosLosErrores", todosLosErrores.stream().map(ErrorDetallado::toMap).toList());
+            }
+
+            return new RespuestaImportacion(HttpStatus.INTERNAL_SERVER_ERROR, resultado);
+        }
+
+        // Si hay errores no críticos, incluirlos pero continuar
+        if (!todosLosErrores.isEmpty()) {
+            List<Map<String, Object>> erroresDetallados = todosLosErrores.stream()
+                    .map(ErrorDetallado::toMap)
+                    .toList();
+            resultado.put("advertencias", erroresDetallados);
+            resultado.put("message", "Importación completada con advertencias");
+        } else {
+            resultado.put("message", "Importación completada exitosamente");
+        }
+
+        // Añadir resumen ejecutivo
+        Map<String, Object> resumenEjecutivo = new HashMap<>();
+        resumenEjecutivo.put("mensaje", "Resumen de detección automática");
+        resumenEjecutivo.put("desgloseCompleto17883", estadisticas.getDesgloseCompleto());
+        resumenEjecutivo.put("tarifaUnicaIva26564", estadisticas.getTarifaUnicaDetectada());
+        resumenEjecutivo.put("cobrosNormales", estadisticas.getImportados() + estadisticas.getActualizados() - estadisticas.getDesgloseCompleto() - estadisticas.getTarifaUnicaDetectada() - estadisticas.getUnidadesExentas());
+        resumenEjecutivo.put("unidadesExentas", estadisticas.getUnidadesExentas());
+        resultado.put("resumenEjecutivo", resumenEjecutivo);
+
+        return new RespuestaImportacion(HttpStatus.OK, resultado);
+    }
+
+    private static int contar(Map<TipoError, Integer> contadorErrores, Predicate<TipoError> filtro) {
+        return contadorErrores.entrySet().stream()
+                .filter(entrada -> filtro.test(entrada.getKey()))
+                .mapToInt(Map.Entry::getValue)
+                .sum();
+    }
+
+    /**
+     * Indica si la lista de errores está recortada y dónde consultar la completa
+     */
+    private static void agregarReporteErrores(Map<String, Object> resultado, ColectorErrores colector) {
+        if (colector == null || colector.getTotal() == 0) {
+            return;
+        }
+        resultado.put("erroresTruncados", colector.estaTruncado());
+        if (colector.tieneArchivo()) {
+            Map<String, Object> reporte = new HashMap<>();
+            reporte.put("id", colector.getId());
+            reporte.put("consulta", "/api/importar/errores/" + colector.getId() + "?pagina=0&tamano=100");
+            reporte.put("descarga", "/api/importar/errores/" + colector.getId() + "/descarga");
+            resultado.put("reporteErrores", reporte);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.adavec.transporte.service.importacion;
+
+import java.util.List;
+
+/**
+ * Resultado de validar una línea del archivo
+ */
+public class ResultadoValidacion {
+    private final boolean esValido;
+    private final List<ErrorDetallado> errores;
+
+    public ResultadoValidacion(boolean esValido, List<ErrorDetallado> errores) {
+        this.esValido = esValido;
+        this.errores = errores;
+    }
+
+    public boolean isEsValido() { return esValido; }
+    public List<ErrorDetallado> getErrores() { return errores; }
+}
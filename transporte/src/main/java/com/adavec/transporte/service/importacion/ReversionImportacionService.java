@@ -0,0 +1,163 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.model.ImportacionArchivo;
+import com.adavec.transporte.repository.ImportacionArchivoRepository;
+import com.adavec.transporte.repository.ImportacionPuntoControlRepository;
+import com.adavec.transporte.service.ResumenMensualService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Revierte una importación completa a partir de su archivo de origen.
+ * Las unidades se borran por bloques de ids, cada bloque en su propia transacción y con
+ * DELETE por conjunto sobre cada tabla hija y el resumen mensual, así ninguna transacción retiene candados
+ * mucho tiempo y no se cargan entidades ni colecciones.
+ * <p>
+ * Solo se borran las unidades que el archivo creó: archivo_origen se escribe únicamente al
+ * insertar la unidad y nunca se actualiza. Las unidades que el archivo solo actualizó (modo
+ * actualización) y las importadas antes de registrar archivo_origen se conservan con sus filas;
+ * sus valores anteriores ya no existen, así que se informan aparte.
+ */
+@Service
+public class ReversionImportacionService {
+
+    private static final String UNIDADES_DEL_ARCHIVO = """
+            SELECT id FROM unidad WHERE archivo_origen = ? LIMIT ?""";
+
+    private static final String CONTAR_UNIDADES_CONSERVADAS = """
+            SELECT COUNT(DISTINCT unidad_id) FROM cobro_detalle WHERE archivo_origen = ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccion;
+    private final ImportacionArchivoRepository importacionArchivoRepository;
+    private final ImportacionPuntoControlRepository importacionPuntoControlRepository;
+    private final ImportacionArchivoService importacionArchivoService;
+    private final ImportacionTrabajoService importacionTrabajoService;
+    private final ResumenMensualService resumenMensualService;
+    private final int tamanoBloque;
+
+    public ReversionImportacionService(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       ImportacionArchivoRepository importacionArchivoRepository,
+                                       ImportacionPuntoControlRepository importacionPuntoControlRepository,
+                                       ImportacionArchivoService importacionArchivoService,
+                                       ImportacionTrabajoService importacionTrabajoService,
+                                       ResumenMensualService resumenMensualService,
+                                       @Value("${app.importacion.reversion.tamano-bloque:500}") int tamanoBloque) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.importacionArchivoRepository = importacionArchivoRepository;
+        this.importacionPuntoControlRepository = importacionPuntoControlRepository;
+        this.importacionArchivoService = importacionArchivoService;
+        this.importacionTrabajoService = importacionTrabajoService;
+        this.resumenMensualService = resumenMensualService;
+        this.tamanoBloque = Math.max(1, tamanoBloque);
+    }
+
+    /**
+     * Indica si hay una importación en curso del archivo; mientras tanto no se puede revertir.
+     * Se consulta lo que está vivo en esta instancia y no el estado guardado, que sigue EN_PROCESO
+     * en los intentos cancelados o interrumpidos por una caída.
+     */
+    public boolean importacionEnCurso(String archivoOrigen) {
+        return importacionArchivoService.importando(archivoOrigen)
+                || importacionTrabajoService.hayTrabajoActivo(archivoOrigen);
+    }
+
+    /**
+     * Borra las unidades creadas por el archivo con sus seguros, cobros y desglose.
+     * Devuelve lo eliminado por tabla.
+     */
+    public Map<String, Object> revertir(String archivoOrigen) {
+        long inicio = System.nanoTime();
+        System.out.println("⏪ Revirtiendo la importación de " + archivoOrigen + " en bloques de " + tamanoBloque + " unidades");
+
+        Conteo conteo = new Conteo();
+        revertirBloques(archivoOrigen, conteo);
+
+        Integer conservadas = jdbcTemplate.queryForObject(CONTAR_UNIDADES_CONSERVADAS, Integer.class, archivoOrigen);
+        int registros = marcarRevertida(archivoOrigen);
+
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+        System.out.println("🏁 Reversión de " + archivoOrigen + " terminada: " + conteo.unidades + " unidades en " +
+                conteo.bloques + " bloques (" + String.format("%.1f s", segundos) + ")");
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("archivoOrigen", archivoOrigen);
+        resultado.put("unidadesEliminadas", conteo.unidades);
+        resultado.put("segurosEliminados", conteo.seguros);
+        resultado.put("cobrosDetalleEliminados", conteo.cobrosDetalle);
+        resultado.put("cobrosEliminados", conteo.cobros);
+        resultado.put("fechasCobrosEliminadas", conteo.fechasCobros);
+        resultado.put("bloques", conteo.bloques);
+        resultado.put("unidadesConservadas", conservadas != null ? conservadas : 0);
+        resultado.put("importacionesMarcadasRevertidas", registros);
+        resultado.put("segundos", Math.round(segundos * 10) / 10.0);
+        if (conservadas != null && conservadas > 0) {
+            resultado.put("advertencia", "Las unidades que el archivo no creó (solo las actualizó, o son anteriores " +
+                    "al registro del archivo de origen) se conservan con los valores del archivo");
+        }
+        return resultado;
+    }
+
+    private void revertirBloques(String archivoOrigen, Conteo conteo) {
+        while (true) {
+            // Cada bloque vuelve a consultar: los ids del bloque anterior ya no existen
+            Integer eliminadas = transaccion.execute(estado -> {
+                List<Integer> ids = jdbcTemplate.queryForList(UNIDADES_DEL_ARCHIVO, Integer.class, archivoOrigen, tamanoBloque);
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                // Primero el resumen: sus meses se leen de las fechas y la unidad antes de borrarlas
+                resumenMensualService.eliminarUnidades(ids);
+                Object[] parametros = ids.toArray();
+                String enIds = String.join(", ", Collections.nCopies(ids.size(), "?"));
+                conteo.cobrosDetalle += jdbcTemplate.update("DELETE FROM cobro_detalle WHERE unidad_id IN (" + enIds + ")", parametros);
+                conteo.seguros += jdbcTemplate.update("DELETE FROM seguros WHERE UnidadID IN (" + enIds + ")", parametros);
+                conteo.cobros += jdbcTemplate.update("DELETE FROM cobros WHERE UnidadID IN (" + enIds + ")", parametros);
+                conteo.fechasCobros += jdbcTemplate.update("DELETE FROM fechas_cobros WHERE unidad_id IN (" + enIds + ")", parametros);
+                return jdbcTemplate.update("DELETE FROM unidad WHERE id IN (" + enIds + ")", parametros);
+            });
+            if (eliminadas == null || eliminadas == 0) {
+                return;
+            }
+            conteo.unidades += eliminadas;
+            conteo.bloques++;
+            System.out.println("🗑️ Bloque " + conteo.bloques + ": " + eliminadas + " unidades de " + archivoOrigen + " eliminadas");
+        }
+    }
+
+    /**
+     * Los registros del archivo quedan REVERTIDA: volver a subirlo lo importa de nuevo en lugar de
+     * devolver el resumen anterior
+     */
+    private int marcarRevertida(String archivoOrigen) {
+        List<ImportacionArchivo> archivos = importacionArchivoRepository.findByNombreArchivo(archivoOrigen);
+        for (ImportacionArchivo archivo : archivos) {
+            importacionPuntoControlRepository.eliminarPorArchivo(archivo.getId());
+            archivo.setEstado(ImportacionArchivo.Estado.REVERTIDA);
+            archivo.setRutaArchivo(null);
+            archivo.setFechaFin(LocalDateTime.now());
+            importacionArchivoRepository.save(archivo);
+        }
+        return archivos.size();
+    }
+
+    private static final class Conteo {
+        private int unidades;
+        private int seguros;
+        private int cobrosDetalle;
+        private int cobros;
+        private int fechasCobros;
+        private int bloques;
+    }
+}
@@ -0,0 +1,43 @@
+package com.adavec.transporte.service.importacion;
+
+/**
+ * Tipos de error que puede producir la importación de archivos TXT
+ */
+public enum TipoError {
+    DUPLICADO("DUPLICADO"),
+    VIN_VACIO("VIN_VACIO"),
+    FORMATO_INCORRECTO("FORMATO_INCORRECTO"),
+    DATOS_OBLIGATORIOS_FALTANTES("DATOS_OBLIGATORIOS_FALTANTES"),
+    FECHA_INVALIDA("FECHA_INVALIDA"),
+    VALOR_NUMERICO_INVALIDO("VALOR_NUMERICO_INVALIDO"),
+    DISTRIBUIDOR_INVALIDO("DISTRIBUIDOR_INVALIDO"),
+    ERROR_BASE_DATOS("ERROR_BASE_DATOS"),
+    ERROR_PROCESAMIENTO("ERROR_PROCESAMIENTO"),
+    ERROR_DESGLOSE("ERROR_DESGLOSE");
+
+    private final String descripcion;
+
+    TipoError(String descripcion) {
+        this.descripcion = descripcion;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    /**
+     * Errores de datos del archivo (HTTP 422)
+     */
+    public boolean esValidacion() {
+        return this == VIN_VACIO || this == DATOS_OBLIGATORIOS_FALTANTES || this == FORMATO_INCORRECTO
+                || this == FECHA_INVALIDA || this == VALOR_NUMERICO_INVALIDO;
+    }
+
+    /**
+     * Errores internos del sistema (HTTP 500)
+     */
+    public boolean esSistema() {
+        return this == ERROR_BASE_DATOS || this == ERROR_PROCESAMIENTO
+                || this == DISTRIBUIDOR_INVALIDO || this == ERROR_DESGLOSE;
+    }
+}
@@ -0,0 +1,126 @@
+package com.adavec.transporte.service.importacion;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Importación asíncrona registrada en {@link ImportacionTrabajoService}
+ */
+public class TrabajoImportacion {
+
+    public enum Estado {
+        EN_COLA, EN_PROCESO, COMPLETADO, CANCELADO, FALLIDO;
+
+        public boolean esFinal() {
+            return this == COMPLETADO || this == CANCELADO || this == FALLIDO;
+        }
+    }
+
+    private final String id;
+    private final long tamanoBytes;
+    private final boolean paralelo;
+    private final ContextoImportacion contexto;
+    private final Instant creado = Instant.now();
+
+    private volatile Estado estado = Estado.EN_COLA;
+    private volatile Instant inicio;
+    private volatile Instant fin;
+    private volatile RespuestaImportacion resultado;
+    private volatile String mensajeError;
+
+    public TrabajoImportacion(String id, String nombreArchivo, long tamanoBytes, boolean paralelo,
+                              boolean actualizarExistentes) {
+        this.id = id;
+        this.tamanoBytes = tamanoBytes;
+        this.paralelo = paralelo;
+        this.contexto = new ContextoImportacion(nombreArchivo, actualizarExistentes);
+    }
+
+    public String getId() { return id; }
+    public String getNombreArchivo() { return contexto.getNombreArchivo(); }
+    public boolean isParalelo() { return paralelo; }
+    public ContextoImportacion getContexto() { return contexto; }
+    public Estado getEstado() { return estado; }
+    public Instant getFin() { return fin; }
+    public RespuestaImportacion getResultado() { return resultado; }
+    public String getMensajeError() { return mensajeError; }
+
+    synchronized boolean iniciar() {
+        if (estado != Estado.EN_COLA) {
+            return false;
+        }
+        estado = Estado.EN_PROCESO;
+        inicio = Instant.now();
+        return true;
+    }
+
+    synchronized void completar(RespuestaImportacion resultado) {
+        this.resultado = resultado;
+        terminar(Estado.COMPLETADO);
+    }
+
+    synchronized void fallar(String mensajeError) {
+        this.mensajeError = mensajeError;
+        terminar(Estado.FALLIDO);
+    }
+
+    synchronized void marcarCancelado() {
+        terminar(Estado.CANCELADO);
+    }
+
+    private void terminar(Estado estadoFinal) {
+        if (!estado.esFinal()) {
+            fin = Instant.now();
+            estado = estadoFinal;
+        }
+    }
+
+    /**
+     * Estado y avance del trabajo para la consulta de progreso
+     */
+    public Map<String, Object> toMap() {
+        ProgresoImportacion progreso = contexto.getProgreso();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("trabajoId", id);
+        map.put("archivo", getNombreArchivo());
+        map.put("estado", estado.name());
+        map.put("paralelo", paralelo);
+        map.put("actualizarExistentes", contexto.isActualizarExistentes());
+        map.put("creado", creado.toString());
+        map.put("inicio", inicio != null ? inicio.toString() : null);
+        map.put("fin", fin != null ? fin.toString() : null);
+        map.put("lineasProcesadas", progreso.getLineasProcesadas());
+        map.put("unidadesImportadas", progreso.getUnidadesImportadas());
+        map.put("conceptosAplicados", progreso.getConceptosAplicados());
+        map.put("lotesProcesados", progreso.getLotesProcesados());
+
+        long bytesLeidos = Math.min(progreso.getBytesLeidos(), tamanoBytes);
+        double porcentaje = tamanoBytes > 0 ? bytesLeidos * 100.0 / tamanoBytes : 0;
+        map.put("porcentaje", Math.round(porcentaje * 10) / 10.0);
+
+        if (inicio != null) {
+            Instant hasta = fin != null ? fin : Instant.now();
+            double segundos = Math.max(Duration.between(inicio, hasta).toMillis() / 1000.0, 0.001);
+            map.put("segundosTranscurridos", Math.round(segundos));
+            map.put("lineasPorSegundo", Math.round(progreso.getLineasProcesadas() / segundos));
+
+            // ETA según la proporción del archivo ya leída
+            if (estado == Estado.EN_PROCESO && bytesLeidos > 0) {
+                double restante = segundos * (tamanoBytes - bytesLeidos) / bytesLeidos;
+                map.put("segundosRestantesEstimados", Math.round(restante));
+            }
+        }
+
+        Map<String, Integer> errores = new LinkedHashMap<>();
+        progreso.getErroresPorTipo().forEach((tipo, cantidad) -> errores.put(tipo.getDescripcion(), cantidad));
+        map.put("totalErrores", progreso.getTotalErrores());
+        map.put("erroresPorTipo", errores);
+
+        if (mensajeError != null) {
+            map.put("error", mensajeError);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,99 @@
+package com.adavec.transporte.service.importacion;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Valores guardados de una unidad que el modo actualización compara con la línea del archivo:
+ * los de la unidad, los de su seguro y su desglose de cobros. Si la unidad tiene varios seguros
+ * se compara el más antiguo, y es ese el que se actualiza.
+ */
+final class UnidadExistente {
+
+    private static final double TOLERANCIA = 0.005;
+
+    record Cobro(int conceptoId, double monto) {
+    }
+
+    private final int id;
+    private final LocalDate debisFecha;
+    private final Double valorUnidad;
+    private boolean tieneSeguro;
+    private int seguroId;
+    private String factura;
+    private Double valorSeguro;
+    private Double seguroDistribuidor;
+    private Double cuotaSeguro;
+    private LocalDate fechaFactura;
+    private final List<Cobro> cobros = new ArrayList<>();
+
+    UnidadExistente(int id, LocalDate debisFecha, Double valorUnidad) {
+        this.id = id;
+        this.debisFecha = debisFecha;
+        this.valorUnidad = valorUnidad;
+    }
+
+    int getId() { return id; }
+    boolean tieneSeguro() { return tieneSeguro; }
+    int getSeguroId() { return seguroId; }
+
+    void asignarSeguro(int seguroId, String factura, Double valorSeguro, Double seguroDistribuidor, Double cuotaSeguro,
+                       LocalDate fechaFactura) {
+        this.tieneSeguro = true;
+        this.seguroId = seguroId;
+        this.factura = factura;
+        this.valorSeguro = valorSeguro;
+        this.seguroDistribuidor = seguroDistribuidor;
+        this.cuotaSeguro = cuotaSeguro;
+        this.fechaFactura = fechaFactura;
+    }
+
+    void agregarCobro(int conceptoId, double monto) {
+        cobros.add(new Cobro(conceptoId, monto));
+    }
+
+    boolean unidadCambio(LocalDate nuevaDebisFecha, Double nuevoValorUnidad) {
+        return !Objects.equals(debisFecha, nuevaDebisFecha) || !iguales(valorUnidad, nuevoValorUnidad);
+    }
+
+    boolean seguroCambio(String nuevaFactura, Double nuevoValorSeguro, Double nuevoSeguroDistribuidor,
+                         Double nuevaCuotaSeguro, LocalDate nuevaFechaFactura) {
+        return !tieneSeguro
+                || !Objects.equals(factura, nuevaFactura)
+                || !iguales(valorSeguro, nuevoValorSeguro)
+                || !iguales(seguroDistribuidor, nuevoSeguroDistribuidor)
+                || !iguales(cuotaSeguro, nuevaCuotaSeguro)
+                || !Objects.equals(fechaFactura, nuevaFechaFactura);
+    }
+
+    /**
+     * Compara el desglose sin importar el orden de los conceptos
+     */
+    boolean desgloseCambio(List<Cobro> nuevos) {
+        if (nuevos.size() != cobros.size()) {
+            return true;
+        }
+        Comparator<Cobro> orden = Comparator.comparingInt(Cobro::conceptoId).thenComparingDouble(Cobro::monto);
+        List<Cobro> actuales = new ArrayList<>(cobros);
+        List<Cobro> propuestos = new ArrayList<>(nuevos);
+        actuales.sort(orden);
+        propuestos.sort(orden);
+        for (int i = 0; i < actuales.size(); i++) {
+            if (actuales.get(i).conceptoId() != propuestos.get(i).conceptoId()
+                    || Math.abs(actuales.get(i).monto() - propuestos.get(i).monto()) > TOLERANCIA) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean iguales(Double a, Double b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return Math.abs(a - b) <= TOLERANCIA;
+    }
+}
@@ -0,0 +1,280 @@
+package com.adavec.transporte.service.importacion;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Validación previa de un archivo TXT sin escribir nada en la base de datos.
+ * Las líneas se validan por bloques en todos los núcleos; una pasada secuencial detecta
+ * los VIN repetidos en el archivo y al final se leen una sola vez los VIN y las claves de
+ * distribuidor existentes para reportar duplicados y distribuidores que se crearían.
+ * En memoria solo se guarda un VIN y su línea por cada unidad del archivo.
+ */
+@Service
+public class ValidacionTxtService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int tamanoBloque;
+    private final int hilos;
+    private final ExecutorService ejecutor;
+
+    public ValidacionTxtService(JdbcTemplate jdbcTemplate,
+                                @Value("${app.importacion.validacion.tamano-bloque:5000}") int tamanoBloque) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tamanoBloque = Math.max(1, tamanoBloque);
+        this.hilos = Runtime.getRuntime().availableProcessors();
+        this.ejecutor = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "validacion-txt");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    private record LineaValida(int numero, String linea, String noSerie, String claveDistribuidora, String modelo) {
+    }
+
+    private record ResultadoBloque(List<LineaValida> validas, List<ErrorDetallado> errores) {
+    }
+
+    /**
+     * Estado de la pasada secuencial sobre los bloques ya validados
+     */
+    private static class Acumulado {
+        private final List<ErrorDetallado> errores = new ArrayList<>();
+        // VIN normalizado -> primera línea válida donde aparece
+        private final Map<String, Integer> primeraLineaPorVin = new HashMap<>();
+        private final List<LineaValida> repetidas = new ArrayList<>();
+        private final Map<String, String> clavesDistribuidor = new HashMap<>();
+        private int totalLineas;
+        private int lineasValidas;
+    }
+
+    /**
+     * Valida todo el archivo y devuelve el resumen con todos los errores encontrados.
+     * El archivo se vuelve a abrir solo si alguna unidad ya existe en el sistema.
+     */
+    public Map<String, Object> validar(InputStreamSource archivo, String nombreArchivo) throws IOException {
+        long inicio = System.nanoTime();
+        System.out.println("🔎 Validando " + nombreArchivo + " sin escribir en la base de datos");
+
+        Acumulado acumulado = validarEnParalelo(archivo);
+
+        // Una sola lectura de los VIN registrados, conservando solo los que están en el archivo
+        Set<String> vinsExistentes = new HashSet<>();
+        if (!acumulado.primeraLineaPorVin.isEmpty()) {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement("SELECT NoSerie FROM unidad WHERE NoSerie IS NOT NULL",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE); // lectura en streaming con MySQL
+                return ps;
+            }, rs -> {
+                String clave = CatalogosImportacion.normalizar(rs.getString(1).trim());
+                if (acumulado.primeraLineaPorVin.containsKey(clave)) {
+                    vinsExistentes.add(clave);
+                }
+            });
+        }
+
+        Set<String> distribuidoresExistentes = new HashSet<>();
+        if (!acumulado.clavesDistribuidor.isEmpty()) {
+            jdbcTemplate.query("SELECT ClaveDistribuidora FROM distribuidor WHERE ClaveDistribuidora IS NOT NULL",
+                    rs -> {
+                        distribuidoresExistentes.add(CatalogosImportacion.normalizar(rs.getString(1)));
+                    });
+        }
+
+        // Duplicados con los mismos mensajes que la importación; un VIN existente en BD tiene prioridad
+        List<ErrorDetallado> errores = acumulado.errores;
+        int duplicadosEnSistema = 0;
+        for (LineaValida repetida : acumulado.repetidas) {
+            String clave = CatalogosImportacion.normalizar(repetida.noSerie());
+            if (vinsExistentes.contains(clave)) {
+                errores.add(duplicadoEnSistema(repetida));
+                duplicadosEnSistema++;
+            } else {
+                errores.add(new ErrorDetallado(repetida.numero(), TipoError.DUPLICADO,
+                        String.format("Unidad duplicada - VIN: %s repetido en el archivo (primera aparición en línea %d)",
+                                repetida.noSerie(), acumulado.primeraLineaPorVin.get(clave)),
+                        repetida.linea(), "noSerie", repetida.noSerie()));
+            }
+        }
+        if (!vinsExistentes.isEmpty()) {
+            List<ErrorDetallado> enSistema = primerasAparicionesEnSistema(archivo, acumulado, vinsExistentes);
+            errores.addAll(enSistema);
+            duplicadosEnSistema += enSistema.size();
+            acumulado.lineasValidas -= enSistema.size();
+        }
+        acumulado.lineasValidas -= acumulado.repetidas.size();
+
+        List<String> distribuidoresNuevos = new ArrayList<>();
+        acumulado.clavesDistribuidor.forEach((clave, original) -> {
+            if (!distribuidoresExistentes.contains(clave)) {
+                distribuidoresNuevos.add(original);
+            }
+        });
+        Collections.sort(distribuidoresNuevos);
+
+        errores.sort(Comparator.comparingInt(ErrorDetallado::getNumeroLinea));
+        Map<String, Integer> resumenErrores = new LinkedHashMap<>();
+        for (ErrorDetallado error : errores) {
+            resumenErrores.merge(error.getTipoError().getDescripcion(), 1, Integer::sum);
+        }
+
+        long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+        System.out.println("🔎 Validación de " + nombreArchivo + " terminada: " + acumulado.totalLineas +
+                " líneas, " + errores.size() + " errores en " + duracionMs + " ms");
+
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("archivo", nombreArchivo);
+        resultado.put("valido", errores.isEmpty());
+        resultado.put("totalLineas", acumulado.totalLineas);
+        resultado.put("lineasValidas", acumulado.lineasValidas);
+        resultado.put("totalErrores", errores.size());
+        resultado.put("resumenErrores", resumenErrores);
+        resultado.put("duplicadosEnSistema", duplicadosEnSistema);
+        resultado.put("distribuidoresNuevos", distribuidoresNuevos);
+        resultado.put("duracionMs", duracionMs);
+        resultado.put("errores", errores.stream().map(ErrorDetallado::toMap).toList());
+        return resultado;
+    }
+
+    /**
+     * Lee el archivo en bloques que se validan en paralelo y se consumen en orden;
+     * el número de bloques pendientes está acotado para no cargar el archivo completo
+     */
+    private Acumulado validarEnParalelo(InputStreamSource archivo) throws IOException {
+        Acumulado acumulado = new Acumulado();
+        Deque<Future<ResultadoBloque>> pendientes = new ArrayDeque<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(EntradaArchivo.abrir(archivo.getInputStream())))) {
+            List<String> bloque = new ArrayList<>(tamanoBloque);
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                bloque.add(linea);
+                if (bloque.size() == tamanoBloque) {
+                    pendientes.add(enviarBloque(bloque, acumulado.totalLineas + 1));
+                    acumulado.totalLineas += bloque.size();
+                    bloque = new ArrayList<>(tamanoBloque);
+                    while (pendientes.size() > hilos * 2) {
+                        consumir(pendientes.poll(), acumulado);
+                    }
+                }
+            }
+            if (!bloque.isEmpty()) {
+                pendientes.add(enviarBloque(bloque, acumulado.totalLineas + 1));
+                acumulado.totalLineas += bloque.size();
+            }
+            while (!pendientes.isEmpty()) {
+                consumir(pendientes.poll(), acumulado);
+            }
+        } finally {
+            pendientes.forEach(futuro -> futuro.cancel(true));
+        }
+        return acumulado;
+    }
+
+    private Future<ResultadoBloque> enviarBloque(List<String> lineas, int primeraLinea) {
+        return ejecutor.submit(() -> validarBloque(lineas, primeraLinea));
+    }
+
+    /**
+     * Validación pura de un bloque; cada tarea usa su propio tokenizador
+     */
+    private ResultadoBloque validarBloque(List<String> lineas, int primeraLinea) {
+        LineaTxt col = new LineaTxt();
+        List<LineaValida> validas = new ArrayList<>(lineas.size());
+        List<ErrorDetallado> errores = new ArrayList<>();
+        for (int i = 0; i < lineas.size(); i++) {
+            int numeroLinea = primeraLinea + i;
+            String linea = lineas.get(i);
+            try {
+                col.cargar(linea);
+                ResultadoValidacion validacion = ValidadorLineaTxt.validar(col, numeroLinea);
+                if (validacion.isEsValido()) {
+                    validas.add(new LineaValida(numeroLinea, linea, col.texto(4).trim(), col.texto(0), col.texto(2)));
+                } else {
+                    errores.addAll(validacion.getErrores());
+                }
+            } catch (Exception e) {
+                errores.add(new ErrorDetallado(numeroLinea, TipoError.ERROR_PROCESAMIENTO,
+                        "Error inesperado al procesar línea: " + e.getMessage(), linea));
+            }
+        }
+        return new ResultadoBloque(validas, errores);
+    }
+
+    /**
+     * Pasada secuencial: registra la primera aparición de cada VIN y las líneas que lo repiten
+     */
+    private void consumir(Future<ResultadoBloque> futuro, Acumulado acumulado) throws IOException {
+        ResultadoBloque bloque;
+        try {
+            bloque = futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Validación interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error validando el archivo: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        acumulado.errores.addAll(bloque.errores());
+        acumulado.lineasValidas += bloque.validas().size();
+        for (LineaValida valida : bloque.validas()) {
+            String clave = CatalogosImportacion.normalizar(valida.noSerie());
+            if (acumulado.primeraLineaPorVin.putIfAbsent(clave, valida.numero()) != null) {
+                acumulado.repetidas.add(valida);
+            }
+            acumulado.clavesDistribuidor.putIfAbsent(CatalogosImportacion.normalizar(valida.claveDistribuidora()),
+                    valida.claveDistribuidora());
+        }
+    }
+
+    /**
+     * Errores de las primeras apariciones cuyo VIN ya existe; se relee el archivo
+     * para recuperar solo esas líneas
+     */
+    private List<ErrorDetallado> primerasAparicionesEnSistema(InputStreamSource archivo, Acumulado acumulado,
+                                                            Set<String> vinsExistentes) throws IOException {
+        BitSet lineas = new BitSet();
+        for (String vin : vinsExistentes) {
+            lineas.set(acumulado.primeraLineaPorVin.get(vin));
+        }
+
+        List<ErrorDetallado> errores = new ArrayList<>(vinsExistentes.size());
+        LineaTxt col = new LineaTxt();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(EntradaArchivo.abrir(archivo.getInputStream())))) {
+            String linea;
+            int numeroLinea = 0;
+            while ((linea = reader.readLine()) != null && errores.size() < vinsExistentes.size()) {
+                if (lineas.get(++numeroLinea)) {
+                    col.cargar(linea);
+                    errores.add(duplicadoEnSistema(new LineaValida(numeroLinea, linea,
+                            col.texto(4).trim(), col.texto(0), col.texto(2))));
+                }
+            }
+        }
+        return errores;
+    }
+
+    private ErrorDetallado duplicadoEnSistema(LineaValida valida) {
+        return new ErrorDetallado(valida.numero(), TipoError.DUPLICADO,
+                String.format("Unidad duplicada - VIN: %s ya existe en el sistema (Distribuidor: %s, Modelo: %s)",
+                        valida.noSerie(), valida.claveDistribuidora(), valida.modelo()),
+                valida.linea(), "noSerie", valida.noSerie());
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+}
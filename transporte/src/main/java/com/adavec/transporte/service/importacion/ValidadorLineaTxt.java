@@ -0,0 +1,168 @@
+package com.adavec.transporte.service.importacion;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Validación de una línea del TXT sin acceso a base de datos.
+ * La usan la importación y la validación previa del archivo; no guarda estado,
+ * por lo que se puede llamar desde varios hilos a la vez.
+ */
+public final class ValidadorLineaTxt {
+
+    static final int MIN_COLUMNS_REQUIRED = 13;
+
+    private ValidadorLineaTxt() {
+    }
+
+    /**
+     * Valida columnas, campos obligatorios, fechas y valores numéricos de la línea ya tokenizada
+     */
+    public static ResultadoValidacion validar(LineaTxt col, int numeroLinea) {
+        return validar(col, numeroLinea, new CamposLinea());
+    }
+
+    /**
+     * Igual que {@link #validar(LineaTxt, int)}, dejando en {@code campos} las fechas y
+     * valores ya interpretados para que la importación no los vuelva a leer
+     */
+    public static ResultadoValidacion validar(LineaTxt col, int numeroLinea, CamposLinea campos) {
+        campos.limpiar();
+        List<ErrorDetallado> errores = new ArrayList<>();
+        String linea = col.getLinea();
+
+        // Validar que la línea no esté vacía
+        if (linea == null || linea.trim().isEmpty()) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.FORMATO_INCORRECTO,
+                    "Línea vacía", linea));
+            return new ResultadoValidacion(false, errores);
+        }
+
+        // Validar número mínimo de columnas
+        if (col.columnas() < MIN_COLUMNS_REQUIRED) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.FORMATO_INCORRECTO,
+                    String.format("Se esperaban al menos %d columnas, se encontraron %d",
+                            MIN_COLUMNS_REQUIRED, col.columnas()), linea));
+            return new ResultadoValidacion(false, errores);
+        }
+
+        // Validar campos obligatorios
+        String claveDistribuidora = col.texto(0);
+        String factura = col.texto(1);
+        String modeloNombre = col.texto(2);
+        String noSerie = col.texto(4);
+
+        // Validar clave distribuidora
+        if (esVacioONulo(claveDistribuidora)) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.DATOS_OBLIGATORIOS_FALTANTES,
+                    "Clave de distribuidora es obligatoria", linea, "claveDistribuidora", claveDistribuidora));
+        }
+
+        // Validar número de serie (VIN)
+        if (esVacioONulo(noSerie)) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.VIN_VACIO,
+                    "Número de serie (VIN) es obligatorio y no puede estar vacío", linea, "noSerie", noSerie));
+        } else if (noSerie.trim().length() < 3) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.VIN_VACIO,
+                    "Número de serie (VIN) debe tener al menos 3 caracteres", linea, "noSerie", noSerie));
+        }
+
+        // Validar modelo
+        if (esVacioONulo(modeloNombre)) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.DATOS_OBLIGATORIOS_FALTANTES,
+                    "Nombre del modelo es obligatorio", linea, "modeloNombre", modeloNombre));
+        }
+
+        // Validar factura
+        if (esVacioONulo(factura)) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.DATOS_OBLIGATORIOS_FALTANTES,
+                    "Número de factura es obligatorio", linea, "factura", factura));
+        }
+
+        // Validar fechas
+        campos.setFechaFondeo(validarFecha(col.texto(5), numeroLinea, "fechaFondeo", linea, errores));
+        campos.setFechaInteres(validarFecha(col.texto(6), numeroLinea, "fechaInteres", linea, errores));
+
+        // Validar valores numéricos
+        campos.setValorUnidad(validarDouble(col.texto(8), numeroLinea, "valorUnidad", linea, errores, true));
+        campos.setCuotaAsociacion(validarDouble(col.texto(9), numeroLinea, "cuotaAsociacion", linea, errores, false));
+        campos.setValorSeguro(validarDouble(col.texto(10), numeroLinea, "valorSeguro", linea, errores, false));
+        campos.setTarifaUnica(validarDouble(col.texto(11), numeroLinea, "tarifaUnica", linea, errores, false));
+        campos.setDias(validarInteger(col.texto(7), numeroLinea, "dias", linea, errores, false));
+
+        return new ResultadoValidacion(errores.isEmpty(), errores);
+    }
+
+    private static boolean esVacioONulo(String valor) {
+        return ParserCampos.estaVacio(valor);
+    }
+
+    private static LocalDate validarFecha(String fechaStr, int numeroLinea, String nombreCampo, String lineaOriginal, List<ErrorDetallado> errores) {
+        if (esVacioONulo(fechaStr)) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.FECHA_INVALIDA,
+                    String.format("Fecha %s es obligatoria", nombreCampo), lineaOriginal, nombreCampo, fechaStr));
+            return null;
+        }
+
+        if (fechaStr.length() < 8) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.FECHA_INVALIDA,
+                    String.format("Formato de fecha inválido para %s: %s", nombreCampo, fechaStr),
+                    lineaOriginal, nombreCampo, fechaStr));
+            return null;
+        }
+
+        LocalDate fecha = ParserCampos.fecha(fechaStr);
+        if (fecha == null) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.FECHA_INVALIDA,
+                    String.format("Fecha inválida para %s: %s - se esperaba una fecha existente en formato yyyyMMdd",
+                            nombreCampo, fechaStr),
+                    lineaOriginal, nombreCampo, fechaStr));
+        }
+        return fecha;
+    }
+
+    private static double validarDouble(String valorStr, int numeroLinea, String nombreCampo, String lineaOriginal,
+                                 List<ErrorDetallado> errores, boolean esObligatorio) {
+        if (esVacioONulo(valorStr)) {
+            if (esObligatorio) {
+                errores.add(new ErrorDetallado(numeroLinea, TipoError.DATOS_OBLIGATORIOS_FALTANTES,
+                        String.format("Campo %s es obligatorio", nombreCampo), lineaOriginal, nombreCampo, valorStr));
+            }
+            return 0.0;
+        }
+
+        Double valor = ParserCampos.decimal(valorStr);
+        if (valor == null) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.VALOR_NUMERICO_INVALIDO,
+                    String.format("Valor numérico inválido para %s: %s", nombreCampo, valorStr),
+                    lineaOriginal, nombreCampo, valorStr));
+            return 0.0;
+        }
+        if (esObligatorio && valor <= 0) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.VALOR_NUMERICO_INVALIDO,
+                    String.format("Campo %s debe ser mayor que 0", nombreCampo), lineaOriginal, nombreCampo, valorStr));
+        }
+        return valor;
+    }
+
+    private static int validarInteger(String valorStr, int numeroLinea, String nombreCampo, String lineaOriginal,
+                                   List<ErrorDetallado> errores, boolean esObligatorio) {
+        if (esVacioONulo(valorStr)) {
+            if (esObligatorio) {
+                errores.add(new ErrorDetallado(numeroLinea, TipoError.DATOS_OBLIGATORIOS_FALTANTES,
+                        String.format("Campo %s es obligatorio", nombreCampo), lineaOriginal, nombreCampo, valorStr));
+            }
+            return 0;
+        }
+
+        Integer valor = ParserCampos.entero(valorStr);
+        if (valor == null) {
+            errores.add(new ErrorDetallado(numeroLinea, TipoError.VALOR_NUMERICO_INVALIDO,
+                    String.format("Valor entero inválido para %s: %s", nombreCampo, valorStr),
+                    lineaOriginal, nombreCampo, valorStr));
+            return 0;
+        }
+        return valor;
+    }
+}
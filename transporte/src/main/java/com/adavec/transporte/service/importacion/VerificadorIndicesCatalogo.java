@@ -0,0 +1,102 @@
+package com.adavec.transporte.service.importacion;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Comprueba al arrancar que modelo.Nombre y distribuidor.ClaveDistribuidora tengan su índice único.
+ * La importación crea los catálogos faltantes con INSERT IGNORE y solo es segura con esos índices;
+ * ddl-auto=update no los crea si ya hay repetidos, solo lo advierte y continúa. Si falta alguno
+ * la aplicación no arranca: los repetidos se unen con {@code db/catalogos-unicos.sql}.
+ */
+@Component
+public class VerificadorIndicesCatalogo implements ApplicationRunner {
+
+    private static final String SCRIPT = "db/catalogos-unicos.sql";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean habilitado;
+
+    public VerificadorIndicesCatalogo(JdbcTemplate jdbcTemplate,
+                                      @Value("${app.catalogos.verificar-indices-unicos:true}") boolean habilitado) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.habilitado = habilitado;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (habilitado) {
+            verificar();
+        }
+    }
+
+    /**
+     * Falla con la lista de índices que faltan y cuántos valores repetidos hay en cada columna
+     */
+    public void verificar() {
+        List<String> faltantes = new ArrayList<>();
+        revisar("modelo", "Nombre", "uk_modelo_nombre", faltantes);
+        revisar("distribuidor", "ClaveDistribuidora", "uk_distribuidor_clave", faltantes);
+        if (!faltantes.isEmpty()) {
+            String mensaje = "Faltan índices únicos en los catálogos: " + String.join("; ", faltantes) +
+                    ". Una los registros repetidos y cree los índices con " + SCRIPT;
+            System.err.println("❌ " + mensaje);
+            throw new IllegalStateException(mensaje);
+        }
+        System.out.println("✅ Índices únicos de modelo y distribuidor verificados");
+    }
+
+    private void revisar(String tabla, String columna, String indice, List<String> faltantes) {
+        if (tieneIndiceUnico(tabla, columna)) {
+            return;
+        }
+        Integer repetidos = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT " + columna + " FROM " + tabla +
+                " GROUP BY " + columna + " HAVING COUNT(*) > 1) r", Integer.class);
+        faltantes.add(indice + " en " + tabla + "." + columna + " (" + repetidos + " valores repetidos)");
+    }
+
+    /**
+     * Busca en los metadatos un índice único formado solo por la columna, con cualquier nombre
+     */
+    private boolean tieneIndiceUnico(String tabla, String columna) {
+        Boolean encontrado = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            DatabaseMetaData metadatos = con.getMetaData();
+            Map<String, List<String>> columnasPorIndice = new HashMap<>();
+            try (ResultSet rs = metadatos.getIndexInfo(con.getCatalog(), con.getSchema(),
+                    identificador(metadatos, tabla), true, false)) {
+                while (rs.next()) {
+                    String nombre = rs.getString("INDEX_NAME");
+                    String columnaIndice = rs.getString("COLUMN_NAME");
+                    if (nombre != null && columnaIndice != null) {
+                        columnasPorIndice.computeIfAbsent(nombre, n -> new ArrayList<>()).add(columnaIndice);
+                    }
+                }
+            }
+            return columnasPorIndice.values().stream()
+                    .anyMatch(columnas -> columnas.size() == 1 && columnas.get(0).equalsIgnoreCase(columna));
+        });
+        return Boolean.TRUE.equals(encontrado);
+    }
+
+    private static String identificador(DatabaseMetaData metadatos, String nombre) throws SQLException {
+        if (metadatos.storesUpperCaseIdentifiers()) {
+            return nombre.toUpperCase();
+        }
+        if (metadatos.storesLowerCaseIdentifiers()) {
+            return nombre.toLowerCase();
+        }
+        return nombre;
+    }
+}
@@ -0,0 +1,38 @@
+-- Une los modelos y distribuidores repetidos en el registro de menor id y crea los indices
+-- unicos uk_modelo_nombre y uk_distribuidor_clave (MySQL).
+-- Ejecutar una sola vez, con la aplicacion detenida, cuando el arranque informe que faltan.
+-- Los valores se comparan con la collation de la columna, igual que el indice.
+
+START TRANSACTION;
+
+-- Modelos: las unidades pasan al modelo conservado
+CREATE TEMPORARY TABLE modelo_repetido AS
+SELECT m.id, c.id_conservado
+FROM modelo m
+JOIN (SELECT Nombre, MIN(id) AS id_conservado FROM modelo GROUP BY Nombre) c ON c.Nombre = m.Nombre
+WHERE m.id <> c.id_conservado;
+
+UPDATE unidad u JOIN modelo_repetido r ON r.id = u.ModeloID SET u.ModeloID = r.id_conservado;
+DELETE m FROM modelo m JOIN modelo_repetido r ON r.id = m.id;
+
+-- Distribuidores: unidades, seguros y ubicaciones pasan al distribuidor conservado
+CREATE TEMPORARY TABLE distribuidor_repetido AS
+SELECT d.id, c.id_conservado
+FROM distribuidor d
+JOIN (SELECT ClaveDistribuidora, MIN(id) AS id_conservado FROM distribuidor GROUP BY ClaveDistribuidora) c
+  ON c.ClaveDistribuidora = d.ClaveDistribuidora
+WHERE d.id <> c.id_conservado;
+
+UPDATE unidad u JOIN distribuidor_repetido r ON r.id = u.DistribuidoraID SET u.DistribuidoraID = r.id_conservado;
+UPDATE seguros s JOIN distribuidor_repetido r ON r.id = s.DistribuidoraID SET s.DistribuidoraID = r.id_conservado;
+UPDATE ubicaciones b JOIN distribuidor_repetido r ON r.id = b.distribuidor_id SET b.distribuidor_id = r.id_conservado;
+DELETE d FROM distribuidor d JOIN distribuidor_repetido r ON r.id = d.id;
+
+COMMIT;
+
+DROP TEMPORARY TABLE modelo_repetido;
+DROP TEMPORARY TABLE distribuidor_repetido;
+
+-- Si alguno de los indices ya existe, su sentencia falla y se puede omitir
+ALTER TABLE modelo ADD CONSTRAINT uk_modelo_nombre UNIQUE (Nombre);
+ALTER TABLE distribuidor ADD CONSTRAINT uk_distribuidor_clave UNIQUE (ClaveDistribuidora);
@@ -0,0 +1,134 @@
+package com.adavec.transporte.service;
+
+import com.adavec.transporte.model.ConceptoCobro;
+import com.adavec.transporte.model.TarifaConcepto;
+import com.adavec.transporte.repository.TarifaConceptoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class IndiceTarifasTest {
+
+    private TarifaConceptoRepository repositorio;
+    private IndiceTarifas indice;
+    private ConceptoCobro seguro;
+
+    @BeforeEach
+    void preparar() {
+        repositorio = mock(TarifaConceptoRepository.class);
+        indice = new IndiceTarifas(repositorio, 10);
+        seguro = concepto(1, "Seguro Básico");
+    }
+
+    @Test
+    void vigenteEsLaDeInicioMasRecienteQueCubreLaFecha() {
+        when(repositorio.findActivasConConcepto()).thenReturn(List.of(
+                tarifa(12, seguro, 3.5, "2024-07-01", null),
+                tarifa(10, seguro, 3.0, "2024-01-01", "2024-06-30"),
+                tarifa(11, seguro, 3.24, "2024-04-01", null)));
+
+        assertThat(valor("Seguro Básico", "2023-12-31")).isNull();
+        assertThat(valor("Seguro Básico", "2024-01-01")).isEqualTo(3.0);
+        assertThat(valor("Seguro Básico", "2024-03-31")).isEqualTo(3.0);
+        assertThat(valor("Seguro Básico", "2024-04-01")).isEqualTo(3.24);
+        assertThat(valor("Seguro Básico", "2024-06-30")).isEqualTo(3.24);
+        assertThat(valor("Seguro Básico", "2025-01-01")).isEqualTo(3.5);
+    }
+
+    @Test
+    void descartaPeriodosSolapadosQueYaTerminaron() {
+        when(repositorio.findActivasConConcepto()).thenReturn(List.of(
+                tarifa(1, seguro, 3.0, "2024-01-01", null),
+                tarifa(2, seguro, 4.0, "2024-03-01", "2024-03-31")));
+
+        assertThat(valor("Seguro Básico", "2024-03-31")).isEqualTo(4.0);
+        // El periodo de marzo terminó: vuelve a aplicar el abierto desde enero
+        assertThat(valor("Seguro Básico", "2024-04-01")).isEqualTo(3.0);
+    }
+
+    @Test
+    void conMismoInicioGanaElDeMayorId() {
+        when(repositorio.findActivasConConcepto()).thenReturn(List.of(
+                tarifa(8, seguro, 2.0, "2024-01-01", null),
+                tarifa(5, seguro, 1.0, "2024-01-01", null)));
+
+        assertThat(valor("Seguro Básico", "2024-02-01")).isEqualTo(2.0);
+    }
+
+    @Test
+    void nombreSinDistinguirMayusculasNiEspaciosFinales() {
+        when(repositorio.findActivasConConcepto()).thenReturn(List.of(tarifa(1, seguro, 3.0, "2024-01-01", null)));
+
+        assertThat(valor("SEGURO BÁSICO  ", "2024-02-01")).isEqualTo(3.0);
+        assertThat(valor("Otro concepto", "2024-02-01")).isNull();
+        assertThat(indice.vigente(null, LocalDate.now())).isEmpty();
+        assertThat(indice.vigente("Seguro Básico", null)).isEmpty();
+    }
+
+    @Test
+    void devuelveCopiasQueNoAlteranElIndice() {
+        when(repositorio.findActivasConConcepto()).thenReturn(List.of(tarifa(1, seguro, 3.0, "2024-01-01", null)));
+
+        TarifaConcepto primera = indice.vigente("Seguro Básico", LocalDate.parse("2024-02-01")).orElseThrow();
+        primera.setValor(99.0);
+        primera.getConcepto().setNombre("Modificado");
+
+        TarifaConcepto segunda = indice.vigente("Seguro Básico", LocalDate.parse("2024-02-01")).orElseThrow();
+        assertThat(segunda.getValor()).isEqualTo(3.0);
+        assertThat(segunda.getConcepto().getNombre()).isEqualTo("Seguro Básico");
+        assertThat(segunda.getConcepto().getId()).isEqualTo(1);
+    }
+
+    @Test
+    void cargaUnaVezHastaQueSeInvalida() {
+        when(repositorio.findActivasConConcepto())
+                .thenReturn(List.of(tarifa(1, seguro, 3.0, "2024-01-01", null)))
+                .thenReturn(List.of(tarifa(2, seguro, 5.0, "2024-01-01", null)));
+
+        assertThat(valor("Seguro Básico", "2024-02-01")).isEqualTo(3.0);
+        assertThat(valor("Seguro Básico", "2024-02-01")).isEqualTo(3.0);
+        verify(repositorio, times(1)).findActivasConConcepto();
+
+        indice.invalidar();
+        assertThat(valor("Seguro Básico", "2024-02-01")).isEqualTo(5.0);
+        verify(repositorio, times(2)).findActivasConConcepto();
+    }
+
+    @Test
+    void sinVigenciaRecargaEnCadaConsulta() {
+        indice = new IndiceTarifas(repositorio, 0);
+        when(repositorio.findActivasConConcepto()).thenReturn(List.of(tarifa(1, seguro, 3.0, "2024-01-01", null)));
+
+        valor("Seguro Básico", "2024-02-01");
+        valor("Seguro Básico", "2024-02-01");
+        verify(repositorio, times(2)).findActivasConConcepto();
+    }
+
+    private Double valor(String concepto, String fecha) {
+        return indice.vigente(concepto, LocalDate.parse(fecha)).map(TarifaConcepto::getValor).orElse(null);
+    }
+
+    private static ConceptoCobro concepto(int id, String nombre) {
+        ConceptoCobro concepto = new ConceptoCobro();
+        concepto.setId(id);
+        concepto.setNombre(nombre);
+        concepto.setTipoCalculo(ConceptoCobro.TipoCalculo.PORCENTAJE);
+        return concepto;
+    }
+
+    private static TarifaConcepto tarifa(int id, ConceptoCobro concepto, double valor, String inicio, String fin) {
+        TarifaConcepto tarifa = new TarifaConcepto();
+        tarifa.setId(id);
+        tarifa.setConcepto(concepto);
+        tarifa.setValor(valor);
+        tarifa.setFechaInicio(LocalDate.parse(inicio));
+        tarifa.setFechaFin(fin != null ? LocalDate.parse(fin) : null);
+        tarifa.setActivo(true);
+        return tarifa;
+    }
+}
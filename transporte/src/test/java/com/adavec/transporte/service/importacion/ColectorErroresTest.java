@@ -0,0 +1,91 @@
+package com.adavec.transporte.service.importacion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColectorErroresTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void guardaSoloLasPrimerasMuestrasDeCadaTipo() throws IOException {
+        Path archivo = directorio.resolve("errores/importacion.ndjson.gz");
+        try (ColectorErrores colector = new ColectorErrores("imp-1", archivo, 2, objectMapper)) {
+            for (int linea = 10; linea >= 6; linea--) {
+                colector.agregar(new ErrorDetallado(linea, TipoError.DUPLICADO, "VIN repetido", "linea " + linea));
+            }
+            colector.agregar(new ErrorDetallado(1, TipoError.FECHA_INVALIDA, "Fecha inválida", "linea 1"));
+
+            assertThat(colector.getTotal()).isEqualTo(6);
+            assertThat(colector.contarPorTipo()).containsExactlyInAnyOrderEntriesOf(
+                    Map.of(TipoError.DUPLICADO, 5, TipoError.FECHA_INVALIDA, 1));
+            assertThat(colector.estaTruncado()).isTrue();
+            // Las muestras son las primeras recibidas de cada tipo, ordenadas por línea
+            assertThat(colector.getMuestras()).extracting(ErrorDetallado::getNumeroLinea).containsExactly(1, 9, 10);
+        }
+
+        // El archivo tiene todos los errores en el orden en que llegaron
+        List<String> lineas = leerGzip(archivo);
+        assertThat(lineas).hasSize(6);
+        assertThat(objectMapper.readTree(lineas.get(0)).get("numeroLinea").asInt()).isEqualTo(10);
+        assertThat(objectMapper.readTree(lineas.get(5)).get("tipoError").asText()).isEqualTo("FECHA_INVALIDA");
+    }
+
+    @Test
+    void sinExcederLasMuestrasNoEstaTruncado() {
+        Path archivo = directorio.resolve("pocos.ndjson.gz");
+        try (ColectorErrores colector = new ColectorErrores("imp-2", archivo, 3, objectMapper)) {
+            colector.agregar(new ErrorDetallado(1, TipoError.VIN_VACIO, "VIN vacío", ""));
+            colector.agregar(new ErrorDetallado(2, TipoError.VIN_VACIO, "VIN vacío", ""));
+
+            assertThat(colector.estaTruncado()).isFalse();
+            assertThat(colector.tieneArchivo()).isTrue();
+        }
+    }
+
+    @Test
+    void sinErroresNoCreaArchivo() {
+        Path archivo = directorio.resolve("vacio.ndjson.gz");
+        ColectorErrores colector = new ColectorErrores("imp-3", archivo, 5, objectMapper);
+        colector.close();
+
+        assertThat(colector.getTotal()).isZero();
+        assertThat(colector.tieneArchivo()).isFalse();
+        assertThat(Files.exists(archivo)).isFalse();
+    }
+
+    @Test
+    void despuesDeCerrarSigueContandoSinEscribir() throws IOException {
+        Path archivo = directorio.resolve("cerrado.ndjson.gz");
+        ColectorErrores colector = new ColectorErrores("imp-4", archivo, 5, objectMapper);
+        colector.agregar(new ErrorDetallado(1, TipoError.ERROR_DESGLOSE, "Sin conceptos", ""));
+        colector.close();
+        colector.agregar(new ErrorDetallado(2, TipoError.ERROR_DESGLOSE, "Sin conceptos", ""));
+
+        assertThat(colector.getTotal()).isEqualTo(2);
+        assertThat(leerGzip(archivo)).hasSize(1);
+    }
+
+    private static List<String> leerGzip(Path archivo) throws IOException {
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(archivo)), StandardCharsets.UTF_8))) {
+            return lector.lines().toList();
+        }
+    }
+}
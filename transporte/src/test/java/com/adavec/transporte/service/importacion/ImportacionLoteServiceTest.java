@@ -0,0 +1,164 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.dto.DatosImportacion;
+import com.adavec.transporte.dto.ResultadoDesglose;
+import com.adavec.transporte.model.CobroDetalle;
+import com.adavec.transporte.model.ConceptoCobro;
+import com.adavec.transporte.service.CatalogoConceptosService;
+import com.adavec.transporte.service.DesgloseCobroService;
+import com.adavec.transporte.service.ResumenMensualService;
+import com.adavec.transporte.service.TarifaConceptoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Modo actualización sobre H2 en modo MySQL: una unidad que ya existe solo se reescribe si
+ * algo cambió, y los cargos manuales de la unidad no cuentan ni se borran
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transporte;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ImportacionLoteService.class, ImportacionJdbcWriter.class, CatalogoImportacionService.class})
+class ImportacionLoteServiceTest {
+
+    private static final int CONCEPTO_ID = 1;
+
+    @Autowired
+    private ImportacionLoteService importacionLoteService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private DesgloseCobroService desgloseCobroService;
+    @MockitoBean
+    private CatalogoConceptosService catalogoConceptos;
+    @MockitoBean
+    private TarifaConceptoService tarifaConceptoService;
+    @MockitoBean
+    private ResumenMensualService resumenMensualService;
+
+    @BeforeEach
+    void preparar() {
+        jdbcTemplate.update("INSERT INTO concepto_cobro (id, nombre, aplica_iva, activo, tipo_calculo) " +
+                "VALUES (?, 'Cuota de Asociación', FALSE, TRUE, 'MONTO_FIJO')", CONCEPTO_ID);
+        jdbcTemplate.update("INSERT INTO modelo (Nombre, Uso) VALUES ('M1', 'CARGA')");
+        jdbcTemplate.update("INSERT INTO distribuidor (ClaveDistribuidora, NombreDistribuidora) VALUES ('D01', 'Distribuidor D01')");
+
+        // El desglose es un solo cobro con la cuota de asociación de la línea
+        when(desgloseCobroService.calcularDesglose(any())).thenAnswer(invocacion -> {
+            DatosImportacion datos = invocacion.getArgument(0);
+            ConceptoCobro concepto = new ConceptoCobro();
+            concepto.setId(CONCEPTO_ID);
+            CobroDetalle detalle = new CobroDetalle();
+            detalle.setUnidad(datos.getUnidad());
+            detalle.setConcepto(concepto);
+            detalle.setMontoAplicado(datos.getCuotaAsociacion());
+            detalle.setArchivoOrigen(datos.getArchivoOrigen());
+
+            ResultadoDesglose resultado = new ResultadoDesglose();
+            resultado.setExitoso(true);
+            resultado.setDetalles(List.of(detalle));
+            resultado.setTotalDesglosado(datos.getCuotaAsociacion());
+            return resultado;
+        });
+    }
+
+    @Test
+    void lineaIgualALoGuardadoNoSeReescribe() {
+        importar("alta.txt", false, linea("VIN0000001", 17883, 1200));
+        List<Integer> detalleOriginal = idsDelDesglose(idDe("VIN0000001"));
+
+        EstadisticasImportacion resultado = importar("reenvio.txt", true, linea("VIN0000001", 17883, 1200));
+
+        assertThat(resultado.getSinCambios()).isEqualTo(1);
+        assertThat(resultado.getActualizados()).isZero();
+        assertThat(idsDelDesglose(idDe("VIN0000001"))).isEqualTo(detalleOriginal);
+    }
+
+    @Test
+    void cargoManualNoCuentaComoCambioNiSeBorra() {
+        importar("alta.txt", false, linea("VIN0000002", 17883, 1200));
+        int unidad = idDe("VIN0000002");
+        jdbcTemplate.update("INSERT INTO cobro_detalle (unidad_id, concepto_id, monto_aplicado, archivo_origen) " +
+                "VALUES (?, ?, 500, 'MANUAL_1718000000000')", unidad, CONCEPTO_ID);
+
+        // Sin cambios en la línea: el cargo manual no hace que el desglose parezca distinto
+        EstadisticasImportacion igual = importar("reenvio.txt", true, linea("VIN0000002", 17883, 1200));
+        assertThat(igual.getSinCambios()).isEqualTo(1);
+        assertThat(archivosDelDesglose(unidad)).containsExactlyInAnyOrder("alta.txt", "MANUAL_1718000000000");
+
+        // Con cambios se reemplaza el desglose del archivo y el cargo manual sigue
+        EstadisticasImportacion cambio = importar("correccion.txt", true, linea("VIN0000002", 18000, 1200));
+        assertThat(cambio.getActualizados()).isEqualTo(1);
+        assertThat(archivosDelDesglose(unidad)).containsExactlyInAnyOrder("correccion.txt", "MANUAL_1718000000000");
+        assertThat(jdbcTemplate.queryForObject("SELECT monto_aplicado FROM cobro_detalle WHERE unidad_id = ? " +
+                "AND archivo_origen = 'MANUAL_1718000000000'", Double.class, unidad)).isEqualTo(500.0);
+    }
+
+    @Test
+    void seguroCambiadoActualizaSoloElQueSeComparo() {
+        importar("alta.txt", false, linea("VIN0000003", 17883, 1200));
+        int unidad = idDe("VIN0000003");
+        jdbcTemplate.update("INSERT INTO seguros (UnidadID, Factura, ValorSeguro) VALUES (?, 'F-SEGUNDO', 999)", unidad);
+
+        EstadisticasImportacion resultado = importar("correccion.txt", true, linea("VIN0000003", 17883, 1500));
+
+        assertThat(resultado.getActualizados()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("SELECT ValorSeguro FROM seguros WHERE UnidadID = ? ORDER BY id",
+                Double.class, unidad)).containsExactly(1500.0, 999.0);
+        assertThat(jdbcTemplate.queryForObject("SELECT unidad.archivo_origen FROM unidad WHERE id = ?",
+                String.class, unidad)).isEqualTo("alta.txt");
+    }
+
+    private EstadisticasImportacion importar(String archivo, boolean actualizar, String... lineas) {
+        List<LineaArchivo> lote = new ArrayList<>();
+        long fin = 0;
+        for (int i = 0; i < lineas.length; i++) {
+            fin += lineas[i].length() + 1;
+            lote.add(new LineaArchivo(i + 1, lineas[i], fin));
+        }
+        EstadisticasImportacion estadisticas = importacionLoteService.procesarLote(lote,
+                new ContextoImportacion(archivo, actualizar), 0);
+        assertThat(estadisticas.getErrores()).isEmpty();
+        return estadisticas;
+    }
+
+    private static String linea(String vin, double cuotaAsociacion, double valorSeguro) {
+        return String.join("|", "D01", "F-" + vin, "M1", "X", vin, "20240115", "20240201", "17",
+                "350000", String.valueOf(cuotaAsociacion), String.valueOf(valorSeguro), "26564", "0");
+    }
+
+    private int idDe(String vin) {
+        return jdbcTemplate.queryForObject("SELECT id FROM unidad WHERE NoSerie = ?", Integer.class, vin);
+    }
+
+    private List<Integer> idsDelDesglose(int unidadId) {
+        return jdbcTemplate.queryForList("SELECT id FROM cobro_detalle WHERE unidad_id = ? ORDER BY id",
+                Integer.class, unidadId);
+    }
+
+    private List<String> archivosDelDesglose(int unidadId) {
+        return jdbcTemplate.queryForList("SELECT archivo_origen FROM cobro_detalle WHERE unidad_id = ?",
+                String.class, unidadId);
+    }
+}
@@ -0,0 +1,162 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.model.ConceptoCobro;
+import com.adavec.transporte.service.CatalogoConceptosService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reglas de desglose por SQL de la importación masiva sobre H2 en modo MySQL.
+ * La carga con LOAD DATA solo existe en MySQL: la tabla temporal se llena aquí directamente
+ * y todo se deshace al terminar.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transporte;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ImportacionMasivaServiceTest {
+
+    private static final List<String> CONCEPTOS = List.of("SEGURO_BROKER", "SEGURO_ADAVEC", "TARIFA_UNICA",
+            "ADAVEC_ASOCIACION", "ADAVEC_CONVENCION", "ADAVEC_AMDA", "ASOBENS_PUBLICIDAD", "ASOBENS_CAPACITACION",
+            "FONDO_ESTRELLA");
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void desgloseCompletoDe17883YTarifaUnicaConIva() throws SQLException {
+        Map<Integer, Map<String, Double>> cobros = aplicarReglas(
+                fila(1, "OK", 100000, 17883, 26564, 0),
+                // Dentro de la tolerancia de un centavo sigue siendo el desglose completo
+                fila(2, "OK", 100000, 17883.004, 26564.005, 0));
+
+        Map<String, Double> esperado = Map.of("SEGURO_BROKER", 1340.0, "SEGURO_ADAVEC", 3240.0,
+                "TARIFA_UNICA", 22900.0, "ADAVEC_ASOCIACION", 1200.0, "ADAVEC_CONVENCION", 1500.0,
+                "ADAVEC_AMDA", 103.0, "ASOBENS_PUBLICIDAD", 8000.0, "ASOBENS_CAPACITACION", 5000.0);
+        assertThat(cobros.get(1)).containsExactlyInAnyOrderEntriesOf(esperado);
+        assertThat(cobros.get(2)).containsExactlyInAnyOrderEntriesOf(esperado);
+    }
+
+    @Test
+    void cuotaNormalTarifaSinIvaYFondoEstrella() throws SQLException {
+        Map<Integer, Map<String, Double>> cobros = aplicarReglas(
+                fila(1, "OK", 200000, 15000, 20000, 500),
+                fila(2, "OK", 200000, 17883.02, 0, 0));
+
+        assertThat(cobros.get(1)).containsExactlyInAnyOrderEntriesOf(Map.of("SEGURO_BROKER", 2680.0,
+                "SEGURO_ADAVEC", 6480.0, "TARIFA_UNICA", 20000.0, "ADAVEC_ASOCIACION", 15000.0, "FONDO_ESTRELLA", 500.0));
+        // Fuera de la tolerancia la cuota se registra tal cual, sin desglose
+        assertThat(cobros.get(2)).containsOnly(entry("SEGURO_BROKER", 2680.0), entry("SEGURO_ADAVEC", 6480.0),
+                entry("ADAVEC_ASOCIACION", 17883.02));
+    }
+
+    @Test
+    void sinValoresNiLineasDescartadasNoHayCobros() throws SQLException {
+        Map<Integer, Map<String, Double>> cobros = aplicarReglas(
+                fila(1, "OK", 0, 0, 0, 0),
+                fila(2, "DUPLICADO", 100000, 17883, 26564, 500),
+                fila(3, "REPETIDO", 100000, 15000, 20000, 500));
+
+        assertThat(cobros).isEmpty();
+    }
+
+    private record Fila(int unidadId, String estado, double valorUnidad, double cuotaAsociacion,
+                        double tarifaUnica, double fondoEstrella) {
+    }
+
+    private static Fila fila(int unidadId, String estado, double valorUnidad, double cuotaAsociacion,
+                             double tarifaUnica, double fondoEstrella) {
+        return new Fila(unidadId, estado, valorUnidad, cuotaAsociacion, tarifaUnica, fondoEstrella);
+    }
+
+    /**
+     * Llena la tabla temporal, aplica las reglas y devuelve los montos por unidad y concepto
+     */
+    private Map<Integer, Map<String, Double>> aplicarReglas(Fila... filas) throws SQLException {
+        CatalogoConceptosService catalogo = mock(CatalogoConceptosService.class);
+        when(catalogo.porNombre(anyString())).thenAnswer(invocacion -> {
+            int indice = CONCEPTOS.indexOf(invocacion.<String>getArgument(0));
+            if (indice < 0) {
+                return Optional.empty();
+            }
+            ConceptoCobro concepto = new ConceptoCobro();
+            concepto.setId(indice + 1);
+            return Optional.of(concepto);
+        });
+        ImportacionMasivaService servicio = new ImportacionMasivaService(null, catalogo, null, null, null);
+
+        try (Connection con = dataSource.getConnection()) {
+            try (Statement statement = con.createStatement()) {
+                statement.execute("CREATE LOCAL TEMPORARY TABLE importacion_staging (unidad_id INT, estado VARCHAR(20), " +
+                        "valor_unidad DOUBLE, cuota_asociacion DOUBLE, tarifa_unica DOUBLE, fondo_estrella DOUBLE)");
+            }
+            con.setAutoCommit(false);
+            try {
+                for (int i = 0; i < CONCEPTOS.size(); i++) {
+                    ejecutar(con, "INSERT INTO concepto_cobro (id, nombre, aplica_iva, activo, tipo_calculo) " +
+                            "VALUES (?, ?, FALSE, TRUE, 'MONTO_FIJO')", i + 1, CONCEPTOS.get(i));
+                }
+                for (Fila fila : filas) {
+                    ejecutar(con, "INSERT INTO unidad (id, NoSerie) VALUES (?, ?)", fila.unidadId(), "VIN" + fila.unidadId());
+                    ejecutar(con, "INSERT INTO importacion_staging VALUES (?, ?, ?, ?, ?, ?)", fila.unidadId(), fila.estado(),
+                            fila.valorUnidad(), fila.cuotaAsociacion(), fila.tarifaUnica(), fila.fondoEstrella());
+                }
+
+                int insertados = servicio.insertarCobros(con, "masiva.txt");
+
+                Map<Integer, Map<String, Double>> cobros = new TreeMap<>();
+                try (PreparedStatement ps = con.prepareStatement("SELECT unidad_id, concepto_id, monto_aplicado " +
+                        "FROM cobro_detalle WHERE archivo_origen = 'masiva.txt'");
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Double anterior = cobros.computeIfAbsent(rs.getInt(1), id -> new HashMap<>())
+                                .put(CONCEPTOS.get(rs.getInt(2) - 1), Math.round(rs.getDouble(3) * 100) / 100.0);
+                        assertThat(anterior).as("concepto repetido").isNull();
+                    }
+                }
+                assertThat(cobros.values().stream().mapToInt(Map::size).sum()).isEqualTo(insertados);
+                return cobros;
+            } finally {
+                con.rollback();
+                con.setAutoCommit(true);
+                try (Statement statement = con.createStatement()) {
+                    statement.execute("DROP TABLE importacion_staging");
+                }
+            }
+        }
+    }
+
+    private static void ejecutar(Connection con, String sql, Object... parametros) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.length; i++) {
+                ps.setObject(i + 1, parametros[i]);
+            }
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.adavec.transporte.service.importacion;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LectorLineasTest {
+
+    @Test
+    void mismosFinesDeLineaQueBufferedReader() throws IOException {
+        String texto = "uno\ndos\r\ntres\rcuatro\n\nseis\r\n\r\nocho";
+        assertThat(leerTodas(bytes(texto), 0, Integer.MAX_VALUE)).isEqualTo(conBufferedReader(texto));
+    }
+
+    @Test
+    void posicionCuentaBytesConFinDeLinea() throws IOException {
+        byte[] contenido = bytes("ab\r\nñ\nc");
+        try (LectorLineas lector = new LectorLineas(new ByteArrayInputStream(contenido), 0)) {
+            assertThat(lector.leerLinea()).isEqualTo("ab");
+            assertThat(lector.getPosicion()).isEqualTo(4);
+            assertThat(lector.leerLinea()).isEqualTo("ñ");
+            assertThat(lector.getPosicion()).isEqualTo(4 + bytes("ñ").length + 1);
+            assertThat(lector.leerLinea()).isEqualTo("c");
+            assertThat(lector.getPosicion()).isEqualTo(contenido.length);
+            assertThat(lector.leerLinea()).isNull();
+        }
+    }
+
+    @Test
+    void leeIgualEnTrozosPequenos() throws IOException {
+        // \r\n partido entre dos lecturas y líneas más largas que cualquier trozo
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            texto.append("linea-").append(i).append("-".repeat(i % 37)).append(i % 3 == 0 ? "\r\n" : i % 3 == 1 ? "\n" : "\r");
+        }
+        String contenido = texto.toString();
+        List<String> esperadas = conBufferedReader(contenido);
+        for (int trozo : new int[]{1, 2, 3, 7, 64}) {
+            assertThat(leerTodas(bytes(contenido), 0, trozo)).as("trozo " + trozo).isEqualTo(esperadas);
+        }
+    }
+
+    @Test
+    void lineaMasLargaQueElBuffer() throws IOException {
+        String larga = "x".repeat(200 * 1024);
+        assertThat(leerTodas(bytes(larga + "\nfin"), 0, Integer.MAX_VALUE)).containsExactly(larga, "fin");
+    }
+
+    @Test
+    void reanudaDesdeElByteDelPuntoDeControl() throws IOException {
+        byte[] contenido = bytes("uno\r\ndós\ntres\rcuatro\n");
+
+        long puntoControl;
+        try (LectorLineas lector = new LectorLineas(new TrozosInputStream(contenido, 3), 0)) {
+            lector.leerLinea();
+            lector.leerLinea();
+            puntoControl = lector.getPosicion();
+        }
+
+        InputStream resto = new ByteArrayInputStream(contenido);
+        assertThat(resto.skip(puntoControl)).isEqualTo(puntoControl);
+        try (LectorLineas lector = new LectorLineas(resto, puntoControl)) {
+            assertThat(lector.leerLinea()).isEqualTo("tres");
+            assertThat(lector.leerLinea()).isEqualTo("cuatro");
+            assertThat(lector.getPosicion()).isEqualTo(contenido.length);
+            assertThat(lector.leerLinea()).isNull();
+        }
+    }
+
+    private static List<String> leerTodas(byte[] contenido, long inicial, int trozo) throws IOException {
+        List<String> lineas = new ArrayList<>();
+        try (LectorLineas lector = new LectorLineas(new TrozosInputStream(contenido, trozo), inicial)) {
+            String linea;
+            while ((linea = lector.leerLinea()) != null) {
+                lineas.add(linea);
+            }
+            assertThat(lector.getPosicion()).isEqualTo(contenido.length);
+        }
+        return lineas;
+    }
+
+    private static List<String> conBufferedReader(String texto) throws IOException {
+        return new BufferedReader(new StringReader(texto)).lines().toList();
+    }
+
+    private static byte[] bytes(String texto) {
+        return texto.getBytes(Charset.defaultCharset());
+    }
+
+    /**
+     * Entrega como máximo {@code trozo} bytes por lectura, como un stream de red o descompresión
+     */
+    private static final class TrozosInputStream extends InputStream {
+
+        private final byte[] contenido;
+        private final int trozo;
+        private int posicion;
+
+        TrozosInputStream(byte[] contenido, int trozo) {
+            this.contenido = contenido;
+            this.trozo = trozo;
+        }
+
+        @Override
+        public int read() {
+            return posicion < contenido.length ? contenido[posicion++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (posicion >= contenido.length) {
+                return -1;
+            }
+            int cantidad = Math.min(Math.min(len, trozo), contenido.length - posicion);
+            System.arraycopy(contenido, posicion, b, off, cantidad);
+            posicion += cantidad;
+            return cantidad;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.adavec.transporte.service.importacion;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el recorrido anterior de una línea del TXT (split("\\|") en la validación y otra vez
+ * al construir las entidades) contra una sola carga de {@link LineaTxt} con las mismas lecturas.
+ * No corre con los tests; se ejecuta con {@code main} desde el classpath de test.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineaTxtBenchmark {
+
+    private static final int MIN_COLUMNAS = 12;
+
+    private String[] lineas;
+    private final LineaTxt col = new LineaTxt();
+
+    @Setup
+    public void preparar() {
+        lineas = new String[256];
+        for (int i = 0; i < lineas.length; i++) {
+            lineas[i] = "D" + (i % 40) + "|F-" + (100000 + i) + "|MODELO " + (i % 25) + "|X|3N1AB7AP" + (10000000 + i)
+                    + "|20240115|20240201|17|" + (350000 + i) + ".00|17883|1200.50|26564|0|" + (i % 7) + "||";
+        }
+    }
+
+    @Benchmark
+    public void splitDosVeces(Blackhole bh) {
+        for (String linea : lineas) {
+            // Validación
+            String[] validacion = linea.split("\\|");
+            if (validacion.length < MIN_COLUMNAS) {
+                continue;
+            }
+            bh.consume(validacion[0].trim().isEmpty());
+            bh.consume(validacion[1].trim().isEmpty());
+            bh.consume(validacion[2].trim().isEmpty());
+            bh.consume(validacion[4].trim().isEmpty());
+            bh.consume(validacion[5].trim().length());
+            bh.consume(validacion[6].trim().length());
+
+            // Construcción de entidades
+            String[] columnas = linea.split("\\|");
+            for (int i = 0; i <= 12 && i < columnas.length; i++) {
+                bh.consume(columnas[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void lineaTxtUnaVez(Blackhole bh) {
+        for (String linea : lineas) {
+            col.cargar(linea);
+            if (col.columnas() < MIN_COLUMNAS) {
+                continue;
+            }
+            bh.consume(col.estaVacia(0));
+            bh.consume(col.estaVacia(1));
+            bh.consume(col.estaVacia(2));
+            bh.consume(col.estaVacia(4));
+            bh.consume(col.longitudRecortada(5));
+            bh.consume(col.longitudRecortada(6));
+
+            for (int i = 0; i <= 12 && i < col.columnas(); i++) {
+                bh.consume(col.texto(i));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LineaTxtBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
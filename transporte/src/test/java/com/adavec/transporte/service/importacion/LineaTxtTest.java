@@ -0,0 +1,82 @@
+package com.adavec.transporte.service.importacion;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LineaTxtTest {
+
+    @Test
+    void columnasIgualQueSplit() {
+        String[] lineas = {"", "abc", "a|b|c", "a|b||", "|a", "||", "a||b", " a | b ", "|", "a|b|c|",
+                "D01|F-1|MODELO|X|VIN123|20240115|20240201|17|350000.00|17883|1200|26564|0||"};
+        LineaTxt col = new LineaTxt();
+        for (String linea : lineas) {
+            String[] esperadas = linea.split("\\|");
+            col.cargar(linea);
+            assertThat(col.columnas()).as(linea).isEqualTo(esperadas.length);
+            for (int i = 0; i < esperadas.length; i++) {
+                assertThat(col.texto(i)).as(linea + " [" + i + "]").isEqualTo(esperadas[i]);
+                assertThat(col.campo(i).toString()).isEqualTo(esperadas[i]);
+            }
+        }
+    }
+
+    @Test
+    void alReutilizarNoQuedanTextosDeLaLineaAnterior() {
+        LineaTxt col = new LineaTxt();
+        col.cargar("uno|dos|tres");
+        assertThat(col.texto(1)).isEqualTo("dos");
+
+        col.cargar("a|b");
+        assertThat(col.columnas()).isEqualTo(2);
+        assertThat(col.texto(1)).isEqualTo("b");
+        assertThat(col.getLinea()).isEqualTo("a|b");
+    }
+
+    @Test
+    void creceConMasDe32Columnas() {
+        StringBuilder linea = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            linea.append(i > 0 ? "|" : "").append("c").append(i);
+        }
+        LineaTxt col = new LineaTxt().cargar(linea.toString());
+        assertThat(col.columnas()).isEqualTo(100);
+        assertThat(col.texto(99)).isEqualTo("c99");
+    }
+
+    @Test
+    void columnasVaciasYRecortadas() {
+        LineaTxt col = new LineaTxt().cargar("  |  x  |");
+        assertThat(col.columnas()).isEqualTo(2);
+        assertThat(col.estaVacia(0)).isTrue();
+        assertThat(col.estaVacia(1)).isFalse();
+        assertThat(col.longitudRecortada(0)).isZero();
+        assertThat(col.longitudRecortada(1)).isEqualTo(1);
+    }
+
+    @Test
+    void campoEsUnaVistaSobreLaLinea() {
+        CharSequence campo = new LineaTxt().cargar("abc|defgh").campo(1);
+        assertThat(campo.length()).isEqualTo(5);
+        assertThat(campo.charAt(0)).isEqualTo('d');
+        assertThat(campo.subSequence(1, 3).toString()).isEqualTo("ef");
+        assertThatThrownBy(() -> campo.charAt(5)).isInstanceOf(StringIndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> campo.subSequence(3, 6)).isInstanceOf(StringIndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void indiceFueraDeRangoIgualQueUnArreglo() {
+        LineaTxt col = new LineaTxt().cargar("a|b");
+        assertThatThrownBy(() -> col.texto(2)).isInstanceOf(ArrayIndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> col.texto(-1)).isInstanceOf(ArrayIndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void lineaNulaNoTieneColumnas() {
+        LineaTxt col = new LineaTxt().cargar(null);
+        assertThat(col.columnas()).isZero();
+        assertThat(col.getLinea()).isNull();
+    }
+}
@@ -0,0 +1,107 @@
+package com.adavec.transporte.service.importacion;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParserCamposTest {
+
+    @Test
+    void estaVacioIgualQueTrim() {
+        assertThat(ParserCampos.estaVacio(null)).isTrue();
+        assertThat(ParserCampos.estaVacio("")).isTrue();
+        assertThat(ParserCampos.estaVacio(" \t ")).isTrue();
+        assertThat(ParserCampos.estaVacio(" x ")).isFalse();
+    }
+
+    @Test
+    void fechaValida() {
+        assertThat(ParserCampos.fecha("20240115")).isEqualTo(LocalDate.of(2024, 1, 15));
+        assertThat(ParserCampos.fecha("20240229")).isEqualTo(LocalDate.of(2024, 2, 29));
+        // Repetida sale de la caché con el mismo valor
+        assertThat(ParserCampos.fecha("20240115")).isEqualTo(LocalDate.of(2024, 1, 15));
+    }
+
+    @Test
+    void fechaInvalidaDevuelveNull() {
+        assertThat(ParserCampos.fecha(null)).isNull();
+        assertThat(ParserCampos.fecha("")).isNull();
+        assertThat(ParserCampos.fecha("2024011")).isNull();
+        assertThat(ParserCampos.fecha("2024011A")).isNull();
+        assertThat(ParserCampos.fecha("20230229")).isNull();
+        assertThat(ParserCampos.fecha("20241301")).isNull();
+        assertThat(ParserCampos.fecha("20240431")).isNull();
+        assertThat(ParserCampos.fecha("20240100")).isNull();
+        assertThat(ParserCampos.fecha("2024-01-15")).isNull();
+    }
+
+    @Test
+    void fechaQueComparteCasillaDeCacheNoSeConfunde() {
+        // Otra fecha válida que cae en la misma posición de la caché (módulo 1024)
+        int base = 20240115;
+        int otra = base + 1024;
+        while (otra % 100 < 1 || otra % 100 > 28 || (otra / 100) % 100 < 1 || (otra / 100) % 100 > 12) {
+            otra += 1024;
+        }
+        LocalDate esperada = LocalDate.of(otra / 10000, (otra / 100) % 100, otra % 100);
+
+        assertThat(ParserCampos.fecha(String.valueOf(base))).isEqualTo(LocalDate.of(2024, 1, 15));
+        assertThat(ParserCampos.fecha(String.valueOf(otra))).isEqualTo(esperada);
+        assertThat(ParserCampos.fecha(String.valueOf(base))).isEqualTo(LocalDate.of(2024, 1, 15));
+    }
+
+    @Test
+    void fechaConZonaHorariaSeDelegaAlFormatoBasico() {
+        assertThat(ParserCampos.fecha("20240115+0100")).isEqualTo(LocalDate.of(2024, 1, 15));
+        assertThat(ParserCampos.fecha("20240115 basura")).isNull();
+    }
+
+    @Test
+    void decimalCoincideConParseDouble() {
+        String[] valores = {"0", "1", "-1", "+2.5", "123.45", " 26564.00 ", "0.1", "0.3", "17883",
+                "1234567.891", "000123.4500", ".5", "5.", "999999999999999", "0.000000000000000000001",
+                "1e3", "-2.5E-2", "1234567890123456789", "9007199254740993", "1.5d", "NaN", "Infinity"};
+        for (String valor : valores) {
+            assertThat(ParserCampos.decimal(valor))
+                    .as(valor)
+                    .isEqualTo(Double.valueOf(valor.trim()));
+        }
+    }
+
+    @Test
+    void decimalInvalidoDevuelveNull() {
+        assertThat(ParserCampos.decimal(null)).isNull();
+        assertThat(ParserCampos.decimal("")).isNull();
+        assertThat(ParserCampos.decimal("   ")).isNull();
+        assertThat(ParserCampos.decimal("-")).isNull();
+        assertThat(ParserCampos.decimal(".")).isNull();
+        assertThat(ParserCampos.decimal("1,5")).isNull();
+        assertThat(ParserCampos.decimal("1.2.3")).isNull();
+        assertThat(ParserCampos.decimal("$100")).isNull();
+        assertThat(ParserCampos.decimal("1e")).isNull();
+    }
+
+    @Test
+    void enteroCoincideConParseInt() {
+        String[] valores = {"0", "7", "-7", "+7", " 30 ", "2147483647", "-2147483648", "0000012"};
+        for (String valor : valores) {
+            assertThat(ParserCampos.entero(valor))
+                    .as(valor)
+                    .isEqualTo(Integer.parseInt(valor.trim()));
+        }
+    }
+
+    @Test
+    void enteroInvalidoOFueraDeRangoDevuelveNull() {
+        assertThat(ParserCampos.entero(null)).isNull();
+        assertThat(ParserCampos.entero("")).isNull();
+        assertThat(ParserCampos.entero("-")).isNull();
+        assertThat(ParserCampos.entero("12a")).isNull();
+        assertThat(ParserCampos.entero("1.5")).isNull();
+        assertThat(ParserCampos.entero("2147483648")).isNull();
+        assertThat(ParserCampos.entero("-2147483649")).isNull();
+        assertThat(ParserCampos.entero("99999999999999999999")).isNull();
+    }
+}
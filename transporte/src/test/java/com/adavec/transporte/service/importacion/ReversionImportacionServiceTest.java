@@ -0,0 +1,240 @@
+package com.adavec.transporte.service.importacion;
+
+import com.adavec.transporte.dto.DatosImportacion;
+import com.adavec.transporte.dto.ResultadoDesglose;
+import com.adavec.transporte.model.CobroDetalle;
+import com.adavec.transporte.model.ConceptoCobro;
+import com.adavec.transporte.model.ImportacionArchivo;
+import com.adavec.transporte.repository.ImportacionArchivoRepository;
+import com.adavec.transporte.service.CatalogoConceptosService;
+import com.adavec.transporte.service.DesgloseCobroService;
+import com.adavec.transporte.service.ResumenMensualService;
+import com.adavec.transporte.service.TarifaConceptoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Importación y reversión sobre H2 en modo MySQL: revertir un archivo solo borra las unidades
+ * que ese archivo creó, nunca las que solo actualizó
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transporte;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({ImportacionLoteService.class, ImportacionJdbcWriter.class, CatalogoImportacionService.class,
+        ImportacionArchivoService.class, ReversionImportacionService.class})
+class ReversionImportacionServiceTest {
+
+    private static final int CONCEPTO_ID = 1;
+
+    @Autowired
+    private ImportacionLoteService importacionLoteService;
+    @Autowired
+    private ReversionImportacionService reversionImportacionService;
+    @Autowired
+    private ImportacionArchivoService importacionArchivoService;
+    @Autowired
+    private ImportacionArchivoRepository importacionArchivoRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoBean
+    private DesgloseCobroService desgloseCobroService;
+    @MockitoBean
+    private CatalogoConceptosService catalogoConceptos;
+    @MockitoBean
+    private TarifaConceptoService tarifaConceptoService;
+    @MockitoBean
+    private ResumenMensualService resumenMensualService;
+    @MockitoBean
+    private ImportacionTxtService importacionTxtService;
+    @MockitoBean
+    private ImportacionTrabajoService importacionTrabajoService;
+
+    private int unidadLegada;
+
+    @BeforeEach
+    void preparar() {
+        jdbcTemplate.update("INSERT INTO concepto_cobro (id, nombre, aplica_iva, activo, tipo_calculo) " +
+                "VALUES (?, 'Cuota de Asociación', FALSE, TRUE, 'MONTO_FIJO')", CONCEPTO_ID);
+        jdbcTemplate.update("INSERT INTO modelo (Nombre, Uso) VALUES ('M1', 'CARGA')");
+        jdbcTemplate.update("INSERT INTO distribuidor (ClaveDistribuidora, NombreDistribuidora) VALUES ('D01', 'Distribuidor D01')");
+        Integer modeloId = jdbcTemplate.queryForObject("SELECT id FROM modelo WHERE Nombre = 'M1'", Integer.class);
+        Integer distribuidorId = jdbcTemplate.queryForObject(
+                "SELECT id FROM distribuidor WHERE ClaveDistribuidora = 'D01'", Integer.class);
+
+        // Unidad anterior al registro de archivo_origen: sin archivo en la unidad ni en su desglose
+        jdbcTemplate.update("INSERT INTO unidad (NoSerie, ModeloID, DistribuidoraID, DebisFecha, Valor_unidad) " +
+                "VALUES ('VINLEGADO01', ?, ?, DATE '2023-05-01', 300000)", modeloId, distribuidorId);
+        unidadLegada = idDe("VINLEGADO01");
+        jdbcTemplate.update("INSERT INTO cobro_detalle (unidad_id, concepto_id, monto_aplicado) VALUES (?, ?, 15000)",
+                unidadLegada, CONCEPTO_ID);
+
+        // El desglose es un solo cobro con la cuota de asociación de la línea
+        when(desgloseCobroService.calcularDesglose(any())).thenAnswer(invocacion -> {
+            DatosImportacion datos = invocacion.getArgument(0);
+            ConceptoCobro concepto = new ConceptoCobro();
+            concepto.setId(CONCEPTO_ID);
+            CobroDetalle detalle = new CobroDetalle();
+            detalle.setUnidad(datos.getUnidad());
+            detalle.setConcepto(concepto);
+            detalle.setMontoAplicado(datos.getCuotaAsociacion());
+            detalle.setArchivoOrigen(datos.getArchivoOrigen());
+
+            ResultadoDesglose resultado = new ResultadoDesglose();
+            resultado.setExitoso(true);
+            resultado.setDetalles(List.of(detalle));
+            resultado.setTotalDesglosado(datos.getCuotaAsociacion());
+            return resultado;
+        });
+    }
+
+    @Test
+    void revertirConservaLasUnidadesQueElArchivoSoloActualizo() {
+        importar("primero.txt", false, linea("VINNUEVO001", 17883));
+        int unidadPrimero = idDe("VINNUEVO001");
+
+        // El segundo archivo reemplaza el desglose de ambas unidades y crea una más
+        EstadisticasImportacion segundo = importar("segundo.txt", true,
+                linea("VINLEGADO01", 20000), linea("VINNUEVO001", 18000), linea("VINNUEVO002", 17883));
+        assertThat(segundo.getImportados()).isEqualTo(1);
+        assertThat(segundo.getActualizados()).isEqualTo(2);
+        assertThat(archivosDelDesglose(unidadLegada)).containsExactly("segundo.txt");
+
+        Map<String, Object> resultado = reversionImportacionService.revertir("segundo.txt");
+
+        assertThat(resultado.get("unidadesEliminadas")).isEqualTo(1);
+        assertThat(resultado).containsKey("advertencia");
+        assertThat(vins()).containsExactlyInAnyOrder("VINLEGADO01", "VINNUEVO001");
+        assertThat(archivoOrigen(unidadLegada)).isNull();
+        assertThat(archivoOrigen(unidadPrimero)).isEqualTo("primero.txt");
+
+        // Revertir el primero borra solo la unidad que creó; la anterior sigue intacta
+        reversionImportacionService.revertir("primero.txt");
+
+        assertThat(vins()).containsExactly("VINLEGADO01");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cobro_detalle WHERE unidad_id = ?",
+                Integer.class, unidadLegada)).isEqualTo(1);
+    }
+
+    @Test
+    void revertirBorraLaUnidadConSuSeguroYDesglose() {
+        importar("unico.txt", false, linea("VINNUEVO003", 17883));
+        int unidad = idDe("VINNUEVO003");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM seguros WHERE UnidadID = ?", Integer.class, unidad))
+                .isEqualTo(1);
+
+        Map<String, Object> resultado = reversionImportacionService.revertir("unico.txt");
+
+        assertThat(resultado.get("unidadesEliminadas")).isEqualTo(1);
+        assertThat(resultado).doesNotContainKey("advertencia");
+        assertThat(vins()).containsExactly("VINLEGADO01");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM seguros WHERE UnidadID = ?", Integer.class, unidad))
+                .isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cobro_detalle WHERE unidad_id = ?", Integer.class, unidad))
+                .isZero();
+    }
+
+    @Test
+    void unIntentoCanceladoNoBloqueaLaReversion() throws Exception {
+        importar("cancelado.txt", false, linea("VINNUEVO004", 17883));
+        when(importacionTxtService.particionesPara(anyBoolean())).thenReturn(1);
+
+        // Mientras el archivo se importa la reversión se rechaza; al cancelarlo el registro queda EN_PROCESO
+        AtomicBoolean enCursoDuranteLaImportacion = new AtomicBoolean();
+        when(importacionTxtService.importar(any(InputStream.class), any(ContextoImportacion.class), anyBoolean()))
+                .thenAnswer(invocacion -> {
+                    enCursoDuranteLaImportacion.set(reversionImportacionService.importacionEnCurso("cancelado.txt"));
+                    throw new CancellationException("Importación cancelada");
+                });
+        ByteArrayResource contenido = new ByteArrayResource(linea("VINNUEVO004", 17883).getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> importacionArchivoService.importar(contenido, "hash-cancelado", contenido.contentLength(),
+                new ContextoImportacion("cancelado.txt", false), false, false))
+                .isInstanceOf(CancellationException.class);
+
+        assertThat(enCursoDuranteLaImportacion).isTrue();
+        assertThat(importacionArchivoRepository.findByNombreArchivo("cancelado.txt"))
+                .extracting(ImportacionArchivo::getEstado).containsExactly(ImportacionArchivo.Estado.EN_PROCESO);
+        assertThat(reversionImportacionService.importacionEnCurso("cancelado.txt")).isFalse();
+
+        reversionImportacionService.revertir("cancelado.txt");
+
+        assertThat(vins()).containsExactly("VINLEGADO01");
+        assertThat(importacionArchivoRepository.findByNombreArchivo("cancelado.txt"))
+                .extracting(ImportacionArchivo::getEstado).containsExactly(ImportacionArchivo.Estado.REVERTIDA);
+    }
+
+    @Test
+    void unTrabajoEnColaBloqueaLaReversion() {
+        when(importacionTrabajoService.hayTrabajoActivo(eq("en-cola.txt"))).thenReturn(true);
+
+        assertThat(reversionImportacionService.importacionEnCurso("en-cola.txt")).isTrue();
+        assertThat(reversionImportacionService.importacionEnCurso("otro.txt")).isFalse();
+    }
+
+    private EstadisticasImportacion importar(String archivo, boolean actualizar, String... lineas) {
+        List<LineaArchivo> lote = new ArrayList<>();
+        long fin = 0;
+        for (int i = 0; i < lineas.length; i++) {
+            fin += lineas[i].length() + 1;
+            lote.add(new LineaArchivo(i + 1, lineas[i], fin));
+        }
+        EstadisticasImportacion estadisticas = importacionLoteService.procesarLote(lote,
+                new ContextoImportacion(archivo, actualizar), 0);
+        assertThat(estadisticas.getErrores()).isEmpty();
+        return estadisticas;
+    }
+
+    private static String linea(String vin, double cuotaAsociacion) {
+        return String.join("|", "D01", "F-" + vin, "M1", "X", vin, "20240115", "20240201", "17",
+                "350000", String.valueOf(cuotaAsociacion), "1200", "26564", "0");
+    }
+
+    private int idDe(String vin) {
+        return jdbcTemplate.queryForObject("SELECT id FROM unidad WHERE NoSerie = ?", Integer.class, vin);
+    }
+
+    private String archivoOrigen(int unidadId) {
+        return jdbcTemplate.queryForObject("SELECT archivo_origen FROM unidad WHERE id = ?", String.class, unidadId);
+    }
+
+    private List<String> archivosDelDesglose(int unidadId) {
+        return jdbcTemplate.queryForList("SELECT DISTINCT archivo_origen FROM cobro_detalle WHERE unidad_id = ?",
+                String.class, unidadId);
+    }
+
+    private List<String> vins() {
+        return jdbcTemplate.queryForList("SELECT NoSerie FROM unidad", String.class);
+    }
+}
@@ -0,0 +1,51 @@
+package com.adavec.transporte.service.importacion;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UnidadExistenteTest {
+
+    private static final LocalDate FONDEO = LocalDate.of(2024, 1, 15);
+
+    @Test
+    void unidadCambiaSoloFueraDeLaTolerancia() {
+        UnidadExistente unidad = new UnidadExistente(1, FONDEO, 350000.0);
+
+        assertThat(unidad.unidadCambio(FONDEO, 350000.0)).isFalse();
+        assertThat(unidad.unidadCambio(FONDEO, 350000.004)).isFalse();
+        assertThat(unidad.unidadCambio(FONDEO, 350000.01)).isTrue();
+        assertThat(unidad.unidadCambio(FONDEO.plusDays(1), 350000.0)).isTrue();
+        assertThat(unidad.unidadCambio(FONDEO, null)).isTrue();
+    }
+
+    @Test
+    void sinSeguroGuardadoSiempreCambia() {
+        UnidadExistente unidad = new UnidadExistente(1, FONDEO, 350000.0);
+        assertThat(unidad.seguroCambio("F-1", 1200.0, 3.0, 36.0, FONDEO)).isTrue();
+
+        unidad.asignarSeguro(7, "F-1", 1200.0, 3.0, 36.0, FONDEO);
+        assertThat(unidad.getSeguroId()).isEqualTo(7);
+        assertThat(unidad.seguroCambio("F-1", 1200.0, 3.0, 36.0, FONDEO)).isFalse();
+        assertThat(unidad.seguroCambio("F-2", 1200.0, 3.0, 36.0, FONDEO)).isTrue();
+        assertThat(unidad.seguroCambio("F-1", 1200.0, 3.0, null, FONDEO)).isTrue();
+    }
+
+    @Test
+    void desgloseSinImportarElOrden() {
+        UnidadExistente unidad = new UnidadExistente(1, FONDEO, 350000.0);
+        unidad.agregarCobro(2, 1200.0);
+        unidad.agregarCobro(1, 17883.0);
+
+        assertThat(unidad.desgloseCambio(List.of(new UnidadExistente.Cobro(1, 17883.0),
+                new UnidadExistente.Cobro(2, 1200.001)))).isFalse();
+        assertThat(unidad.desgloseCambio(List.of(new UnidadExistente.Cobro(1, 17883.0),
+                new UnidadExistente.Cobro(2, 1300.0)))).isTrue();
+        assertThat(unidad.desgloseCambio(List.of(new UnidadExistente.Cobro(1, 17883.0),
+                new UnidadExistente.Cobro(3, 1200.0)))).isTrue();
+        assertThat(unidad.desgloseCambio(List.of(new UnidadExistente.Cobro(1, 17883.0)))).isTrue();
+    }
+}
@@ -0,0 +1,137 @@
+package com.adavec.transporte.service.importacion;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ValidacionTxtServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ValidacionTxtService servicio;
+
+    @BeforeEach
+    void preparar() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        // Bloques de dos líneas: las repeticiones cruzan bloques validados en hilos distintos
+        servicio = new ValidacionTxtService(jdbcTemplate, 2);
+    }
+
+    @AfterEach
+    void detener() {
+        servicio.detener();
+    }
+
+    @Test
+    void vinRepetidoEnElArchivoApuntaASuPrimeraAparicion() throws Exception {
+        registrados(List.of(), List.of("D01"));
+
+        Map<String, Object> resultado = validar(
+                linea("D01", "VIN0000001"),
+                linea("D01", "VIN0000002"),
+                linea("D01", " vin0000001 "),
+                "linea incompleta",
+                linea("D01", "VIN0000001"));
+
+        assertThat(resultado.get("valido")).isEqualTo(false);
+        assertThat(resultado.get("totalLineas")).isEqualTo(5);
+        assertThat(resultado.get("lineasValidas")).isEqualTo(2);
+        assertThat(resultado.get("duplicadosEnSistema")).isEqualTo(0);
+        assertThat(errores(resultado)).extracting(error -> error.get("numeroLinea")).containsExactly(3, 4, 5);
+        assertThat(errores(resultado).get(0).get("message").toString()).contains("primera aparición en línea 1");
+        assertThat(errores(resultado).get(2).get("message").toString()).contains("primera aparición en línea 1");
+    }
+
+    @Test
+    void vinExistenteSeReportaEnTodasSusApariciones() throws Exception {
+        registrados(List.of("VIN0000009 ", "OTRO000001"), List.of("D01"));
+
+        Map<String, Object> resultado = validar(
+                linea("D01", "VIN0000001"),
+                linea("D01", "vin0000009"),
+                linea("D01", "VIN0000003"),
+                linea("D01", "VIN0000009"));
+
+        assertThat(resultado.get("duplicadosEnSistema")).isEqualTo(2);
+        assertThat(resultado.get("lineasValidas")).isEqualTo(2);
+        assertThat(errores(resultado)).extracting(error -> error.get("numeroLinea")).containsExactly(2, 4);
+        assertThat(errores(resultado)).allSatisfy(error ->
+                assertThat(error.get("message").toString()).contains("ya existe en el sistema"));
+    }
+
+    @Test
+    void distribuidoresQueSeCrearian() throws Exception {
+        registrados(List.of(), List.of("D01 ", "d02"));
+
+        Map<String, Object> resultado = validar(
+                linea("D02", "VIN0000001"),
+                linea("D03", "VIN0000002"),
+                linea("D01", "VIN0000003"),
+                linea("D00", "VIN0000004"));
+
+        assertThat(resultado.get("valido")).isEqualTo(true);
+        assertThat(resultado.get("distribuidoresNuevos")).isEqualTo(List.of("D00", "D03"));
+    }
+
+    @Test
+    void sinVinsRegistradosNoReleeElArchivo() throws Exception {
+        registrados(List.of(), List.of());
+        ByteArrayResource archivo = spy(archivo(linea("D01", "VIN0000001")));
+
+        servicio.validar(archivo, "prueba.txt");
+
+        verify(archivo, times(1)).getInputStream();
+    }
+
+    private Map<String, Object> validar(String... lineas) throws IOException {
+        return servicio.validar(archivo(lineas), "prueba.txt");
+    }
+
+    private static ByteArrayResource archivo(String... lineas) {
+        return new ByteArrayResource(String.join("\n", lineas).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> errores(Map<String, Object> resultado) {
+        return (List<Map<String, Object>>) resultado.get("errores");
+    }
+
+    /**
+     * VIN y claves de distribuidor que devuelven las dos lecturas de la validación
+     */
+    private void registrados(List<String> vins, List<String> claves) {
+        doAnswer(invocacion -> filas(invocacion.getArgument(1), vins))
+                .when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        doAnswer(invocacion -> filas(invocacion.getArgument(1), claves))
+                .when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    private static Void filas(RowCallbackHandler manejador, List<String> valores) throws SQLException {
+        for (String valor : valores) {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString(1)).thenReturn(valor);
+            manejador.processRow(rs);
+        }
+        return null;
+    }
+
+    private static String linea(String clave, String vin) {
+        return String.join("|", clave, "F-" + vin.trim(), "M1", "X", vin, "20240115", "20240201", "17",
+                "350000", "17883", "1200", "26564", "0");
+    }
+}
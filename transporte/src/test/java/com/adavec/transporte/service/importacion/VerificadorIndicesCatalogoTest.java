@@ -0,0 +1,66 @@
+package com.adavec.transporte.service.importacion;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Los índices únicos que Hibernate crea con las entidades pasan la verificación; si falta uno, falla.
+ * Sin transacción de prueba: el DDL de H2 confirma lo pendiente, así que cada prueba deja el esquema como estaba.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transporte;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(VerificadorIndicesCatalogo.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VerificadorIndicesCatalogoTest {
+
+    @Autowired
+    private VerificadorIndicesCatalogo verificador;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private boolean indiceEliminado;
+
+    @AfterEach
+    void restaurar() {
+        jdbcTemplate.update("DELETE FROM modelo WHERE Nombre = 'REPETIDO'");
+        if (indiceEliminado) {
+            jdbcTemplate.execute("ALTER TABLE modelo ADD CONSTRAINT uk_modelo_nombre UNIQUE (Nombre)");
+        }
+    }
+
+    @Test
+    void conLosIndicesDeLasEntidadesPasa() {
+        assertThatCode(verificador::verificar).doesNotThrowAnyException();
+    }
+
+    @Test
+    void sinElIndiceFallaConLosRepetidos() {
+        jdbcTemplate.execute("ALTER TABLE modelo DROP CONSTRAINT uk_modelo_nombre");
+        indiceEliminado = true;
+        jdbcTemplate.update("INSERT INTO modelo (Nombre, Uso) VALUES ('REPETIDO', 'CARGA'), ('REPETIDO', 'CARGA')");
+
+        assertThatThrownBy(verificador::verificar)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("uk_modelo_nombre en modelo.Nombre (1 valores repetidos)")
+                .hasMessageNotContaining("uk_distribuidor_clave")
+                .hasMessageContaining("db/catalogos-unicos.sql");
+    }
+}